@@ -0,0 +1,205 @@
+package mbeb.opengldefault.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A minimal micro benchmark harness: an operation gets warmed up and then measured in several iterations of fixed
+ * length. Reports the throughput and the allocation rate of the measuring thread, together with the GC activity.
+ */
+public class Benchmark {
+
+	/** nanoseconds per second */
+	private static final double NANOS = 1e9;
+
+	private final String name;
+	private final Runnable operation;
+
+	/**
+	 * the results of one benchmark
+	 */
+	public static class Result {
+		private final String name;
+		private final double opsPerSecond;
+		private final double opsError;
+		private final double bytesPerOp;
+		private final double allocationRate;
+		private final long gcCount;
+		private final long gcTime;
+
+		private Result(final String name, final double opsPerSecond, final double opsError, final double bytesPerOp, final double allocationRate, final long gcCount, final long gcTime) {
+			this.name = name;
+			this.opsPerSecond = opsPerSecond;
+			this.opsError = opsError;
+			this.bytesPerOp = bytesPerOp;
+			this.allocationRate = allocationRate;
+			this.gcCount = gcCount;
+			this.gcTime = gcTime;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the mean throughput over all measured iterations
+		 */
+		public double getOpsPerSecond() {
+			return opsPerSecond;
+		}
+
+		/**
+		 * @return the standard deviation of the throughput between the iterations
+		 */
+		public double getOpsError() {
+			return opsError;
+		}
+
+		/**
+		 * @return the heap bytes allocated by a single operation, or -1 if the JVM can not measure them
+		 */
+		public double getBytesPerOp() {
+			return bytesPerOp;
+		}
+
+		/**
+		 * @return the allocated MB per second, or -1 if the JVM can not measure them
+		 */
+		public double getAllocationRate() {
+			return allocationRate;
+		}
+
+		public long getGcCount() {
+			return gcCount;
+		}
+
+		public long getGcTime() {
+			return gcTime;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%-40s %14.1f +- %10.1f ops/s %12.1f B/op %10.1f MB/s %5d gcs %6d ms", name, opsPerSecond, opsError, bytesPerOp, allocationRate, gcCount, gcTime);
+		}
+	}
+
+	/**
+	 * @param name
+	 *            the name in the report
+	 * @param operation
+	 *            a single operation to measure
+	 */
+	public Benchmark(final String name, final Runnable operation) {
+		this.name = name;
+		this.operation = operation;
+	}
+
+	/**
+	 * warm up and measure the operation
+	 *
+	 * @param warmupIterations
+	 *            the amount of iterations whose results are thrown away
+	 * @param iterations
+	 *            the amount of measured iterations
+	 * @param iterationNanos
+	 *            the length of a single iteration
+	 * @return the results
+	 */
+	public Result run(final int warmupIterations, final int iterations, final long iterationNanos) {
+		for (int i = 0; i < warmupIterations; i++) {
+			runIteration(iterationNanos);
+		}
+
+		final com.sun.management.ThreadMXBean threads = getThreadBean();
+		final long threadId = Thread.currentThread().getId();
+		final long bytesBefore = threads == null ? 0 : threads.getThreadAllocatedBytes(threadId);
+		final long gcCountBefore = getGcCount();
+		final long gcTimeBefore = getGcTime();
+
+		final double[] throughputs = new double[iterations];
+		long totalOps = 0;
+		long totalNanos = 0;
+		for (int i = 0; i < iterations; i++) {
+			final long start = System.nanoTime();
+			final long ops = runIteration(iterationNanos);
+			final long duration = System.nanoTime() - start;
+			throughputs[i] = ops * NANOS / duration;
+			totalOps += ops;
+			totalNanos += duration;
+		}
+
+		final long bytes = threads == null ? -1 : threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+		final double bytesPerOp = bytes < 0 ? -1 : (double) bytes / totalOps;
+		final double allocationRate = bytes < 0 ? -1 : bytes * NANOS / totalNanos / (1024 * 1024);
+		return new Result(name, mean(throughputs), deviation(throughputs), bytesPerOp, allocationRate, getGcCount() - gcCountBefore, getGcTime() - gcTimeBefore);
+	}
+
+	/**
+	 * call the operation until the given time is over
+	 *
+	 * @return the amount of calls
+	 */
+	private long runIteration(final long iterationNanos) {
+		final long end = System.nanoTime() + iterationNanos;
+		long ops = 0;
+		do {
+			operation.run();
+			ops++;
+		} while(System.nanoTime() < end);
+		return ops;
+	}
+
+	/**
+	 * @return the HotSpot thread bean that can measure allocations, or null if this JVM does not support it
+	 */
+	private static com.sun.management.ThreadMXBean getThreadBean() {
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+			return null;
+		}
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			return null;
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+		return threads;
+	}
+
+	private static long getGcCount() {
+		long count = 0;
+		for (final GarbageCollectorMXBean gc : getGarbageCollectors()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long getGcTime() {
+		long time = 0;
+		for (final GarbageCollectorMXBean gc : getGarbageCollectors()) {
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return time;
+	}
+
+	private static List<GarbageCollectorMXBean> getGarbageCollectors() {
+		return ManagementFactory.getGarbageCollectorMXBeans();
+	}
+
+	private static double mean(final double[] values) {
+		double sum = 0;
+		for (final double value : values) {
+			sum += value;
+		}
+		return sum / values.length;
+	}
+
+	private static double deviation(final double[] values) {
+		final double mean = mean(values);
+		double sum = 0;
+		for (final double value : values) {
+			sum += (value - mean) * (value - mean);
+		}
+		return Math.sqrt(sum / values.length);
+	}
+}
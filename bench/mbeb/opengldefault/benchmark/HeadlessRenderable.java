@@ -0,0 +1,43 @@
+package mbeb.opengldefault.benchmark;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import mbeb.opengldefault.gl.shader.ShaderProgram;
+import mbeb.opengldefault.rendering.renderable.IRenderable;
+import mbeb.opengldefault.scene.BoundingBox;
+
+/**
+ * A renderable that draws nothing, so scene graphs can be traversed without an OpenGL context
+ */
+public class HeadlessRenderable implements IRenderable {
+
+	private final BoundingBox boundingBox;
+	private final Matrix4f transform = new Matrix4f();
+
+	/**
+	 * create a headless renderable with a unit cube as its BoundingBox
+	 */
+	public HeadlessRenderable() {
+		this(new BoundingBox(new Vector3f(-0.5f), new Vector3f(1)));
+	}
+
+	public HeadlessRenderable(final BoundingBox boundingBox) {
+		this.boundingBox = boundingBox;
+	}
+
+	@Override
+	public void render(final ShaderProgram shader) {
+		//nothing to draw
+	}
+
+	@Override
+	public BoundingBox getBoundingBox() {
+		return boundingBox;
+	}
+
+	@Override
+	public Matrix4f getTransform() {
+		return transform;
+	}
+}
@@ -0,0 +1,31 @@
+package mbeb.opengldefault.benchmark;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import mbeb.opengldefault.gl.shader.ShaderProgram;
+
+/**
+ * A shader that never gets compiled and ignores all calls that would reach OpenGL
+ */
+public class HeadlessShaderProgram extends ShaderProgram {
+
+	public HeadlessShaderProgram() {
+		super("headless.vert", "headless.frag");
+	}
+
+	@Override
+	public void use() {
+		//no context to use this in
+	}
+
+	@Override
+	public int setUniform(final String name, final Vector3f value, final boolean onlyTry) {
+		return -1;
+	}
+
+	@Override
+	public int setUniform(final String name, final Matrix4f value, final boolean onlyTry) {
+		return -1;
+	}
+}
@@ -0,0 +1,158 @@
+package mbeb.opengldefault.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+
+import mbeb.opengldefault.animation.BoneTransformation;
+import mbeb.opengldefault.camera.Camera;
+import mbeb.opengldefault.camera.MousePicker3D;
+import mbeb.opengldefault.camera.PerspectiveCamera;
+import mbeb.opengldefault.logging.Log;
+import mbeb.opengldefault.logging.LogMode;
+import mbeb.opengldefault.scene.BoundingBox;
+import mbeb.opengldefault.scene.SceneGraphRenderer;
+import mbeb.opengldefault.scene.SceneObject;
+import mbeb.opengldefault.scene.SceneSpatialIndex;
+import mbeb.opengldefault.scene.TransformStore;
+import mbeb.opengldefault.scene.VisibleSceneGraphRenderer;
+
+/**
+ * Benchmarks the traversal, culling and picking of a synthetic scene graph without an OpenGL context.
+ * <p>
+ * Usage: <code>SceneGraphBenchmark [depth] [fanOut] [warmupIterations] [iterations] [iterationMillis]</code>
+ */
+public class SceneGraphBenchmark {
+
+	private static final String TAG = "SceneGraphBenchmark";
+
+	private static final int DEFAULT_DEPTH = 4;
+	private static final int DEFAULT_FAN_OUT = 6;
+	private static final int DEFAULT_WARMUP_ITERATIONS = 3;
+	private static final int DEFAULT_ITERATIONS = 5;
+	private static final int DEFAULT_ITERATION_MILLIS = 1000;
+
+	/** the distance between two neighbouring children */
+	private static final float SPACING = 2.5f;
+	/** the scale of a child relative to its parent */
+	private static final float CHILD_SCALE = 0.4f;
+
+	/** keeps results alive, so the JIT can not remove the measured code */
+	private static volatile Object sink;
+
+	private final SceneObject root;
+	private final List<SceneObject> leaves = new ArrayList<>();
+	private final Camera camera;
+
+	/**
+	 * build a synthetic scene graph
+	 *
+	 * @param depth
+	 *            the amount of levels below the root
+	 * @param fanOut
+	 *            the amount of children of each inner node
+	 */
+	public SceneGraphBenchmark(final int depth, final int fanOut) {
+		root = new SceneObject();
+		root.setShader(new HeadlessShaderProgram());
+		addChildren(root, new HeadlessRenderable(), depth, fanOut);
+
+		camera = new PerspectiveCamera(16f / 9f);
+		//look at a corner of the scene, so roughly half of it gets culled
+		camera.setEye(new Vector3f(SPACING * fanOut / 4, 2, 6));
+		camera.setCenter(new Vector3f(SPACING * fanOut / 4, -2, 0));
+	}
+
+	private void addChildren(final SceneObject parent, final HeadlessRenderable renderable, final int depth, final int fanOut) {
+		if (depth == 0) {
+			leaves.add(parent);
+			return;
+		}
+		for (int i = 0; i < fanOut; i++) {
+			final Vector3f position = new Vector3f((i - (fanOut - 1) / 2f) * SPACING, -1, i % 2);
+			final SceneObject child = new SceneObject(renderable, new BoneTransformation(position, new Quaternionf(), new Vector3f(CHILD_SCALE)));
+			parent.addSubObject(child);
+			addChildren(child, renderable, depth - 1, fanOut);
+		}
+	}
+
+	/**
+	 * @return all the benchmarks on this scene graph
+	 */
+	public List<Benchmark> createBenchmarks() {
+		final List<Benchmark> benchmarks = new ArrayList<>();
+
+		final SceneGraphRenderer renderer = new SceneGraphRenderer(root, camera);
+		benchmarks.add(new Benchmark("SceneGraphRenderer.render", renderer::render));
+
+		final BoneTransformation[] rootTransformations = {new BoneTransformation(new Vector3f(0, 0, 0)), new BoneTransformation(new Vector3f(0, 0, 0.1f))};
+		final int[] frame = {0};
+		benchmarks.add(new Benchmark("SceneGraphRenderer.render (moving root)", () -> {
+			root.setTransformation(rootTransformations[frame[0]++ & 1]);
+			renderer.render();
+		}));
+
+		final TransformStore transforms = new TransformStore(root);
+		for (final VisibleSceneGraphRenderer.CullingMode mode : VisibleSceneGraphRenderer.CullingMode.values()) {
+			final VisibleSceneGraphRenderer visibleRenderer = new VisibleSceneGraphRenderer(transforms, camera);
+			if (mode == VisibleSceneGraphRenderer.CullingMode.SPATIAL_INDEX) {
+				visibleRenderer.setSpatialIndex(new SceneSpatialIndex(transforms));
+			} else {
+				visibleRenderer.setCullingMode(mode);
+			}
+			benchmarks.add(new Benchmark("VisibleSceneGraphRenderer." + mode, visibleRenderer::render));
+		}
+
+		benchmarks.add(new Benchmark("SceneObject.getGlobalTransformation", () -> {
+			root.invalidateGlobalTransformation();
+			for (final SceneObject leaf : leaves) {
+				sink = leaf.getGlobalTransformation();
+			}
+		}));
+
+		final BoundingBox[] leafBoxes = new BoundingBox[leaves.size()];
+		for (int i = 0; i < leafBoxes.length; i++) {
+			final SceneObject leaf = leaves.get(i);
+			leafBoxes[i] = new BoundingBox(leaf.getGlobalPosition(), new Vector3f(1));
+		}
+		benchmarks.add(new Benchmark("BoundingBox.unionWith", () -> {
+			BoundingBox union = new BoundingBox.Empty();
+			for (final BoundingBox box : leafBoxes) {
+				union = union.unionWith(box);
+			}
+			sink = union;
+		}));
+
+		final MousePicker3D picker = new MousePicker3D(camera);
+		picker.setRay(camera.getCenter().sub(camera.getEye(), new Vector3f()).normalize());
+		final Matrix4f identity = new Matrix4f();
+		benchmarks.add(new Benchmark("MousePicker3D.searchBoundingBoxes", () -> picker.searchBoundingBoxes(root, identity)));
+
+		final SceneSpatialIndex pickingIndex = new SceneSpatialIndex(transforms);
+		benchmarks.add(new Benchmark("MousePicker3D.searchBoundingBoxes (index)", () -> picker.searchBoundingBoxes(pickingIndex)));
+
+		return benchmarks;
+	}
+
+	public static void main(final String[] args) {
+		Log.initDebug(LogMode.CONSOLE);
+		final int depth = getArgument(args, 0, DEFAULT_DEPTH);
+		final int fanOut = getArgument(args, 1, DEFAULT_FAN_OUT);
+		final int warmupIterations = getArgument(args, 2, DEFAULT_WARMUP_ITERATIONS);
+		final int iterations = getArgument(args, 3, DEFAULT_ITERATIONS);
+		final long iterationNanos = getArgument(args, 4, DEFAULT_ITERATION_MILLIS) * 1000000L;
+
+		final SceneGraphBenchmark benchmark = new SceneGraphBenchmark(depth, fanOut);
+		Log.log(TAG, "depth " + depth + ", fan-out " + fanOut + ", " + benchmark.leaves.size() + " leaves");
+		for (final Benchmark single : benchmark.createBenchmarks()) {
+			Log.log(TAG, single.run(warmupIterations, iterations, iterationNanos).toString());
+		}
+	}
+
+	private static int getArgument(final String[] args, final int index, final int defaultValue) {
+		return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+	}
+}
@@ -97,6 +97,8 @@ public class DungeonLevel extends SceneObject implements IHeightSource {
 	private final SoundEnvironment soundEnvironment;
 	private final EnumMap<LootType, Table> lootSpawns;
 	private Consumer<DungeonLevel> finishListener;
+	private final PortalCulling portalCulling;
+	private boolean portalCullingEnabled = true;
 
 	public DungeonLevel(final LightManager manager, final Goblin enemy, final HealthBarGUI gui, final Camera camera, final Chest chest, final TextGUIElement infoBox,
 			final SoundEnvironment soundEnvironment) {
@@ -114,6 +116,7 @@ public class DungeonLevel extends SceneObject implements IHeightSource {
 			this.setLootSpawn(lootType, 1.0f);
 		}
 		this.enemySpawns = new Table(0.25f, 0.5f, 0.25f);
+		this.portalCulling = new PortalCulling(this);
 	}
 
 	private void adjustValues(final int width, final int height) {
@@ -279,6 +282,10 @@ public class DungeonLevel extends SceneObject implements IHeightSource {
 		return rooms.get(new Point(x, y));
 	}
 
+	public int getRoomCount() {
+		return rooms == null ? 0 : rooms.size();
+	}
+
 	private float determineOffset(final int x, final int y) {
 		return -0.0025f + 0.00125f * (x % 2 + y % 2 * 2);
 	}
@@ -392,6 +399,39 @@ public class DungeonLevel extends SceneObject implements IHeightSource {
 		this.finishListener = finishListener;
 	}
 
+	public boolean isPortalCullingEnabled() {
+		return portalCullingEnabled;
+	}
+
+	public void setPortalCullingEnabled(final boolean portalCullingEnabled) {
+		this.portalCullingEnabled = portalCullingEnabled;
+		if (!portalCullingEnabled && rooms != null) {
+			rooms.values().forEach(room -> room.setVisible(true));
+		}
+	}
+
+	/**
+	 * hide all rooms that can not be seen through the portals from the active room (or the room below the camera)
+	 */
+	private void updateVisibleRooms() {
+		if (!portalCullingEnabled || rooms == null) {
+			return;
+		}
+		Room start = this.activeRoom;
+		if (start == null && this.getPlayer() != null) {
+			start = this.getRoom(new Vector2f(this.getPlayer().getPosition().x(), this.getPlayer().getPosition().z()), true);
+		}
+		final Room cameraRoom = this.getRoom(new Vector2f(camera.getEye().x(), camera.getEye().z()), true);
+		if (start == null && cameraRoom == null) {
+			rooms.values().forEach(room -> room.setVisible(true));
+			return;
+		}
+		final Set<Room> visible = portalCulling.cull(camera, start, cameraRoom);
+		for (final Room room : rooms.values()) {
+			room.setVisible(visible.contains(room));
+		}
+	}
+
 	@Override
 	public void update(final double deltaTime) {
 		super.update(deltaTime);
@@ -421,5 +461,6 @@ public class DungeonLevel extends SceneObject implements IHeightSource {
 				}
 			}
 		}
+		updateVisibleRooms();
 	}
 }
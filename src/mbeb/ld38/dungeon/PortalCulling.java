@@ -0,0 +1,234 @@
+package mbeb.ld38.dungeon;
+
+import java.lang.Math;
+import java.util.*;
+
+import org.joml.*;
+
+import mbeb.ld38.dungeon.room.*;
+import mbeb.opengldefault.camera.*;
+
+/**
+ * Determines the rooms of a {@link DungeonLevel} that can be seen from the camera, by recursing from the start room
+ * through the portals between neighbouring rooms. Every portal narrows the visible screen area, so only rooms that
+ * are visible through the whole chain of portals are collected.
+ * <p>
+ * A portal is the doorway of a physically open door. The rooms have no ceiling, so the part of the shared wall plane
+ * between the top of the walls and the camera height is a portal as well.
+ */
+public class PortalCulling {
+
+	private static final String TAG = "PortalCulling";
+
+	/** distance from the room center to the wall plane between two rooms */
+	private static final float PORTAL_DISTANCE = 4.5f;
+	/** half the width of a doorway */
+	private static final float DOOR_HALF_WIDTH = 1.0f;
+	/** the height of a doorway */
+	private static final float DOOR_HEIGHT = 2.0f;
+	/** the height of the walls */
+	private static final float WALL_HEIGHT = 2.0f;
+	/** the lowest w a clip-space position may have to be in front of the camera */
+	private static final float NEAR_W = 0.0001f;
+
+	/**
+	 * a rectangle in normalized device coordinates
+	 */
+	private static class ScreenRect {
+		private float minX, minY, maxX, maxY;
+
+		private ScreenRect(final float minX, final float minY, final float maxX, final float maxY) {
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+		}
+
+		private boolean isEmpty() {
+			return minX >= maxX || minY >= maxY;
+		}
+
+		private boolean contains(final ScreenRect other) {
+			return other.minX >= minX && other.minY >= minY && other.maxX <= maxX && other.maxY <= maxY;
+		}
+
+		private ScreenRect intersection(final ScreenRect other) {
+			return new ScreenRect(Math.max(minX, other.minX), Math.max(minY, other.minY), Math.min(maxX, other.maxX), Math.min(maxY, other.maxY));
+		}
+
+		private void unionWith(final ScreenRect other) {
+			minX = Math.min(minX, other.minX);
+			minY = Math.min(minY, other.minY);
+			maxX = Math.max(maxX, other.maxX);
+			maxY = Math.max(maxY, other.maxY);
+		}
+	}
+
+	private final DungeonLevel level;
+
+	/** the result of the last pass */
+	private final Set<Room> visibleRooms = new HashSet<>();
+	/** the screen area each room was already visited with */
+	private final Map<Room, ScreenRect> visitedAreas = new HashMap<>();
+
+	/** scratch data */
+	private final Vector4f[] corners = {new Vector4f(), new Vector4f(), new Vector4f(), new Vector4f()};
+	private Vector3f eye;
+	private int maxDepth;
+
+	public PortalCulling(final DungeonLevel level) {
+		this.level = level;
+	}
+
+	/**
+	 * collect the rooms that are visible from the camera
+	 *
+	 * @param camera
+	 *            the camera to look from
+	 * @param startRooms
+	 *            the rooms the camera or the player are in (null entries are ignored)
+	 * @return the set of visible rooms (reused by the next call)
+	 */
+	public Set<Room> cull(final Camera camera, final Room... startRooms) {
+		visibleRooms.clear();
+		visitedAreas.clear();
+		eye = camera.getEye();
+		maxDepth = level.getRoomCount();
+		for (final Room start : startRooms) {
+			if (start != null) {
+				visit(start, new ScreenRect(-1, -1, 1, 1), camera, 0);
+			}
+		}
+		return visibleRooms;
+	}
+
+	/**
+	 * @return the rooms found by the last pass
+	 */
+	public Set<Room> getVisibleRooms() {
+		return visibleRooms;
+	}
+
+	private void visit(final Room room, final ScreenRect area, final Camera camera, final int depth) {
+		final ScreenRect visited = visitedAreas.get(room);
+		if (visited != null) {
+			if (visited.contains(area)) {
+				return;
+			}
+			visited.unionWith(area);
+		} else {
+			visitedAreas.put(room, new ScreenRect(area.minX, area.minY, area.maxX, area.maxY));
+		}
+		visibleRooms.add(room);
+		if (depth >= maxDepth) {
+			return;
+		}
+
+		final Matrix4f roomToClip = camera.getProjectionView().mul(room.getGlobalTransformation().asMatrix(), new Matrix4f());
+		final DungeonLevel.Point position = room.getPosition();
+		for (final Door.Direction direction : Door.Direction.values()) {
+			final Room neighbour = level.getRoom(position.getX() + direction.getX(), position.getY() + direction.getY());
+			if (neighbour == null) {
+				continue;
+			}
+			final ScreenRect portal = getPortalArea(room, roomToClip, direction);
+			if (portal == null) {
+				continue;
+			}
+			final ScreenRect narrowed = portal.intersection(area);
+			if (!narrowed.isEmpty()) {
+				visit(neighbour, narrowed, camera, depth + 1);
+			}
+		}
+	}
+
+	/**
+	 * calculate the screen area of all portals from a room into one direction
+	 *
+	 * @param roomToClip
+	 *            the transformation from room space to clip space
+	 * @return the screen area, or null if nothing can be seen through this wall
+	 */
+	private ScreenRect getPortalArea(final Room room, final Matrix4f roomToClip, final Door.Direction direction) {
+		ScreenRect result = null;
+		final Door door = room.getDoor(direction);
+		if (door != null && door.isPhysicallyOpen()) {
+			result = union(result, projectPortal(roomToClip, direction, DOOR_HALF_WIDTH, 0, DOOR_HEIGHT));
+		}
+		final float ceiling = eye.y - room.getGlobalPosition().y;
+		if (ceiling > WALL_HEIGHT) {
+			result = union(result, projectPortal(roomToClip, direction, PORTAL_DISTANCE, WALL_HEIGHT, ceiling));
+		}
+		return result;
+	}
+
+	private static ScreenRect union(final ScreenRect a, final ScreenRect b) {
+		if (a == null) {
+			return b;
+		}
+		if (b != null) {
+			a.unionWith(b);
+		}
+		return a;
+	}
+
+	/**
+	 * project a rectangular opening in the wall plane of a room onto the screen. The opening is clipped against the
+	 * near plane first.
+	 *
+	 * @param roomToClip
+	 *            the transformation from room space to clip space
+	 * @param direction
+	 *            the wall of the room
+	 * @param halfWidth
+	 *            half the width of the opening
+	 * @param bottom
+	 *            the lower edge of the opening (in room space)
+	 * @param top
+	 *            the upper edge of the opening (in room space)
+	 * @return the screen area of the opening, or null if it is behind the camera
+	 */
+	private ScreenRect projectPortal(final Matrix4f roomToClip, final Door.Direction direction, final float halfWidth, final float bottom, final float top) {
+		final float normalX = direction.getX();
+		final float normalZ = direction.getY();
+		//the wall runs perpendicular to its direction
+		final float sideX = -normalZ;
+		final float sideZ = normalX;
+		final float centerX = normalX * PORTAL_DISTANCE;
+		final float centerZ = normalZ * PORTAL_DISTANCE;
+
+		roomToClip.transform(corners[0].set(centerX - sideX * halfWidth, bottom, centerZ - sideZ * halfWidth, 1));
+		roomToClip.transform(corners[1].set(centerX + sideX * halfWidth, bottom, centerZ + sideZ * halfWidth, 1));
+		roomToClip.transform(corners[2].set(centerX + sideX * halfWidth, top, centerZ + sideZ * halfWidth, 1));
+		roomToClip.transform(corners[3].set(centerX - sideX * halfWidth, top, centerZ - sideZ * halfWidth, 1));
+
+		ScreenRect result = null;
+		for (int i = 0; i < corners.length; i++) {
+			final Vector4f current = corners[i];
+			final Vector4f next = corners[(i + 1) % corners.length];
+			final boolean currentInFront = current.w > NEAR_W;
+			if (currentInFront) {
+				result = include(result, current.x / current.w, current.y / current.w);
+			}
+			if (currentInFront != (next.w > NEAR_W)) {
+				//the edge crosses the near plane
+				final float t = (NEAR_W - current.w) / (next.w - current.w);
+				final float x = current.x + (next.x - current.x) * t;
+				final float y = current.y + (next.y - current.y) * t;
+				result = include(result, x / NEAR_W, y / NEAR_W);
+			}
+		}
+		return result;
+	}
+
+	private static ScreenRect include(final ScreenRect rect, final float x, final float y) {
+		if (rect == null) {
+			return new ScreenRect(x, y, x, y);
+		}
+		rect.minX = Math.min(rect.minX, x);
+		rect.minY = Math.min(rect.minY, y);
+		rect.maxX = Math.max(rect.maxX, x);
+		rect.maxY = Math.max(rect.maxY, y);
+		return rect;
+	}
+}
@@ -117,11 +117,18 @@ public class Door extends SceneObject {
 	}
 
 	public Door(Door door, SoundEnvironment soundEnvironment) {
-		this(new SceneObject(door.frame), new SceneObject(door.door), door.direction, soundEnvironment);
+		this(door, door.direction, soundEnvironment);
 	}
 
 	public Door(Door door, Direction direction, SoundEnvironment soundEnvironment) {
-		this(new SceneObject(door.frame), new SceneObject(door.door), direction, soundEnvironment);
+		this(share(door.frame), new SceneObject(door.door), direction, soundEnvironment);
+	}
+
+	/**
+	 * @return the object itself if it is a template, or a copy otherwise
+	 */
+	private static SceneObject share(SceneObject object) {
+		return object.isTemplate() ? object : new SceneObject(object);
 	}
 
 	public void open() {
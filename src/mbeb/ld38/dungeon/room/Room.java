@@ -26,6 +26,8 @@ public class Room extends SceneObject {
 	private Consumer<Room> exitListener;
 
 	Room() {
+		//rooms only interact with each other through deferred actions, so they can be updated in parallel
+		setParallelUpdateBoundary(true);
 		baseContainer = new SceneObject();
 		this.addSubObject(baseContainer);
 		slotContainer = new SceneObject();
@@ -3,7 +3,9 @@ package mbeb.ld38.dungeon.room;
 import mbeb.opengldefault.animation.BoneTransformation;
 import mbeb.opengldefault.light.LightManager;
 import mbeb.opengldefault.light.PointLight;
-import mbeb.opengldefault.rendering.io.ObjectLoader;
+import mbeb.opengldefault.rendering.io.AssetGroup;
+import mbeb.opengldefault.rendering.io.AssetHandle;
+import mbeb.opengldefault.rendering.io.AssetRegistry;
 import mbeb.opengldefault.rendering.renderable.IRenderable;
 import mbeb.opengldefault.scene.SceneObject;
 import mbeb.opengldefault.scene.materials.Material;
@@ -25,6 +27,7 @@ public class RoomType {
 	private static RoomType EXIT_ROOM;
 	private static IRenderable CORNER;
 	private static IRenderable SEGMENT;
+	private static final AssetGroup assetHandles = new AssetGroup();
 
 	public static RoomType getNormalRoom() {
 		return NORMAL_ROOM;
@@ -47,29 +50,41 @@ public class RoomType {
 	}
 
 	public static void initializeRoomTypes(SoundEnvironment soundEnvironment) {
-		Material wallMaterial = new Material("material/stonewall/seam", 1);
-		Material doorFrameMaterial = new Material("material/stonewall/purple", 1);
-		Material floorMaterial = new Material("material/cobble/moss", 4);
-		Material entranceMaterial = new Material("material/carpet", 1);
-		Material exitMaterial = new Material("material/chest", 2);
-
-		//meshes
-		final ObjectLoader loader = new ObjectLoader();
-		IRenderable doorFrame = loader.loadFromFile("dungeon/general/door_frame.obj").withMaterial(doorFrameMaterial);
-		IRenderable doorDoor = loader.loadFromFile("dungeon/general/door.obj").withMaterial(wallMaterial);
-		IRenderable wall_segment = loader.loadFromFile("dungeon/general/wall_segment.obj").withMaterial(wallMaterial);
-		IRenderable room_corner = loader.loadFromFile("dungeon/room/big_corner.obj").withMaterial(wallMaterial);
-		IRenderable room_floor = loader.loadFromFile("dungeon/room/floor.obj").withMaterial(floorMaterial);
-		CORNER = loader.loadFromFile("dungeon/general/origin_corner.obj").withMaterial(wallMaterial);
-		SEGMENT = loader.loadFromFile("dungeon/general/axis_corner.obj").withMaterial(wallMaterial);
-
-		IRenderable entrance = loader.loadFromFile("dungeon/carpet.obj").withMaterial(entranceMaterial);
-		IRenderable exit = loader.loadFromFile("ladder.obj").withMaterial(exitMaterial);
+		final AssetRegistry assets = AssetRegistry.getInstance();
+		AssetHandle<Material> wallMaterial = assetHandles.add(assets.acquireMaterial("material/stonewall/seam", 1));
+		AssetHandle<Material> doorFrameMaterial = assetHandles.add(assets.acquireMaterial("material/stonewall/purple", 1));
+		AssetHandle<Material> floorMaterial = assetHandles.add(assets.acquireMaterial("material/cobble/moss", 4));
+		AssetHandle<Material> entranceMaterial = assetHandles.add(assets.acquireMaterial("material/carpet", 1));
+		AssetHandle<Material> exitMaterial = assetHandles.add(assets.acquireMaterial("material/chest", 2));
+
+		//meshes, all decoded in parallel before waiting for the first one
+		AssetHandle<IRenderable> doorFrameMesh = assetHandles.add(assets.acquireMesh("dungeon/general/door_frame.obj"));
+		AssetHandle<IRenderable> doorDoorMesh = assetHandles.add(assets.acquireMesh("dungeon/general/door.obj"));
+		AssetHandle<IRenderable> wallSegmentMesh = assetHandles.add(assets.acquireMesh("dungeon/general/wall_segment.obj"));
+		AssetHandle<IRenderable> roomCornerMesh = assetHandles.add(assets.acquireMesh("dungeon/room/big_corner.obj"));
+		AssetHandle<IRenderable> roomFloorMesh = assetHandles.add(assets.acquireMesh("dungeon/room/floor.obj"));
+		AssetHandle<IRenderable> cornerMesh = assetHandles.add(assets.acquireMesh("dungeon/general/origin_corner.obj"));
+		AssetHandle<IRenderable> segmentMesh = assetHandles.add(assets.acquireMesh("dungeon/general/axis_corner.obj"));
+		AssetHandle<IRenderable> entranceMesh = assetHandles.add(assets.acquireMesh("dungeon/carpet.obj"));
+		AssetHandle<IRenderable> exitMesh = assetHandles.add(assets.acquireMesh("ladder.obj"));
+
+		IRenderable doorFrame = doorFrameMesh.get().withMaterial(doorFrameMaterial.get());
+		IRenderable doorDoor = doorDoorMesh.get().withMaterial(wallMaterial.get());
+		IRenderable wall_segment = wallSegmentMesh.get().withMaterial(wallMaterial.get());
+		IRenderable room_corner = roomCornerMesh.get().withMaterial(wallMaterial.get());
+		IRenderable room_floor = roomFloorMesh.get().withMaterial(floorMaterial.get());
+		CORNER = cornerMesh.get().withMaterial(wallMaterial.get());
+		SEGMENT = segmentMesh.get().withMaterial(wallMaterial.get());
+
+		IRenderable entrance = entranceMesh.get().withMaterial(entranceMaterial.get());
+		IRenderable exit = exitMesh.get().withMaterial(exitMaterial.get());
 		SceneObject exitObject = new SceneObject(exit);
 		exitObject.setVisible(false);
+		exitObject.asTemplate();
 
+		//the frame is shared by all doors, only the moving door itself is per room
 		Door door =
-				new Door(new SceneObject(doorFrame), new SceneObject(doorDoor), Door.Direction.RIGHT, soundEnvironment);
+				new Door(new SceneObject(doorFrame).asTemplate(), new SceneObject(doorDoor), Door.Direction.RIGHT, soundEnvironment);
 
 		SceneObject big_corner =
 				new SceneObject(room_corner, new BoneTransformation(new Vector3f(0, 0, 0), new Quaternionf(
@@ -81,7 +96,7 @@ public class RoomType {
 		SceneObject base = new SceneObject();
 		base.addSubObject(room_floor);
 		base.addSubObject(big_corner);
-		NORMAL_ROOM.addBaseObject(base);
+		NORMAL_ROOM.addBaseObject(base.asTemplate());
 
 		addDoor(NORMAL_ROOM, door, wall_segment, soundEnvironment);
 		//</editor-fold>
@@ -93,7 +108,7 @@ public class RoomType {
 		base.addSubObject(room_floor);
 		base.addSubObject(big_corner);
 		base.addSubObject(entrance);
-		ENTRANCE_ROOM.addBaseObject(base);
+		ENTRANCE_ROOM.addBaseObject(base.asTemplate());
 
 		//ENTRANCE_ROOM.addLight(new Vector3f(0, 3, 0), Color.WHITE, 20);
 
@@ -106,7 +121,7 @@ public class RoomType {
 		base = new SceneObject();
 		base.addSubObject(room_floor);
 		base.addSubObject(big_corner);
-		EXIT_ROOM.addBaseObject(base);
+		EXIT_ROOM.addBaseObject(base.asTemplate());
 
 		EXIT_ROOM.addSlot(
 				"exit", new BoneTransformation(null, null)).
@@ -116,6 +131,18 @@ public class RoomType {
 		//</editor-fold>
 	}
 
+	/**
+	 * stop using the meshes and materials of all room types
+	 */
+	public static void releaseRoomTypes() {
+		NORMAL_ROOM = null;
+		ENTRANCE_ROOM = null;
+		EXIT_ROOM = null;
+		CORNER = null;
+		SEGMENT = null;
+		assetHandles.releaseAll();
+	}
+
 	private static void addDoor(RoomType type, Door door, IRenderable wall_segment, SoundEnvironment soundEnvironment) {
 		float rect = (float) Math.PI / 2;
 
@@ -127,7 +154,7 @@ public class RoomType {
 				.addIf(new Door(door, Door.Direction.RIGHT, soundEnvironment),
 						roomParameter -> roomParameter.get(RoomParameter.Type.RIGHT_NEIGHBOUR)
 				)
-				.addIf(new SceneObject(wall_segment),
+				.addIf(new SceneObject(wall_segment).asTemplate(),
 						roomParameter -> !roomParameter.get(RoomParameter.Type.RIGHT_NEIGHBOUR)
 				);
 		type.addSlot("left",
@@ -136,7 +163,7 @@ public class RoomType {
 				.addIf(new Door(door, Door.Direction.LEFT, soundEnvironment),
 						roomParameter -> roomParameter.get(RoomParameter.Type.LEFT_NEIGHBOUR)
 				)
-				.addIf(new SceneObject(wall_segment),
+				.addIf(new SceneObject(wall_segment).asTemplate(),
 						roomParameter -> !roomParameter.get(RoomParameter.Type.LEFT_NEIGHBOUR)
 				);
 
@@ -146,7 +173,7 @@ public class RoomType {
 				.addIf(new Door(door, Door.Direction.BOTTOM, soundEnvironment),
 						roomParameter -> roomParameter.get(RoomParameter.Type.BOTTOM_NEIGHBOUR)
 				)
-				.addIf(new SceneObject(wall_segment),
+				.addIf(new SceneObject(wall_segment).asTemplate(),
 						roomParameter -> !roomParameter.get(RoomParameter.Type.BOTTOM_NEIGHBOUR)
 				);
 		type.addSlot("top",
@@ -155,7 +182,7 @@ public class RoomType {
 				.addIf(new Door(door, Door.Direction.TOP, soundEnvironment),
 						roomParameter -> roomParameter.get(RoomParameter.Type.TOP_NEIGHBOUR)
 				)
-				.addIf(new SceneObject(wall_segment),
+				.addIf(new SceneObject(wall_segment).asTemplate(),
 						roomParameter -> !roomParameter.get(RoomParameter.Type.TOP_NEIGHBOUR)
 				);
 	}
@@ -199,6 +226,7 @@ public class RoomType {
 	public Room construct(RoomParameter parameters, LightManager manager, Vector3f position,
 			SoundEnvironment soundEnvironment) {
 		Room result = new Room();
+		//the base objects are templates, so all rooms share them
 		result.addBaseObjects(this.baseObjects);
 		for (Map.Entry<String, Slot> slot : slots.entrySet()) {
 
@@ -206,6 +234,8 @@ public class RoomType {
 			if (add != null) {
 				if (add instanceof Door) {
 					add = new Door((Door) add, soundEnvironment);
+				} else if (add.isTemplate()) {
+					add = add.instantiate();
 				} else {
 					add = new SceneObject(add);
 				}
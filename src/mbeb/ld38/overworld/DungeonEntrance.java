@@ -1,7 +1,8 @@
 package mbeb.ld38.overworld;
 
 import mbeb.opengldefault.animation.BoneTransformation;
-import mbeb.opengldefault.rendering.io.ObjectLoader;
+import mbeb.opengldefault.rendering.io.AssetHandle;
+import mbeb.opengldefault.rendering.io.AssetRegistry;
 import mbeb.opengldefault.rendering.renderable.IRenderable;
 import mbeb.opengldefault.scene.SceneObject;
 import mbeb.opengldefault.scene.materials.Material;
@@ -12,20 +13,50 @@ import mbeb.opengldefault.scene.materials.Material;
 public class DungeonEntrance {
 
 	//<editor-fold desc="Static entrance materials / renderables">
-	private static Material mossCobbleMaterial = null;
+	private static AssetHandle<Material> mossCobbleMaterial = null;
+	private static AssetHandle<IRenderable> topMesh = null;
+	private static AssetHandle<IRenderable> bottomMesh = null;
 	private static IRenderable topRenderable = null;
 	private static IRenderable bottomRenderable = null;
 
-	private static void initIfNeeded() {
-		if (mossCobbleMaterial != null) {
+	/**
+	 * start decoding the entrance assets in the background
+	 */
+	public static void startLoading() {
+		if (topMesh != null) {
 			return;
 		}
-		mossCobbleMaterial = new Material("material/cobble/moss", 3);
+		AssetRegistry assets = AssetRegistry.getInstance();
+		mossCobbleMaterial = assets.acquireMaterial("material/cobble/moss", 3);
 
-		ObjectLoader loader = new ObjectLoader();
-		topRenderable = loader.loadFromFile("overworld/dungeon_entrance_top.obj").withMaterial(mossCobbleMaterial);
-		bottomRenderable = loader.loadFromFile("overworld/dungeon_entrance_bottom.obj").withMaterial(mossCobbleMaterial);
+		topMesh = assets.acquireMesh("overworld/dungeon_entrance_top.obj");
+		bottomMesh = assets.acquireMesh("overworld/dungeon_entrance_bottom.obj");
+	}
 
+	private static void initIfNeeded() {
+		if (topRenderable != null) {
+			return;
+		}
+		startLoading();
+		topRenderable = topMesh.get().withMaterial(mossCobbleMaterial.get());
+		bottomRenderable = bottomMesh.get().withMaterial(mossCobbleMaterial.get());
+	}
+
+	/**
+	 * stop using the entrance assets. Entrances created afterwards load them again
+	 */
+	public static void releaseAssets() {
+		if (topMesh == null) {
+			return;
+		}
+		mossCobbleMaterial.release();
+		topMesh.release();
+		bottomMesh.release();
+		mossCobbleMaterial = null;
+		topMesh = null;
+		bottomMesh = null;
+		topRenderable = null;
+		bottomRenderable = null;
 	}
 	//</editor-fold>
 
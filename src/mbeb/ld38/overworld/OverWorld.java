@@ -8,7 +8,9 @@ import org.joml.Quaternionf;
 import org.joml.Vector3f;
 
 import mbeb.opengldefault.animation.BoneTransformation;
-import mbeb.opengldefault.rendering.io.ObjectLoader;
+import mbeb.opengldefault.rendering.io.AssetGroup;
+import mbeb.opengldefault.rendering.io.AssetHandle;
+import mbeb.opengldefault.rendering.io.AssetRegistry;
 import mbeb.opengldefault.rendering.renderable.IRenderable;
 import mbeb.opengldefault.scene.SceneObject;
 import mbeb.opengldefault.scene.entities.EntityWorld;
@@ -40,6 +42,7 @@ public class OverWorld {
 	DungeonEntrance entrance;
 
 	private SceneObject parent;
+	private final AssetGroup assetHandles = new AssetGroup();
 
 	public OverWorld() {
 		init();
@@ -47,12 +50,16 @@ public class OverWorld {
 
 	private void init() {
 		parent = new SceneObject();
-		Material landMaterial = new Material("material/beach", 1);
-		Material anvilMaterial = new Material("material/metal", "jpg", 2);
+		AssetRegistry assets = AssetRegistry.getInstance();
+		AssetHandle<Material> landMaterial = assetHandles.add(assets.acquireMaterial("material/beach", 1));
+		AssetHandle<Material> anvilMaterial = assetHandles.add(assets.acquireMaterial("material/metal", "jpg", 2));
 
-		ObjectLoader loader = new ObjectLoader();
-		IRenderable island = loader.loadFromFile("overworld/island.obj").withMaterial(landMaterial);
-		IRenderable anvil = loader.loadFromFile("overworld/anvil.obj").withMaterial(anvilMaterial);
+		AssetHandle<IRenderable> islandMesh = assetHandles.add(assets.acquireMesh("overworld/island.obj"));
+		AssetHandle<IRenderable> anvilMesh = assetHandles.add(assets.acquireMesh("overworld/anvil.obj"));
+		PalmTree.startLoading();
+		DungeonEntrance.startLoading();
+		IRenderable island = islandMesh.get().withMaterial(landMaterial.get());
+		IRenderable anvil = anvilMesh.get().withMaterial(anvilMaterial.get());
 
 		parent.addSubObject(new SceneObject(island, new BoneTransformation(new Vector3f(), new Quaternionf(),
 				new Vector3f(1, 1, -1))));
@@ -89,4 +96,13 @@ public class OverWorld {
 		palms.forEach(palm -> palm.setLeavesVisible(visible));
 		entrance.setTopVisible(visible);
 	}
+
+	/**
+	 * stop using the assets of the island, its palms and the dungeon entrance
+	 */
+	public void releaseAssets() {
+		assetHandles.releaseAll();
+		PalmTree.releaseAssets();
+		DungeonEntrance.releaseAssets();
+	}
 }
@@ -4,7 +4,8 @@ import mbeb.opengldefault.animation.BoneTransformation;
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
 
-import mbeb.opengldefault.rendering.io.ObjectLoader;
+import mbeb.opengldefault.rendering.io.AssetHandle;
+import mbeb.opengldefault.rendering.io.AssetRegistry;
 import mbeb.opengldefault.rendering.renderable.IRenderable;
 import mbeb.opengldefault.scene.SceneObject;
 import mbeb.opengldefault.scene.materials.Material;
@@ -15,22 +16,54 @@ import mbeb.opengldefault.scene.materials.Material;
 public class PalmTree {
 
 	//<editor-fold desc="Static palm materials / renderables">
-	private static Material barkMaterial = null;
-	private static Material leafMaterial = null;
+	private static AssetHandle<Material> barkMaterial = null;
+	private static AssetHandle<Material> leafMaterial = null;
+	private static AssetHandle<IRenderable> trunkMesh = null;
+	private static AssetHandle<IRenderable> leavesMesh = null;
 	private static IRenderable trunkRenderable = null;
 	private static IRenderable leavesRenderable = null;
 
-	private static void initIfNeeded() {
-		if (barkMaterial != null) {
+	/**
+	 * start decoding the palm assets in the background, so that the first palm does not have to wait for all of them
+	 */
+	public static void startLoading() {
+		if (trunkMesh != null) {
 			return;
 		}
-		barkMaterial = new Material("material/palmTree", 1);
-		leafMaterial = new Material("material/palmLeaf", 1);
+		AssetRegistry assets = AssetRegistry.getInstance();
+		barkMaterial = assets.acquireMaterial("material/palmTree", 1);
+		leafMaterial = assets.acquireMaterial("material/palmLeaf", 1);
 
-		ObjectLoader loader = new ObjectLoader();
-		trunkRenderable = loader.loadFromFile("overworld/palmTrunk.obj").withMaterial(barkMaterial);
-		leavesRenderable = loader.loadFromFile("overworld/palmLeaves.obj").withMaterial(leafMaterial);
+		trunkMesh = assets.acquireMesh("overworld/palmTrunk.obj");
+		leavesMesh = assets.acquireMesh("overworld/palmLeaves.obj");
+	}
 
+	private static void initIfNeeded() {
+		if (trunkRenderable != null) {
+			return;
+		}
+		startLoading();
+		trunkRenderable = trunkMesh.get().withMaterial(barkMaterial.get());
+		leavesRenderable = leavesMesh.get().withMaterial(leafMaterial.get());
+	}
+
+	/**
+	 * stop using the palm assets. Palms created afterwards load them again
+	 */
+	public static void releaseAssets() {
+		if (trunkMesh == null) {
+			return;
+		}
+		barkMaterial.release();
+		leafMaterial.release();
+		trunkMesh.release();
+		leavesMesh.release();
+		barkMaterial = null;
+		leafMaterial = null;
+		trunkMesh = null;
+		leavesMesh = null;
+		trunkRenderable = null;
+		leavesRenderable = null;
 	}
 	//</editor-fold>
 
@@ -13,6 +13,8 @@ import mbeb.opengldefault.scene.materials.*;
 import mbeb.opengldefault.sound.*;
 
 public class Chest {
+	/** the static transform of the chest mesh */
+	private static final Matrix4f MeshRotation = new Matrix4f().rotate(new AxisAngle4f((float) (Math.PI) / 2, 0, 0, 1));
 	private static final Matrix4f MeshFlip = new Matrix4f(1, 0, 0, 0, 0, 0, -1, 0, 0, 1, 0, 0, 0, 0, 0, 1).rotate(new AxisAngle4f((float) Math.PI / 2, 0, 0, 1));
 
 	protected float interactionRadius;
@@ -21,14 +23,16 @@ public class Chest {
 	AnimatedMesh mesh;
 	ShaderProgram animationShader;
 	PlayerEntity playerEntity;
+	private final AssetGroup assetHandles = new AssetGroup();
 
 	public Chest(final ShaderProgram animationShader, final PlayerEntity playerEntity) {
 		this.interactionRadius = 3;
 
-		material = new Material("material/chest", 1);
-		mesh = new ObjectLoader().loadFromFileAnim("chest.fbx");
-		mesh.setTransform(new Matrix4f().rotate(new AxisAngle4f((float) (Math.PI) / 2, 0, 0, 1)));
-		//mesh.setTransform(MeshFlip);
+		final AssetRegistry assets = AssetRegistry.getInstance();
+		final AssetHandle<Material> materialHandle = assetHandles.add(assets.acquireMaterial("material/chest", 1));
+		final AssetHandle<AnimatedMesh> meshHandle = assetHandles.add(assets.acquireAnimatedMesh("chest.fbx", MeshRotation, 0));
+		material = materialHandle.get();
+		mesh = meshHandle.get();
 		mesh.getSkeleton().printRecursive("");
 
 		this.animationShader = animationShader;
@@ -51,4 +55,11 @@ public class Chest {
 		chest.addBehaviour(1, new ChestBehaviour(playerEntity, consumer).limited(interactionRadius));
 		return chest;
 	}
+
+	/**
+	 * stop using the shared chest assets. No chests can be spawned afterwards
+	 */
+	public void releaseAssets() {
+		assetHandles.releaseAll();
+	}
 }
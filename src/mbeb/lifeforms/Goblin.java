@@ -16,20 +16,31 @@ import mbeb.opengldefault.sound.*;
 
 public class Goblin extends Monster {
 
+	/**
+	 * baked frames per animation tick, shared by all goblins. The bones get interpolated between the frames, so a low
+	 * rate only cuts off motions faster than a frame
+	 */
+	private static final double ANIMATION_BAKE_RATE = 2;
+
+	/** the static transform of the goblin mesh */
+	private static final Matrix4f MeshRotation = new Matrix4f().rotate(new AxisAngle4f((float) (Math.PI) / -2, 1, 0, 0));
+
 	private static final Matrix4f MeshFlip = new Matrix4f(1, 0, 0, 0, 0, 0, -1, 0, 0, 1, 0, 0, 0, 0, 0, 1).rotate(new AxisAngle4f((float) Math.PI / 2, 0, 0, 1));
 
 	Material material;
 	AnimatedMesh mesh;
 	ShaderProgram animationShader;
+	private final AssetGroup assetHandles = new AssetGroup();
 
 	public Goblin(final PlayerEntity playerEntity, final ShaderProgram animationShader) {
 		super(0.6f, 8, 10, 2f, 5, 0.8f, 0.3f, 0.8f, 1f, playerEntity);//balancing here
 
-		mesh = new ObjectLoader().loadFromFileAnim("goblin.fbx");
-		mesh.setTransform(new Matrix4f().rotate(new AxisAngle4f((float) (Math.PI) / -2, 1, 0, 0)));
+		final AssetRegistry assets = AssetRegistry.getInstance();
+		final AssetHandle<AnimatedMesh> meshHandle = assetHandles.add(assets.acquireAnimatedMesh("goblin.fbx", MeshRotation, ANIMATION_BAKE_RATE));
+		final AssetHandle<Material> materialHandle = assetHandles.add(assets.acquireMaterial("material/goblin", 2));
+		mesh = meshHandle.get();
 		mesh.getSkeleton().printRecursive("");
-		//mesh.setTransform(MeshFlip);
-		material = new Material("material/goblin", 2);
+		material = materialHandle.get();
 
 		this.animationShader = animationShader;
 
@@ -39,9 +50,9 @@ public class Goblin extends Monster {
 	public MonsterEntity spawnNew(final Vector3f position, final float angle, final SceneObject parent, final HealthBarGUI healthBarGui, final SoundEnvironment soundEnvironment) {
 		final AnimationStateFacade goblinAnimatedRenderable = new AnimationStateFacade(mesh, material);
 
-		goblinAnimatedRenderable.registerAnimation("Idle", "Idle", 32);
-		goblinAnimatedRenderable.registerAnimation("Run", "Run", 32, 0.4f, 0.4f);
-		goblinAnimatedRenderable.registerAnimation("Jump", "Jump", 32, 0.1f, 0.1f, 1.1f);
+		final int idleAnimation = goblinAnimatedRenderable.registerAnimation("Idle", "Idle", 32);
+		final int runAnimation = goblinAnimatedRenderable.registerAnimation("Run", "Run", 32, 0.4f, 0.4f);
+		final int jumpAnimation = goblinAnimatedRenderable.registerAnimation("Jump", "Jump", 32, 0.1f, 0.1f, 1.1f);
 
 		final SceneObject monsterObject =
 				new SceneObject(goblinAnimatedRenderable, new BoneTransformation(position, new Quaternionf(new AxisAngle4f(angle, new Vector3f(0, 1, 0))), new Vector3f(0.5f)));
@@ -56,25 +67,24 @@ public class Goblin extends Monster {
 			@Override
 			public void update(final double deltaTime, final IEntity entity) {
 				final MonsterEntity goblin = (MonsterEntity) entity;
-				goblin.getAnimator().ensureRunning("Idle");
+				goblin.getAnimator().ensureRunning(idleAnimation);
 			}
 		});
 
-		monster.addBehaviour(1, new FollowingBehaviour(playerEntity, monster.getMovingSpeed()) {
-			@Override
-			public void update(final double deltaTime, final IEntity entity) {
-				super.update(deltaTime, entity);
-				final MonsterEntity goblin = (MonsterEntity) entity;
+		monster.addBehaviour(1, new GoblinFollowingBehaviour(playerEntity, monster.getMovingSpeed(), runAnimation).limited(monster.getVisionRange()));
 
-				goblin.getAnimator().ensureRunning("Run", true, true);
-			}
-		}.limited(monster.getVisionRange()));
-
-		monster.addBehaviour(0, new JumpingBehaviour(playerEntity));
+		monster.addBehaviour(0, new JumpingBehaviour(playerEntity, runAnimation, jumpAnimation));
 
 		monster.setHealthBarOffset(new Vector3f(0, 1.2f, 0));
 		monster.addTarsched(playerEntity);
 		return monster;
 	}
 
+	/**
+	 * stop using the shared goblin assets. No goblins can be spawned afterwards
+	 */
+	public void releaseAssets() {
+		assetHandles.releaseAll();
+	}
+
 }
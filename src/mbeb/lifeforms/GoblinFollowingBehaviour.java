@@ -5,8 +5,12 @@ import mbeb.opengldefault.scene.entities.*;
 
 public class GoblinFollowingBehaviour extends FollowingBehaviour {
 
-	public GoblinFollowingBehaviour(final IEntity followed, final float speed) {
+	/** the animation handle of the goblins AnimationStateFacade */
+	private final int runAnimation;
+
+	public GoblinFollowingBehaviour(final IEntity followed, final float speed, final int runAnimation) {
 		super(followed, speed);
+		this.runAnimation = runAnimation;
 	}
 
 	@Override
@@ -14,6 +18,6 @@ public class GoblinFollowingBehaviour extends FollowingBehaviour {
 		super.update(deltaTime, entity);
 		final MonsterEntity goblin = (MonsterEntity) entity;
 
-		goblin.getAnimator().ensureRunning("Follow");
+		goblin.getAnimator().ensureRunning(runAnimation, true, true);
 	}
 }
@@ -18,9 +18,15 @@ public class JumpingBehaviour extends ReferenceEntityBehaviour {
 
 	float timePassed;
 
-	public JumpingBehaviour(final PlayerEntity playerEntity) {
+	/** the animation handles of the goblins AnimationStateFacade */
+	private final int runAnimation;
+	private final int jumpAnimation;
+
+	public JumpingBehaviour(final PlayerEntity playerEntity, final int runAnimation, final int jumpAnimation) {
 		super(playerEntity);
 		this.isActive = false;
+		this.runAnimation = runAnimation;
+		this.jumpAnimation = jumpAnimation;
 	}
 
 	@Override
@@ -48,16 +54,16 @@ public class JumpingBehaviour extends ReferenceEntityBehaviour {
 		}
 		if (isActive) {
 			if (timePassed < attackPreperationTime) {
-				goblin.getAnimator().ensureRunning("Run", false, true);
+				goblin.getAnimator().ensureRunning(runAnimation, false, true);
 
 			} else if (timePassed < attackPreperationTime + attackDuration) {
 				final float progress = 1.0f - (attackPreperationTime + attackDuration - timePassed) / attackDuration;
 				goblin.setPosition(startingPosition.lerp(playerPosition, progress, new Vector3f()));
-				goblin.getAnimator().ensureRunning("Jump", isActive, false);
-				goblin.getAnimator().ensureRunning("Jump", false, false);
+				goblin.getAnimator().ensureRunning(jumpAnimation, isActive, false);
+				goblin.getAnimator().ensureRunning(jumpAnimation, false, false);
 				goblin.AttackSource.play();
 			} else {
-				goblin.getAnimator().ensureRunning("Run", false, true);
+				goblin.getAnimator().ensureRunning(runAnimation, false, true);
 
 			}
 			goblin.startStroke();
@@ -142,6 +142,11 @@ public abstract class LifeformEntity extends SceneEntity {
 	@Override
 	public void update(final double deltaTime) {
 		super.update(deltaTime);
+		//the health bar lives in a shared GUI
+		ParallelUpdate.defer(() -> updateHealthBar(deltaTime));
+	}
+
+	private void updateHealthBar(final double deltaTime) {
 		healthBar.update(deltaTime);
 
 		if (camera == null) {
@@ -22,19 +22,24 @@ public class Player extends Lifeform {
 	private final AnimatedMesh mesh;
 	private ShaderProgram animationShader;
 	private final IHeightSource heightSource;
+	private final AssetGroup assetHandles = new AssetGroup();
 
 	public static IRenderable lampRenderable;
 
 	public Player(final float healthpoints, final ShaderProgram animationShader, final IHeightSource heightSource) {
 		super(0.3f, healthpoints);
 		this.animationShader = animationShader;
-		material = new Material("material/samurai", 1);
-		mesh = new ObjectLoader().loadFromFileAnim("samurai.fbx");
-		mesh.setTransform(MeshFlip);
+		final AssetRegistry assets = AssetRegistry.getInstance();
+		final AssetHandle<Material> materialHandle = assetHandles.add(assets.acquireMaterial("material/samurai", 1));
+		final AssetHandle<AnimatedMesh> meshHandle = assetHandles.add(assets.acquireAnimatedMesh("samurai.fbx", MeshFlip, 0));
+		final AssetHandle<Material> lampMaterial = assetHandles.add(assets.acquireMaterial("material/lamp", 3));
+		final AssetHandle<IRenderable> lampMesh = assetHandles.add(assets.acquireMesh("lamp.obj"));
+		material = materialHandle.get();
+		mesh = meshHandle.get();
 		mesh.getSkeleton().printRecursive("");
 		this.heightSource = heightSource;
 
-		lampRenderable = new ObjectLoader().loadFromFile("lamp.obj").withMaterial(new Material("material/lamp", 3));
+		lampRenderable = lampMesh.get().withMaterial(lampMaterial.get());
 	}
 
 	public void setAnimationShader(final ShaderProgram animationShader) {
@@ -61,4 +66,11 @@ public class Player extends Lifeform {
 
 		return playerEntity;
 	}
+
+	/**
+	 * stop using the shared player and lamp assets
+	 */
+	public void releaseAssets() {
+		assetHandles.releaseAll();
+	}
 }
@@ -12,21 +12,31 @@ public class Sword {
 
 	private static Map<LootType, Material> swordMaterials = new EnumMap<>(LootType.class);
 	private static Map<SwordType, IRenderable> swordMeshes = new EnumMap<>(SwordType.class);
+	private static final AssetGroup assetHandles = new AssetGroup();
 
 	private static IRenderable getSwordMesh(final SwordType swordType) {
 		return swordMeshes.computeIfAbsent(swordType, (st) -> {
 			final String meshName = "sword/" + st.name() + ".obj";
-			return new ObjectLoader().loadFromFile(meshName);
+			return assetHandles.add(AssetRegistry.getInstance().acquireMesh(meshName)).get();
 		});
 	}
 
 	private static Material getMaterialFor(final LootType type) {
 		return swordMaterials.computeIfAbsent(type, (lootType) -> {
 			final String materialName = "material/sword/" + lootType.name();
-			return new Material(materialName, 1);
+			return assetHandles.add(AssetRegistry.getInstance().acquireMaterial(materialName, 1)).get();
 		});
 	}
 
+	/**
+	 * stop using the sword meshes and materials. Swords created afterwards load them again
+	 */
+	public static void releaseAssets() {
+		swordMeshes.clear();
+		swordMaterials.clear();
+		assetHandles.releaseAll();
+	}
+
 	protected final float damage;
 	protected final float range;
 	protected final float strokeTime;
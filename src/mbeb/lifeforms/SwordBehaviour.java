@@ -3,6 +3,7 @@ package mbeb.lifeforms;
 import java.util.Map.Entry;
 
 import mbeb.opengldefault.animation.AnimationStateFacade;
+import mbeb.opengldefault.scene.ParallelUpdate;
 import mbeb.opengldefault.scene.SceneObject;
 import mbeb.opengldefault.scene.behaviour.BoneTrackingBehaviour;
 import mbeb.opengldefault.scene.behaviour.IBehaviour;
@@ -28,7 +29,10 @@ public class SwordBehaviour implements IBehaviour {
 
 		for (Entry<LifeformEntity, Boolean> entry : sword.getTarscheds().entrySet()) {
 			if (!entry.getValue() && entry.getKey().getBounding().intersectsShape(sword.getBounding())) {
-				entry.getKey().damage(sword.getDamage());
+				final LifeformEntity target = entry.getKey();
+				final float damage = sword.getDamage();
+				//the target may live in another sub-tree
+				ParallelUpdate.defer(() -> target.damage(damage));
 				//entry.getKey().knockBack(sword.getDirection(), sword.getDamage() / 10f);
 				entry.setValue(true);
 			}
@@ -20,10 +20,21 @@ public class AnimatedMesh implements IRenderable {
 	/** all animations associated with this mesh */
 	private Map<String, Animation> animations;
 
-	/** how much my boundingBox could be bigger than the one of the static mesh */
+	/** how much my boundingBox could be bigger than the one of the static mesh (only without skinningBounds) */
 	private float boundingBoxSizeFactor;
 	/** my actual boundingBox */
 	private BoundingBox scaledBox;
+	/** the bind space extents of each bone, or null to use the scaled static box */
+	private SkinningBounds skinningBounds;
+	/** the box of the bind pose, and of each animation over all of its samples */
+	private BoundingBox bindPoseBox;
+	private Map<Animation, BoundingBox> animationBoxes = new HashMap<>();
+	/** the bind pose, decomposed once and copied for every new pose */
+	private Pose bindPose;
+	/** the pre-sampled palettes of each animation */
+	private Map<Animation, BakedAnimation> bakedAnimations = new HashMap<>();
+	/** the sample rate of the baked animations (0 if not baked) */
+	private double bakeRate;
 
 	public AnimatedMesh(VAORenderable mesh, Bone skeleton) {
 		this.mesh = mesh;
@@ -32,15 +43,111 @@ public class AnimatedMesh implements IRenderable {
 		scaledBox = null;
 	}
 
+	/**
+	 * @return a box containing the mesh in every pose of its animations
+	 */
 	@Override
 	public BoundingBox getBoundingBox() {
 		if (scaledBox == null) {
-			scaledBox = mesh.getBoundingBox().duplicate();
-			scaledBox.scale(boundingBoxSizeFactor);
+			if (skinningBounds == null) {
+				scaledBox = mesh.getBoundingBox().duplicate();
+				scaledBox.scale(boundingBoxSizeFactor);
+			} else {
+				calculateAnimationBoxes();
+			}
 		}
 		return scaledBox;
 	}
 
+	/**
+	 * @return the box of the mesh in its bind pose
+	 */
+	public BoundingBox getBindPoseBoundingBox() {
+		if (skinningBounds == null) {
+			return getBoundingBox();
+		}
+		if (bindPoseBox == null) {
+			calculateAnimationBoxes();
+		}
+		return bindPoseBox;
+	}
+
+	/**
+	 * @param animation
+	 *            one of this meshs animations
+	 * @return a box containing every sample of the animation (played alone at full strength), or null
+	 */
+	public BoundingBox getAnimationBoundingBox(Animation animation) {
+		if (skinningBounds == null) {
+			return getBoundingBox();
+		}
+		if (bindPoseBox == null) {
+			calculateAnimationBoxes();
+		}
+		return animationBoxes.get(animation);
+	}
+
+	public SkinningBounds getSkinningBounds() {
+		return skinningBounds;
+	}
+
+	/**
+	 * use tight boxes skinned from the bone extents instead of the scaled static box. The boxes get sampled when
+	 * first needed, so the bone priorities of the animations should be set before
+	 *
+	 * @param skinningBounds
+	 *            the extents of the vertices influenced by each bone
+	 */
+	public void setSkinningBounds(SkinningBounds skinningBounds) {
+		this.skinningBounds = skinningBounds;
+		invalidateBoxes();
+	}
+
+	/**
+	 * sample the bind pose and all animations at their keyFrames and halfway between them, and skin the bone
+	 * extents with each sampled palette
+	 */
+	private void calculateAnimationBoxes() {
+		final Vector3f scratchMin = new Vector3f();
+		final Vector3f scratchMax = new Vector3f();
+		final Vector3f totalMin = new Vector3f(Float.POSITIVE_INFINITY);
+		final Vector3f totalMax = new Vector3f(Float.NEGATIVE_INFINITY);
+
+		Pose pose = defaultPose();
+		skinningBounds.include(pose.getPalette(), totalMin, totalMax, scratchMin, scratchMax);
+		bindPoseBox = SkinningBounds.toBoundingBox(new Vector3f(totalMin), new Vector3f(totalMax));
+
+		animationBoxes.clear();
+		for (Animation animation : getAnimations().values()) {
+			final Vector3f min = new Vector3f(Float.POSITIVE_INFINITY);
+			final Vector3f max = new Vector3f(Float.NEGATIVE_INFINITY);
+			final int keyFrames = animation.getKeyFrameCount();
+			for (int sample = 0; sample < keyFrames * 2 - 1; sample++) {
+				final double before = animation.getKeyFrameTimeStamp(sample / 2);
+				final double timeStamp = sample % 2 == 0 ? before : (before + animation.getKeyFrameTimeStamp(sample / 2 + 1)) / 2;
+				pose = defaultPose(pose);
+				final Pose clipPose = animation.samplePose(timeStamp);
+				if (clipPose != null) {
+					clipPose.mixInto(1, pose);
+				}
+				skinningBounds.include(pose.getPalette(), min, max, scratchMin, scratchMax);
+			}
+			totalMin.min(min);
+			totalMax.max(max);
+			animationBoxes.put(animation, SkinningBounds.toBoundingBox(min, max));
+		}
+		scaledBox = SkinningBounds.toBoundingBox(totalMin, totalMax);
+	}
+
+	/**
+	 * forget all boxes, they get recalculated when needed
+	 */
+	private void invalidateBoxes() {
+		scaledBox = null;
+		bindPoseBox = null;
+		animationBoxes.clear();
+	}
+
 	@Override
 	public void render(ShaderProgram shader) {
 		mesh.render(shader);
@@ -60,6 +167,7 @@ public class AnimatedMesh implements IRenderable {
 	public void addAnimation(Animation anim) {
 		anim.setSkeleton(skeleton);
 		getAnimations().put(anim.getName(), anim);
+		invalidateBoxes();
 	}
 
 	public Bone getSkeleton() {
@@ -81,12 +189,31 @@ public class AnimatedMesh implements IRenderable {
 	 * @return the default bind pose of this mesh
 	 */
 	public Pose defaultPose() {
-		Pose defaultPose = new Pose(skeleton, getTransform());
+		return new Pose(getBindPose());
+	}
 
-		skeleton.foreach((Bone bone) -> defaultPose.put(bone.getName(),
-				new BoneTransformation(bone.getDefaultBoneTransform())));
+	/**
+	 * write the default bind pose of this mesh into an existing pose
+	 *
+	 * @param dest
+	 *            a pose returned by {@link #defaultPose()} earlier, or null
+	 * @return dest, or a new pose if dest is null or was created before the transform changed
+	 */
+	public Pose defaultPose(Pose dest) {
+		final Pose bind = getBindPose();
+		if (dest == null || dest.getTransform() != bind.getTransform() || dest.getBoneCount() != bind.getBoneCount()) {
+			return new Pose(bind);
+		}
+		return dest.set(bind);
+	}
 
-		return defaultPose;
+	private Pose getBindPose() {
+		if (bindPose == null) {
+			final Pose pose = new Pose(skeleton, getTransform());
+			skeleton.foreach((Bone bone) -> pose.put(bone.getIndex(), bone.getDefaultBoneTransform()));
+			bindPose = pose;
+		}
+		return bindPose;
 	}
 
 	@Override
@@ -101,10 +228,42 @@ public class AnimatedMesh implements IRenderable {
 	 */
 	public void setTransform(Matrix4f transform) {
 		mesh.setTransform(transform);
+		bindPose = null;
+		invalidateBoxes();
+		if (bakeRate > 0) {
+			//the palettes contain the old transform
+			bakeAnimations(bakeRate);
+		}
+	}
+
+	/**
+	 * pre-sample all animations of this mesh into skinning-matrix palettes, that are shared by all
+	 * {@link AnimatedRenderable}s of this mesh
+	 *
+	 * @param samplesPerTimeUnit
+	 *            how many frames to bake per unit of animation time
+	 */
+	public void bakeAnimations(double samplesPerTimeUnit) {
+		bakeRate = samplesPerTimeUnit;
+		bakedAnimations.clear();
+		for (Animation animation : getAnimations().values()) {
+			bakedAnimations.put(animation, new BakedAnimation(this, animation, samplesPerTimeUnit));
+		}
+	}
+
+	/**
+	 * @param animation
+	 *            one of this meshs animations
+	 * @return the baked palettes of that animation, or null if it was not baked
+	 */
+	public BakedAnimation getBakedAnimation(Animation animation) {
+		return bakedAnimations.get(animation);
 	}
 
 	public void setBoundingBoxSizeFactor(float boundingBoxSizeFactor) {
 		this.boundingBoxSizeFactor = boundingBoxSizeFactor;
-		scaledBox = null;
+		if (skinningBounds == null) {
+			scaledBox = null;
+		}
 	}
 }
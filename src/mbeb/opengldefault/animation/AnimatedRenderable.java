@@ -2,21 +2,95 @@ package mbeb.opengldefault.animation;
 
 import java.util.*;
 
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
 import mbeb.opengldefault.rendering.renderable.*;
 import mbeb.opengldefault.gl.shader.*;
 import mbeb.opengldefault.scene.*;
 
 /**
  * an animatedMesh together with some animation-state
+ * <p>
+ * The pose can be evaluated ahead of rendering by a {@link PoseEvaluator}: {@link #evaluatePose()} writes a back
+ * buffer and {@link #swapPoseBuffers()} publishes it. Renderables that were not evaluated in the last update fall
+ * back to evaluating their pose lazily.
  */
 public class AnimatedRenderable implements IRenderable {
 
+	private static final String BONE_UNIFORM_NAME = "boneTransforms";
+
 	private final AnimatedMesh mesh;
 	private List<Animator> currentAnimations = new ArrayList<>();
 	private final Object animatorLock = new Object();
+	/** the amount of updates so far */
+	private long updateCount = 0;
 
+	/** the box of the current blend, calculated lazily */
 	private BoundingBox animatedBoundingBox = null;
+	/** storage for the box of the current blend, reused every update */
+	private final BoundingBox animatedBoxStorage = new BoundingBox(new Vector3f(), new Vector3f());
+	private final BoundingBox emptyBox = new BoundingBox.Empty();
+	/** scratch storage for the box calculation, reused every update */
+	private final Vector3f boxMin = new Vector3f();
+	private final Vector3f boxMax = new Vector3f();
+	private final Vector3f scratchMin = new Vector3f();
+	private final Vector3f scratchMax = new Vector3f();
+	/** the lazily evaluated pose of this frame */
 	private Pose currentPose = null;
+	/** storage for the lazily evaluated pose, reused every frame */
+	private Pose lazyPoseStorage = null;
+
+	/** whether to read the bone palette from the meshs baked animations when possible */
+	private boolean useBakedAnimations = true;
+	/** storage for palettes interpolated between two baked frames */
+	private Matrix4f[] interpolatedPalette = null;
+	/** scratch copy of the animators, sorted by strength */
+	private final List<Animator> sortedAnimators = new ArrayList<>();
+
+	//<editor-fold desc="pose buffers">
+	/** the pose and palette published for rendering and bone tracking */
+	private Pose frontPose = null;
+	private Matrix4f[] frontPalette = null;
+	/** the pose and palette written by the last evaluation */
+	private Pose backPose = null;
+	private Matrix4f[] backPalette = null;
+	/** the palette and pose storage owned by this renderable, swapped together with the buffers */
+	private Matrix4f[] frontStorage = null;
+	private Matrix4f[] backStorage = null;
+	private Pose frontPoseStorage = null;
+	private Pose backPoseStorage = null;
+	/**
+	 * the palette published last. Unlike the front buffer it is kept while this renderable is not evaluated, so
+	 * bone tracking never has to evaluate the pose itself
+	 */
+	private Matrix4f[] trackingPalette = null;
+	/** the bind transform of each bone, to get the bone transforms back from the tracking palette */
+	private Matrix4f[] bindTransforms = null;
+	/** the published and the evaluated palette, already written for uploading */
+	private BonePaletteBuffer frontUpload = null;
+	private BonePaletteBuffer backUpload = null;
+	/** whether the front buffer was published since the last update */
+	private boolean published = false;
+	//</editor-fold>
+
+	//<editor-fold desc="level of detail">
+	/** a policy overriding the one of the PoseEvaluator, or null */
+	private AnimationLodPolicy lodPolicy = null;
+	/** the amount of updates between two evaluations */
+	private int lodInterval = 1;
+	/** the updates since the last evaluation (0 if an evaluation is due) */
+	private int lodStep = 0;
+	/** whether lodFrom and lodTo hold evaluated palettes */
+	private boolean lodHistoryValid = false;
+	/** the palettes of the last two evaluations, and storage for the interpolation between them */
+	private Matrix4f[] lodFrom = null;
+	private Matrix4f[] lodTo = null;
+	private Matrix4f[] lodBlend = null;
+	/** lodFrom and lodTo split into their parts, to interpolate between them */
+	private DecomposedPalette lodFromParts = null;
+	private DecomposedPalette lodToParts = null;
+	//</editor-fold>
 
 	public AnimatedRenderable(AnimatedMesh mesh) {
 		this.mesh = mesh;
@@ -29,20 +103,231 @@ public class AnimatedRenderable implements IRenderable {
 	@Override
 	public void render(ShaderProgram shader) {
 		//update pose uniforms
-		getCurrentPose().setUniformData(shader, "boneTransforms");
+		if (!published || frontPalette == null) {
+			Matrix4f[] palette = getBakedPalette(getInterpolatedPalette());
+			if (palette == null) {
+				palette = getCurrentPose().getPalette();
+			}
+			getFrontUpload().write(palette);
+		}
+		getFrontUpload().upload(shader, BONE_UNIFORM_NAME);
 		mesh.render(shader);
 	}
 
+	/**
+	 * read the skinning matrices from a baked animation. This is only possible while a single animation runs at
+	 * full strength, mixed poses still get evaluated on the bone hierarchy
+	 *
+	 * @param storage
+	 *            where to interpolate between two baked frames
+	 * @return the current palette, or null if the pose has to be evaluated
+	 */
+	private Matrix4f[] getBakedPalette(Matrix4f[] storage) {
+		if (!useBakedAnimations) {
+			return null;
+		}
+		synchronized (animatorLock) {
+			if (getCurrentAnimations().size() != 1) {
+				return null;
+			}
+			final Animator animator = getCurrentAnimations().get(0);
+			if (Math.abs(animator.getCurrentStrength() - 1) > Pose.LERP_SHORTCUT_EPSILON) {
+				return null;
+			}
+			final BakedAnimation baked = mesh.getBakedAnimation(animator.getAnimation());
+			if (baked == null || baked.getBoneCount() != storage.length) {
+				return null;
+			}
+			return baked.getPalette(animator.getSampleTime(), storage);
+		}
+	}
+
+	private Matrix4f[] getInterpolatedPalette() {
+		if (interpolatedPalette == null) {
+			interpolatedPalette = createPalette();
+		}
+		return interpolatedPalette;
+	}
+
+	private BonePaletteBuffer getFrontUpload() {
+		if (frontUpload == null) {
+			frontUpload = new BonePaletteBuffer(mesh.getSkeleton().boneCount());
+		}
+		return frontUpload;
+	}
+
+	/**
+	 * @return a new palette with one matrix per bone
+	 */
+	private Matrix4f[] createPalette() {
+		final Matrix4f[] palette = new Matrix4f[mesh.getSkeleton().boneCount()];
+		for (int bone = 0; bone < palette.length; bone++) {
+			palette[bone] = new Matrix4f();
+		}
+		return palette;
+	}
+
+	/**
+	 * evaluate the pose of this frame into the back buffer. Only touches the state of this renderable, so
+	 * different renderables can be evaluated in parallel
+	 */
+	public void evaluatePose() {
+		if (backStorage == null) {
+			backStorage = createPalette();
+			frontStorage = createPalette();
+			backUpload = new BonePaletteBuffer(backStorage.length);
+		}
+		final Matrix4f[] baked = getBakedPalette(backStorage);
+		if (baked != null) {
+			backPose = null;
+			backPalette = baked;
+		} else {
+			backPoseStorage = calculatePose(backPoseStorage);
+			backPose = backPoseStorage;
+			backPalette = backPose.getPalette();
+		}
+		backUpload.write(backPalette);
+	}
+
+	/**
+	 * publish the back buffer written by {@link #evaluatePose()}
+	 */
+	public void swapPoseBuffers() {
+		final Matrix4f[] storage = frontStorage;
+		frontStorage = backStorage;
+		backStorage = storage;
+		final Pose poseStorage = frontPoseStorage;
+		frontPoseStorage = backPoseStorage;
+		backPoseStorage = poseStorage;
+		final BonePaletteBuffer upload = getFrontUpload();
+		frontUpload = backUpload;
+		backUpload = upload;
+
+		frontPose = backPose;
+		frontPalette = backPalette;
+		backPose = null;
+		backPalette = null;
+		published = true;
+		animatedBoundingBox = null;
+
+		if (lodInterval > 1 && frontPalette != null) {
+			pushLodPalette(frontPalette);
+			//show the previous evaluation, the way to the new one gets interpolated by the following updates
+			frontPalette = lodFrom;
+			frontUpload.write(frontPalette);
+			lodStep = 1;
+		}
+		trackingPalette = frontPalette;
+	}
+
+	/**
+	 * remember a newly evaluated palette for the interpolation between evaluations
+	 */
+	private void pushLodPalette(Matrix4f[] palette) {
+		if (lodFrom == null) {
+			lodFrom = createPalette();
+			lodTo = createPalette();
+			lodBlend = createPalette();
+			lodFromParts = new DecomposedPalette(lodBlend.length);
+			lodToParts = new DecomposedPalette(lodBlend.length);
+		}
+		final int bones = Math.min(palette.length, lodTo.length);
+		for (int bone = 0; bone < bones; bone++) {
+			lodFrom[bone].set(lodHistoryValid ? lodTo[bone] : palette[bone]);
+			lodTo[bone].set(palette[bone]);
+		}
+		if (lodHistoryValid) {
+			final DecomposedPalette parts = lodFromParts;
+			lodFromParts = lodToParts;
+			lodToParts = parts;
+		} else {
+			lodFromParts.set(lodFrom);
+		}
+		lodToParts.set(lodTo);
+		lodHistoryValid = true;
+	}
+
+	/**
+	 * @param interval
+	 *            the amount of updates between two evaluations of the pose (1 to evaluate in every update)
+	 */
+	public void setLodInterval(int interval) {
+		final int newInterval = Math.max(1, interval);
+		if (newInterval != lodInterval) {
+			lodInterval = newInterval;
+			lodStep = 0;
+			//the history is not kept up to date at interval 1, and would be interpolated at the wrong speed otherwise
+			lodHistoryValid = false;
+		}
+	}
+
+	public int getLodInterval() {
+		return lodInterval;
+	}
+
+	/**
+	 * @return true if the pose has to be evaluated in this update, false if it can be interpolated from earlier
+	 *         evaluations with {@link #skipPoseEvaluation()}
+	 */
+	public boolean isPoseEvaluationDue() {
+		return lodInterval <= 1 || lodStep == 0 || !lodHistoryValid;
+	}
+
+	/**
+	 * publish a palette interpolated between the last two evaluations (per bone, see {@link DecomposedPalette})
+	 * instead of evaluating the pose. The published pose stays the one of the last evaluation
+	 */
+	public void skipPoseEvaluation() {
+		final float factor = (float) lodStep / lodInterval;
+		frontPalette = DecomposedPalette.interpolate(lodFromParts, lodToParts, factor, lodBlend);
+		getFrontUpload().write(frontPalette);
+		trackingPalette = frontPalette;
+		published = true;
+		animatedBoundingBox = null;
+		lodStep = (lodStep + 1) % lodInterval;
+	}
+
+	/**
+	 * @return the policy overriding the one of the PoseEvaluator, or null
+	 */
+	public AnimationLodPolicy getLodPolicy() {
+		return lodPolicy;
+	}
+
+	/**
+	 * @param lodPolicy
+	 *            a policy for this renderable only, or null to use the one of the PoseEvaluator
+	 */
+	public void setLodPolicy(AnimationLodPolicy lodPolicy) {
+		this.lodPolicy = lodPolicy;
+	}
+
 	@Override
 	public void update(double deltaTime) {
 		getCurrentAnimations().forEach((Animator anim) -> anim.update(deltaTime));
 
 		//delete all animators from the list that have finished their animation
 		getCurrentAnimations().removeIf(Animator::hasEnded);
+		updateCount++;
 
 		mesh.update(deltaTime);
 		animatedBoundingBox = null;
 		currentPose = null;
+		if (!published) {
+			//not evaluated in the last update (eg. invisible), so the front buffer is outdated
+			frontPose = null;
+			frontPalette = null;
+			lodHistoryValid = false;
+			lodStep = 0;
+		}
+		published = false;
+	}
+
+	/**
+	 * @return the amount of updates so far. Animators only end during an update
+	 */
+	public long getUpdateCount() {
+		return updateCount;
 	}
 
 	public List<Animator> getCurrentAnimations() {
@@ -58,34 +343,148 @@ public class AnimatedRenderable implements IRenderable {
 		}
 	}
 
+	/**
+	 * @return a box containing this renderable in every pose of its meshs animations, which does not change while
+	 *         animating
+	 */
 	@Override
 	public BoundingBox getBoundingBox() {
 		return mesh.getBoundingBox();
 	}
 
+	/**
+	 * get a tight box for the current blend of animations. The published palette gets skinned if there is one,
+	 * otherwise the precomputed boxes of the running animations are combined with the bind pose box
+	 *
+	 * @return the box of the current pose, valid until the next update or evaluation
+	 */
+	public BoundingBox getAnimatedBoundingBox() {
+		BoundingBox box = animatedBoundingBox;
+		if (box != null) {
+			return box;
+		}
+		final SkinningBounds bounds = mesh.getSkinningBounds();
+		final Matrix4f[] palette = frontPalette;
+		if (bounds == null) {
+			box = mesh.getBoundingBox();
+		} else if (published && palette != null) {
+			final boolean skinned = bounds.calculate(palette, boxMin, boxMax, scratchMin, scratchMax);
+			box = skinned ? animatedBoxStorage.setExtents(boxMin, boxMax) : emptyBox;
+		} else {
+			boxMin.set(Float.POSITIVE_INFINITY);
+			boxMax.set(Float.NEGATIVE_INFINITY);
+			includeExtents(mesh.getBindPoseBoundingBox());
+			synchronized (animatorLock) {
+				final List<Animator> animators = getCurrentAnimations();
+				for (int i = 0; i < animators.size(); i++) {
+					includeExtents(mesh.getAnimationBoundingBox(animators.get(i).getAnimation()));
+				}
+			}
+			box = boxMin.x <= boxMax.x ? animatedBoxStorage.setExtents(boxMin, boxMax) : emptyBox;
+		}
+		animatedBoundingBox = box;
+		return box;
+	}
+
+	/**
+	 * grow boxMin and boxMax to contain the local extents of a box
+	 *
+	 * @param box
+	 *            the box to include, may be null
+	 */
+	private void includeExtents(final BoundingBox box) {
+		if (box == null || box.isEmpty()) {
+			return;
+		}
+		boxMin.min(box.getLocalStart());
+		box.getLocalStart().add(box.getLocalSize(), scratchMax);
+		boxMax.max(scratchMax);
+	}
+
+	/**
+	 * @see #getAnimatedBoundingBox()
+	 */
+	@Override
+	public BoundingBox getCurrentBoundingBox() {
+		return getAnimatedBoundingBox();
+	}
+
 
 	@Override
 	public boolean hasAnimations() {
 		return true;
 	}
 
+	/**
+	 * @return the published pose of the last evaluation, or a lazily evaluated pose if there is none
+	 */
 	@Override
 	public Pose getCurrentPose() {
-		if (currentPose == null) {
-			currentPose = mesh.defaultPose();
-			synchronized (animatorLock) {
+		final Pose front = frontPose;
+		if (front != null) {
+			return front;
+		}
+		synchronized (animatorLock) {
+			if (currentPose == null) {
+				lazyPoseStorage = calculatePose(lazyPoseStorage);
+				currentPose = lazyPoseStorage;
+			}
+			return currentPose;
+		}
+	}
 
-				//mix these animations from stronger strength to lower to minimize artifacts
-				List<Animator> currentAnimationsSorted = getCurrentAnimations();
-				currentAnimationsSorted.sort((Animator a1, Animator a2) -> -Double.compare(a1.getCurrentStrength(), a2.getCurrentStrength()));
+	/**
+	 * get the transformation of a bone in mesh space (like {@link BoneState#getPoseBoneTransform()}) from the palette
+	 * published last, so it also works for baked animations. Renderables that were never evaluated by a
+	 * {@link PoseEvaluator} evaluate their pose lazily instead
+	 *
+	 * @param bone
+	 *            the index of the bone
+	 * @param dest
+	 *            where to store the transformation
+	 * @return dest
+	 */
+	public Matrix4f getBoneTransform(int bone, Matrix4f dest) {
+		final Matrix4f[] palette = trackingPalette;
+		if (palette == null) {
+			return dest.set(getCurrentPose().get(bone).getPoseBoneTransform());
+		}
+		if (bindTransforms == null) {
+			final Matrix4f[] transforms = new Matrix4f[palette.length];
+			mesh.getSkeleton().foreach((Bone b) -> {
+				if (b.getIndex() >= 0 && b.getIndex() < transforms.length) {
+					transforms[b.getIndex()] = b.getBindTransform();
+				}
+			});
+			bindTransforms = transforms;
+		}
+		//the palette holds poseBoneTransform * inverseBindTransform
+		return palette[bone].mul(bindTransforms[bone], dest);
+	}
 
-				for (Animator anim : currentAnimationsSorted) {
-					Pose p = anim.getCurrentPose();
-					p.mixInto(anim.getCurrentStrength(), currentPose);
+	/**
+	 * mix all running animations into the default pose
+	 *
+	 * @param dest
+	 *            the pose to overwrite, or null
+	 * @return dest, or a new pose if dest could not be reused
+	 */
+	private Pose calculatePose(Pose dest) {
+		final Pose pose = mesh.defaultPose(dest);
+		synchronized (animatorLock) {
+			//mix these animations from stronger strength to lower to minimize artifacts
+			sortedAnimators.addAll(getCurrentAnimations());
+			sortedAnimators.sort((Animator a1, Animator a2) -> -Double.compare(a1.getCurrentStrength(), a2.getCurrentStrength()));
+
+			for (Animator anim : sortedAnimators) {
+				Pose p = anim.getCurrentPose();
+				if (p != null) {
+					p.mixInto(anim.getCurrentStrength(), pose);
 				}
 			}
+			sortedAnimators.clear();
 		}
-		return currentPose;
+		return pose;
 	}
 
 	/**
@@ -116,4 +515,16 @@ public class AnimatedRenderable implements IRenderable {
 		}
 		return false;
 	}
+
+	public boolean isUseBakedAnimations() {
+		return useBakedAnimations;
+	}
+
+	/**
+	 * @param useBakedAnimations
+	 *            true to read from the meshs baked animations (if it has any) instead of evaluating the bones
+	 */
+	public void setUseBakedAnimations(boolean useBakedAnimations) {
+		this.useBakedAnimations = useBakedAnimations;
+	}
 }
@@ -2,10 +2,14 @@ package mbeb.opengldefault.animation;
 
 import java.util.*;
 
+import org.joml.Matrix4f;
 import org.lwjgl.assimp.*;
 
 /**
- * a list of keyframes and a priority mask for an AnimatedMesh
+ * a list of keyframes and a priority mask for an AnimatedMesh.
+ * <p>
+ * Instead of keyFrames holding full poses, an animation can also store one compressed {@link AnimationTrack} per
+ * animated bone (see {@link #setTracks}). The keyFrame timestamps are then kept as a plain timeline.
  */
 public class Animation {
 
@@ -15,6 +19,15 @@ public class Animation {
 	private String name;
 	private Bone skeleton;
 
+	/** the compressed channels, indexed by bone (null for bones this animation does not move), or null */
+	private AnimationTrack[] tracks = null;
+	/** the merged timestamps of all tracks */
+	private double[] trackTimeStamps = null;
+	/** the priority of each bone, for tracks */
+	private int[] trackPriorities = null;
+	/** the transform of sampled poses, for tracks */
+	private Matrix4f trackTransform = null;
+
 	/** how important each bone is for this animation */
 	private Map<Bone, Integer> bonePriorities = new HashMap<>();
 
@@ -44,11 +57,90 @@ public class Animation {
 	 */
 	public void setBonePriority(Bone bone, int value) {
 		bonePriorities.put(bone, value);
-		for (KeyFrame keyFrame: keyFrames) {
-			keyFrame.getPose().setBonePriority(bone.getName(), value);
+		for (KeyFrame keyFrame: getKeyFrames()) {
+			keyFrame.getPose().setBonePriority(bone.getIndex(), value);
+		}
+		if (trackPriorities != null && bone.getIndex() >= 0 && bone.getIndex() < trackPriorities.length) {
+			trackPriorities[bone.getIndex()] = value;
 		}
 	}
 
+	/**
+	 * store this animation as compressed tracks instead of keyFrames
+	 *
+	 * @param tracks
+	 *            the track of each bone (indexed by bone, null for bones without animation)
+	 * @param timeStamps
+	 *            the timestamps of all keys in all channels, in any order. Near timestamps get merged into one
+	 *            keyFrame of the timeline
+	 * @param transform
+	 *            the transform of sampled poses
+	 */
+	public void setTracks(AnimationTrack[] tracks, double[] timeStamps, Matrix4f transform) {
+		this.tracks = tracks;
+		this.trackTransform = transform;
+		this.trackPriorities = new int[tracks.length];
+
+		final double[] sorted = timeStamps.clone();
+		Arrays.sort(sorted);
+		int count = 0;
+		for (double timeStamp : sorted) {
+			if (count == 0 || timeStamp - sorted[count - 1] > KEY_FRAME_MERGE_TOLERANCE) {
+				sorted[count++] = timeStamp;
+			}
+		}
+		trackTimeStamps = Arrays.copyOf(sorted, count);
+		getKeyFrames().clear();
+	}
+
+	/**
+	 * @return true if this animation is stored as compressed tracks
+	 */
+	public boolean hasTracks() {
+		return tracks != null;
+	}
+
+	/**
+	 * @return the compressed tracks (indexed by bone), or null if this animation is stored as keyFrames
+	 */
+	public AnimationTrack[] getTracks() {
+		return tracks;
+	}
+
+	/**
+	 * @return the amount of keyFrames (or merged track timestamps)
+	 */
+	public int getKeyFrameCount() {
+		return hasTracks() ? trackTimeStamps.length : getKeyFrames().size();
+	}
+
+	/**
+	 * @param index
+	 *            the index of a keyFrame
+	 * @return the timestamp of that keyFrame
+	 */
+	public double getKeyFrameTimeStamp(int index) {
+		return hasTracks() ? trackTimeStamps[index] : getKeyFrames().get(index).getTimeStamp();
+	}
+
+	/**
+	 * @return a new empty pose of the size this animation samples, or null if there are no keyFrames
+	 */
+	public Pose createPose() {
+		if (hasTracks()) {
+			return new Pose(skeleton, trackTransform, tracks.length);
+		}
+		return getKeyFrames().isEmpty() ? null : new Pose(getKeyFrames().get(0).getPose());
+	}
+
+	/**
+	 * @return storage for the key index of each track between two samples (see
+	 *         {@link #samplePose(double, int, Pose, int[])}), or null if this animation has no tracks
+	 */
+	public int[] createTrackCursors() {
+		return hasTracks() ? new int[tracks.length] : null;
+	}
+
 	public double getDuration() {
 		return duration;
 	}
@@ -59,10 +151,10 @@ public class Animation {
 	 * @return
 	 */
 	public double getKeyFrameDistance() {
-		if (getKeyFrames().isEmpty()) {
+		if (getKeyFrameCount() == 0) {
 			return 0;
 		}
-		return getKeyFrames().get(getKeyFrames().size() - 1).getTimeStamp() - getKeyFrames().get(0).getTimeStamp();
+		return getKeyFrameTimeStamp(getKeyFrameCount() - 1) - getKeyFrameTimeStamp(0);
 	}
 
 	public void setSkeleton(Bone skeleton) {
@@ -85,6 +177,9 @@ public class Animation {
 		return name;
 	}
 
+	/**
+	 * @return the keyFrames of this animation (empty if it is stored as tracks)
+	 */
 	public List<KeyFrame> getKeyFrames() {
 		if (keyFrames == null) {
 			keyFrames = new ArrayList<>();
@@ -98,14 +193,15 @@ public class Animation {
 	 * @param newOne
 	 */
 	public void mergeKeyFrame(KeyFrame newOne) {
-		for (KeyFrame k : getKeyFrames()) {
-			if (Math.abs(k.getTimeStamp() - newOne.getTimeStamp()) <= KEY_FRAME_MERGE_TOLERANCE) {
-				k.mergeWith(newOne);
-				return;
-			}
+		final List<KeyFrame> frames = getKeyFrames();
+		//the first keyFrame that could be near enough to merge with
+		final int near = findKeyFrame(newOne.getTimeStamp() - KEY_FRAME_MERGE_TOLERANCE);
+		if (near < frames.size() && frames.get(near).getTimeStamp() <= newOne.getTimeStamp() + KEY_FRAME_MERGE_TOLERANCE) {
+			frames.get(near).mergeWith(newOne);
+			return;
 		}
-		keyFrames.add(newOne);
-		keyFrames.sort(Comparator.comparingDouble(KeyFrame::getTimeStamp));
+		//keep the list sorted
+		frames.add(findKeyFrame(newOne.getTimeStamp()), newOne);
 	}
 
 	/**
@@ -117,18 +213,184 @@ public class Animation {
 	 * @return {before, after}
 	 */
 	public KeyFrame[] getBeforeAndAfter(double timeStamp) {
-		//todo maybe binary search for performance
+		final List<KeyFrame> frames = getKeyFrames();
+		if (hasTracks()) {
+			return new KeyFrame[] {null, null};
+		}
+		final int after = findKeyFrame(timeStamp);
+		return new KeyFrame[] {after > 0 ? frames.get(after - 1) : null, after < frames.size() ? frames.get(after) : null};
+	}
 
-		KeyFrame before = null;
-		KeyFrame after;
+	/**
+	 * binary search for the first keyFrame at or after the provided timestamp
+	 *
+	 * @param timeStamp
+	 *            the animations time to sample from
+	 * @return the index of the keyFrame after the timestamp (the one before is at index - 1). 0 if the timestamp lies
+	 *         before all keyFrames, the amount of keyFrames if it lies after all of them
+	 */
+	public int findKeyFrame(double timeStamp) {
+		int low = 0;
+		int high = getKeyFrameCount();
+		while(low < high) {
+			final int middle = (low + high) >>> 1;
+			if (getKeyFrameTimeStamp(middle) >= timeStamp) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
 
-		for (KeyFrame currentFrame : getKeyFrames()) {
-			after = currentFrame;
-			if (currentFrame.getTimeStamp() >= timeStamp) {
-				return new KeyFrame[] {before, after};
+	/**
+	 * like {@link #findKeyFrame(double)}, but first checks the keyFrames near the result of the last lookup. For
+	 * forward playback this is O(1)
+	 *
+	 * @param timeStamp
+	 *            the animations time to sample from
+	 * @param cursor
+	 *            the result of the previous lookup
+	 * @return the index of the keyFrame after the timestamp
+	 */
+	public int findKeyFrame(double timeStamp, int cursor) {
+		final int size = getKeyFrameCount();
+		for (int index = cursor; index >= 0 && index <= size && index <= cursor + 1; index++) {
+			if (isKeyFrameAfter(index, timeStamp)) {
+				return index;
+			}
+		}
+		return findKeyFrame(timeStamp);
+	}
+
+	/**
+	 * sample this animation at the given time (clamped to the keyFrame range)
+	 *
+	 * @param timeStamp
+	 *            the animations time to sample from
+	 * @return the interpolated pose, or null if there are no keyFrames
+	 */
+	public Pose samplePose(double timeStamp) {
+		return samplePose(timeStamp, findKeyFrame(timeStamp));
+	}
+
+	/**
+	 * sample this animation at the given time (clamped to the keyFrame range)
+	 *
+	 * @param timeStamp
+	 *            the animations time to sample from
+	 * @param after
+	 *            the index of the keyFrame after the timestamp, as returned by {@link #findKeyFrame(double)}
+	 * @return the interpolated pose, or null if there are no keyFrames
+	 */
+	public Pose samplePose(double timeStamp, int after) {
+		if (hasTracks()) {
+			return sampleTracks(timeStamp, createPose(), null);
+		}
+		final List<KeyFrame> frames = getKeyFrames();
+		if (frames.isEmpty()) {
+			return null;
+		}
+
+		//edge-case handling
+		if (after == 0) {
+			return frames.get(0).getPose();
+		} else if (after == frames.size()) {
+			return frames.get(after - 1).getPose();
+		}
+
+		final KeyFrame before = frames.get(after - 1);
+		final KeyFrame next = frames.get(after);
+		double lerpFactor = (timeStamp - before.getTimeStamp()) / (next.getTimeStamp() - before.getTimeStamp());
+
+		return Pose.lerp(before.getPose(), next.getPose(), lerpFactor);
+	}
+
+	/**
+	 * sample this animation at the given time (clamped to the keyFrame range) without allocating
+	 *
+	 * @param timeStamp
+	 *            the animations time to sample from
+	 * @param after
+	 *            the index of the keyFrame after the timestamp, as returned by {@link #findKeyFrame(double)}
+	 * @param dest
+	 *            storage for an interpolated pose, with the size of the keyFrame poses
+	 * @return the pose of a keyFrame, dest holding an interpolated pose, or null if there are no keyFrames
+	 */
+	public Pose samplePose(double timeStamp, int after, Pose dest) {
+		return samplePose(timeStamp, after, dest, null);
+	}
+
+	/**
+	 * sample this animation at the given time (clamped to the keyFrame range) without allocating. Tracks continue the
+	 * search for their keys at the cursors, so forward playback is O(1) per bone
+	 *
+	 * @param timeStamp
+	 *            the animations time to sample from
+	 * @param after
+	 *            the index of the keyFrame after the timestamp, as returned by {@link #findKeyFrame(double)}
+	 * @param dest
+	 *            storage for an interpolated pose, with the size of the keyFrame poses
+	 * @param trackCursors
+	 *            the key index of each track in the previous sample, updated in place (see
+	 *            {@link #createTrackCursors()}), or null to search every key
+	 * @return the pose of a keyFrame, dest holding an interpolated pose, or null if there are no keyFrames
+	 */
+	public Pose samplePose(double timeStamp, int after, Pose dest, int[] trackCursors) {
+		if (hasTracks()) {
+			return sampleTracks(timeStamp, dest, trackCursors);
+		}
+		final List<KeyFrame> frames = getKeyFrames();
+		if (frames.isEmpty()) {
+			return null;
+		}
+
+		//edge-case handling
+		if (after == 0) {
+			return frames.get(0).getPose();
+		} else if (after == frames.size()) {
+			return frames.get(after - 1).getPose();
+		}
+
+		final KeyFrame before = frames.get(after - 1);
+		final KeyFrame next = frames.get(after);
+		double lerpFactor = (timeStamp - before.getTimeStamp()) / (next.getTimeStamp() - before.getTimeStamp());
+
+		return Pose.lerp(before.getPose(), next.getPose(), lerpFactor, dest);
+	}
+
+	/**
+	 * sample every track at the given time
+	 *
+	 * @param trackCursors
+	 *            the key index of each track in the previous sample, or null
+	 * @return dest, or null if there are no keyFrames
+	 */
+	private Pose sampleTracks(double timeStamp, Pose dest, int[] trackCursors) {
+		if (trackTimeStamps.length == 0) {
+			return null;
+		}
+		dest.clear();
+		for (int bone = 0; bone < tracks.length; bone++) {
+			if (tracks[bone] != null) {
+				if (trackCursors != null) {
+					trackCursors[bone] = tracks[bone].sampleInto(timeStamp, dest, bone, trackCursors[bone]);
+				} else {
+					tracks[bone].sampleInto(timeStamp, dest, bone);
+				}
+				dest.setBonePriority(bone, trackPriorities[bone]);
 			}
-			before = currentFrame;
 		}
-		return new KeyFrame[] {before, null};
+		return dest;
+	}
+
+	/**
+	 * @return true if the keyFrame at index is the first one at or after the timestamp
+	 */
+	private boolean isKeyFrameAfter(int index, double timeStamp) {
+		final int size = getKeyFrameCount();
+		final boolean beforeMatches = index == 0 || getKeyFrameTimeStamp(index - 1) < timeStamp;
+		final boolean afterMatches = index == size || getKeyFrameTimeStamp(index) >= timeStamp;
+		return beforeMatches && afterMatches;
 	}
 }
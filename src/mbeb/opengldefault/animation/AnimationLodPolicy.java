@@ -0,0 +1,85 @@
+package mbeb.opengldefault.animation;
+
+import mbeb.opengldefault.logging.Log;
+
+/**
+ * Decides how often the pose of an animated character gets evaluated, depending on its distance to the camera.
+ * Characters beyond a threshold are only evaluated every few updates, their palettes get interpolated in between.
+ */
+public class AnimationLodPolicy {
+
+	private static final String TAG = "AnimationLodPolicy";
+
+	/** a policy that evaluates every visible pose in every update */
+	public static final AnimationLodPolicy FULL_RATE = new AnimationLodPolicy(Float.POSITIVE_INFINITY, 1, Float.POSITIVE_INFINITY, 1);
+
+	private static final float DEFAULT_REDUCED_DISTANCE = 20;
+	private static final int DEFAULT_REDUCED_INTERVAL = 2;
+	private static final float DEFAULT_MINIMAL_DISTANCE = 40;
+	private static final int DEFAULT_MINIMAL_INTERVAL = 4;
+
+	/** the distance from which on poses are evaluated at a reduced rate */
+	private final float reducedDistance;
+	/** the amount of updates between two evaluations at a reduced rate */
+	private final int reducedInterval;
+	/** the distance from which on poses are evaluated at the minimal rate */
+	private final float minimalDistance;
+	/** the amount of updates between two evaluations at the minimal rate */
+	private final int minimalInterval;
+
+	/**
+	 * create a policy with the default thresholds
+	 */
+	public AnimationLodPolicy() {
+		this(DEFAULT_REDUCED_DISTANCE, DEFAULT_REDUCED_INTERVAL, DEFAULT_MINIMAL_DISTANCE, DEFAULT_MINIMAL_INTERVAL);
+	}
+
+	/**
+	 * @param reducedDistance
+	 *            the camera distance (in world units) from which on poses are evaluated at a reduced rate
+	 * @param reducedInterval
+	 *            the amount of updates between two evaluations at the reduced rate
+	 * @param minimalDistance
+	 *            the camera distance from which on poses are evaluated at the minimal rate
+	 * @param minimalInterval
+	 *            the amount of updates between two evaluations at the minimal rate
+	 */
+	public AnimationLodPolicy(final float reducedDistance, final int reducedInterval, final float minimalDistance, final int minimalInterval) {
+		Log.assertTrue(TAG, reducedInterval >= 1 && minimalInterval >= 1, "evaluation intervals must be at least 1");
+		this.reducedDistance = reducedDistance;
+		this.reducedInterval = Math.max(1, reducedInterval);
+		this.minimalDistance = minimalDistance;
+		this.minimalInterval = Math.max(1, minimalInterval);
+	}
+
+	/**
+	 * @param distance
+	 *            the distance between the camera and a character
+	 * @return the amount of updates between two evaluations of its pose (1 to evaluate every update)
+	 */
+	public int getEvaluationInterval(final float distance) {
+		if (distance >= minimalDistance) {
+			return minimalInterval;
+		}
+		if (distance >= reducedDistance) {
+			return reducedInterval;
+		}
+		return 1;
+	}
+
+	public float getReducedDistance() {
+		return reducedDistance;
+	}
+
+	public int getReducedInterval() {
+		return reducedInterval;
+	}
+
+	public float getMinimalDistance() {
+		return minimalDistance;
+	}
+
+	public int getMinimalInterval() {
+		return minimalInterval;
+	}
+}
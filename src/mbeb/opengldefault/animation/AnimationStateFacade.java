@@ -1,6 +1,9 @@
 package mbeb.opengldefault.animation;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import mbeb.opengldefault.logging.Log;
 import mbeb.opengldefault.rendering.renderable.IRenderable;
@@ -8,7 +11,9 @@ import mbeb.opengldefault.rendering.renderable.IRenderableHolder;
 import mbeb.opengldefault.scene.materials.Material;
 
 /**
- * A manager wrapping an AnimatedRenderable having convenience functions to control Animations
+ * A manager wrapping an AnimatedRenderable having convenience functions to control Animations.
+ * Registering a preset returns an integer handle; code that controls the animations every frame should keep the
+ * handle instead of the preset name, which costs an extra map lookup per call.
  */
 public class AnimationStateFacade implements IRenderableHolder {
 
@@ -19,10 +24,14 @@ public class AnimationStateFacade implements IRenderableHolder {
 	/** the material that this thing want to be rendered with */
 	private Material material;
 
-	/** all the registered presets */
-	private Map<String, AnimatorPreset> presets;
-	/** the running instances of presets */
-	private Map<String, Animator> runningAnimations;
+	/** all the registered presets, indexed by their handle */
+	private List<AnimatorPreset> presets;
+	/** the handles of the registered presets by name, only needed for the name based accessors */
+	private Map<String, Integer> handles;
+	/** the running instance of each preset (indexed by handle), or null */
+	private Animator[] runningAnimations;
+	/** the update count of the renderable when the finished animators were last removed */
+	private long clearedUpdate = -1;
 
 	/**
 	 * create a new AnimationStateFacade around an AnimatedRenderable-instance.
@@ -32,8 +41,9 @@ public class AnimationStateFacade implements IRenderableHolder {
 	 */
 	public AnimationStateFacade(AnimatedRenderable renderable, Material material) {
 		this.renderable = renderable;
-		presets = new HashMap<>();
-		runningAnimations = new HashMap<>();
+		presets = new ArrayList<>();
+		handles = new HashMap<>();
+		runningAnimations = new Animator[0];
 		this.material = material;
 	}
 
@@ -63,54 +73,89 @@ public class AnimationStateFacade implements IRenderableHolder {
 	}
 
 	/**
-	 * Getter for the clean set of running animations
+	 * @param lodPolicy
+	 *            how often to evaluate the pose of this character depending on its distance to the camera, or null to
+	 *            use the policy of the scenes PoseEvaluator
+	 */
+	public void setAnimationLodPolicy(AnimationLodPolicy lodPolicy) {
+		renderable.setLodPolicy(lodPolicy);
+	}
+
+	/**
+	 * Getter for the clean running animations. Animators only end while the renderable updates, so the finished ones
+	 * get removed once per update instead of on every query
 	 *
-	 * @return
+	 * @return the running Animator of each handle, or null
 	 */
-	private Map<String, Animator> getRunningAnimations() {
-		clearRunningAnimations();
+	private Animator[] getRunningAnimations() {
+		long updateCount = renderable.getUpdateCount();
+		if (updateCount != clearedUpdate) {
+			clearRunningAnimations();
+			clearedUpdate = updateCount;
+		}
 		return runningAnimations;
 	}
 
 	/**
-	 * remove all the Animators from the runningAnimations-Map that have ended already
+	 * remove all the Animators from the runningAnimations-array that have ended already
 	 */
 	private void clearRunningAnimations() {
-		runningAnimations.entrySet().removeIf(entry -> entry.getValue().hasEnded());
+		for (int handle = 0; handle < runningAnimations.length; handle++) {
+			if (runningAnimations[handle] != null && runningAnimations[handle].hasEnded()) {
+				runningAnimations[handle] = null;
+			}
+		}
 	}
 
 	//region Animation Preset registration
 
+	/**
+	 * resolve the name of a formerly registered preset
+	 *
+	 * @param presetName
+	 *            the name the preset was registered with
+	 * @return the handle of the preset
+	 */
+	public int getHandle(String presetName) {
+		Integer handle = handles.get(presetName);
+		Log.assertTrue(TAG, handle != null, "No Preset called \"" + presetName + "\" found!");
+		return handle;
+	}
+
 	/**
 	 * accessor for Presets
 	 *
-	 * @param name
+	 * @param handle
 	 * @return
 	 */
-	private AnimatorPreset getPreset(String name) {
-		Log.assertTrue(TAG, presets.containsKey(name), "No Preset called \"" + name + "\" found!");
-		return presets.get(name);
+	private AnimatorPreset getPreset(int handle) {
+		Log.assertTrue(TAG, handle >= 0 && handle < presets.size(), "No Preset with handle " + handle + " found!");
+		return presets.get(handle);
 	}
 
-	private void registerAnimation(String name, AnimatorPreset preset) {
-		Log.assertFalse(TAG, presets.containsKey(name), "A preset with this name is already registered");
-		presets.put(name, preset);
+	private int registerAnimation(String name, AnimatorPreset preset) {
+		Log.assertFalse(TAG, handles.containsKey(name), "A preset with this name is already registered");
+		int handle = presets.size();
+		presets.add(preset);
+		handles.put(name, handle);
+		runningAnimations = Arrays.copyOf(runningAnimations, presets.size());
+		return handle;
 	}
 
-	public void registerAnimation(String presetName, String animationName) {
-		registerAnimation(presetName,
+	public int registerAnimation(String presetName, String animationName) {
+		return registerAnimation(presetName,
 				new AnimatorPreset(renderable.getAnimatedMesh().getAnimationByName(animationName)));
 	}
 
-	public void registerAnimation(String presetName, String animationName, double speed) {
-		registerAnimation(presetName, new AnimatorPreset(
+	public int registerAnimation(String presetName, String animationName, double speed) {
+		return registerAnimation(presetName, new AnimatorPreset(
 				renderable.getAnimatedMesh().getAnimationByName(animationName),
 				speed));
 	}
 
-	public void registerAnimation(String presetName, String animationName, double speed, double fadeInTime,
+	public int registerAnimation(String presetName, String animationName, double speed, double fadeInTime,
 			double fadeOutTime) {
-		registerAnimation(presetName, new AnimatorPreset(
+		return registerAnimation(presetName, new AnimatorPreset(
 				renderable.getAnimatedMesh().getAnimationByName(animationName),
 				speed, fadeInTime, fadeOutTime));
 	}
@@ -132,10 +177,11 @@ public class AnimationStateFacade implements IRenderableHolder {
 	 *            how long to fade out the animation (in seconds)
 	 * @param intensity
 	 *            an intensity factor for animations
+	 * @return the handle to operate on the preset with
 	 */
-	public void registerAnimation(String presetName, String animationName, double speed, double fadeInTime,
+	public int registerAnimation(String presetName, String animationName, double speed, double fadeInTime,
 			double fadeOutTime, double intensity) {
-		registerAnimation(presetName, new AnimatorPreset(
+		return registerAnimation(presetName, new AnimatorPreset(
 				renderable.getAnimatedMesh().getAnimationByName(animationName),
 				speed, fadeInTime, fadeOutTime, intensity));
 	}
@@ -147,9 +193,10 @@ public class AnimationStateFacade implements IRenderableHolder {
 	 *            the name of the preset to copy
 	 * @param reference
 	 *            the AnimationStateFacade to copy from
+	 * @return the handle of the copy on this facade
 	 */
-	public void copyPreset(String presetName, AnimationStateFacade reference) {
-		registerAnimation(presetName, reference.getPreset(presetName));
+	public int copyPreset(String presetName, AnimationStateFacade reference) {
+		return registerAnimation(presetName, reference.getPreset(reference.getHandle(presetName)));
 	}
 
 	//endregion
@@ -163,7 +210,11 @@ public class AnimationStateFacade implements IRenderableHolder {
 	 * @param speed
 	 */
 	public void setSpeed(String presetName, double speed) {
-		getPreset(presetName).setSpeed(speed);
+		setSpeed(getHandle(presetName), speed);
+	}
+
+	public void setSpeed(int handle, double speed) {
+		getPreset(handle).setSpeed(speed);
 	}
 
 	/**
@@ -176,7 +227,11 @@ public class AnimationStateFacade implements IRenderableHolder {
 	 *            time since last call of this method
 	 */
 	public void slideSpeed(String presetName, double target, double deltaTime, double speed) {
-		AnimatorPreset preset = getPreset(presetName);
+		slideSpeed(getHandle(presetName), target, deltaTime, speed);
+	}
+
+	public void slideSpeed(int handle, double target, double deltaTime, double speed) {
+		AnimatorPreset preset = getPreset(handle);
 		preset.setSpeed(slideParameter(preset.getSpeed(), target, deltaTime, speed));
 	}
 
@@ -195,12 +250,14 @@ public class AnimationStateFacade implements IRenderableHolder {
 
 	//endregion
 
+	//region name based control
+
 	/**
 	 * @param presetName
 	 * @return true exactly when this preset is currently running
 	 */
 	public boolean isRunning(String presetName) {
-		return getRunningAnimations().containsKey(presetName);
+		return isRunning(getHandle(presetName));
 	}
 
 	/**
@@ -208,19 +265,74 @@ public class AnimationStateFacade implements IRenderableHolder {
 	 * @return true only if this preset is running and hasn't started fading out yet.
 	 */
 	public boolean isRunningNotFadingOut(String presetName) {
-		return isRunning(presetName) && !getRunningAnimations().get(presetName).isFadingOut();
+		return isRunningNotFadingOut(getHandle(presetName));
+	}
+
+	/**
+	 * @see #ensureRunning(int)
+	 */
+	public void ensureRunning(String presetName) {
+		ensureRunning(getHandle(presetName));
+	}
+
+	/**
+	 * @see #ensureStopped(int, boolean)
+	 */
+	public void ensureStopped(String presetName, boolean hardAbort) {
+		ensureStopped(getHandle(presetName), hardAbort);
+	}
+
+	/**
+	 * @see #ensureRunning(int, boolean)
+	 */
+	public void ensureRunning(String presetName, boolean running) {
+		ensureRunning(getHandle(presetName), running);
+	}
+
+	/**
+	 * @see #ensureRunning(int, boolean, boolean)
+	 */
+	public void ensureRunning(String presetName, boolean running, boolean hardAbort) {
+		ensureRunning(getHandle(presetName), running, hardAbort);
+	}
+
+	public void setDuration(String presetName, float duration) {
+		setDuration(getHandle(presetName), duration);
+	}
+
+	public float getDuration(String presetName) {
+		return getDuration(getHandle(presetName));
+	}
+
+	//endregion
+
+	/**
+	 * @param handle
+	 * @return true exactly when this preset is currently running
+	 */
+	public boolean isRunning(int handle) {
+		return getRunningAnimations()[handle] != null;
+	}
+
+	/**
+	 * @param handle
+	 * @return true only if this preset is running and hasn't started fading out yet.
+	 */
+	public boolean isRunningNotFadingOut(int handle) {
+		Animator running = getRunningAnimations()[handle];
+		return running != null && !running.isFadingOut();
 	}
 
 	/**
 	 * make sure that an Animation (formerly registered) is currently running. Start it if needed
 	 *
-	 * @param presetName
-	 *            the <code>presetName</code> of the Animation
+	 * @param handle
+	 *            the handle of the Animation
 	 */
-	public void ensureRunning(String presetName) {
-		if (!isRunning(presetName)) {
-			Animator newAnimation = new Animator(getPreset(presetName));
-			getRunningAnimations().put(presetName, newAnimation);
+	public void ensureRunning(int handle) {
+		if (!isRunning(handle)) {
+			Animator newAnimation = new Animator(getPreset(handle));
+			getRunningAnimations()[handle] = newAnimation;
 			renderable.playAnimation(newAnimation);
 		}
 	}
@@ -229,17 +341,17 @@ public class AnimationStateFacade implements IRenderableHolder {
 	 * make sure that an Animation (formerly registered) does not run. Stop it if needed (but still fade it out if
 	 * wanted)
 	 *
-	 * @param presetName
-	 *            the <code>presetName</code> of the Animation
+	 * @param handle
+	 *            the handle of the Animation
 	 * @param hardAbort
 	 *            true to start fading out instantly, false to keep it running until the end
 	 */
-	public void ensureStopped(String presetName, boolean hardAbort) {
-		if (isRunningNotFadingOut(presetName)) {
+	public void ensureStopped(int handle, boolean hardAbort) {
+		if (isRunningNotFadingOut(handle)) {
 			if (hardAbort) {
-				getRunningAnimations().get(presetName).stop();
+				getRunningAnimations()[handle].stop();
 			} else {
-				getRunningAnimations().get(presetName).stopAtEnd();
+				getRunningAnimations()[handle].stopAtEnd();
 			}
 		}
 	}
@@ -247,38 +359,38 @@ public class AnimationStateFacade implements IRenderableHolder {
 	/**
 	 * see overloaded function. <code>hardAbort = true</code>
 	 *
-	 * @param presetName
+	 * @param handle
 	 * @param running
-	 * @see #ensureRunning(String, boolean)
+	 * @see #ensureRunning(int, boolean, boolean)
 	 */
-	public void ensureRunning(String presetName, boolean running) {
-		ensureRunning(presetName, running, true);
+	public void ensureRunning(int handle, boolean running) {
+		ensureRunning(handle, running, true);
 	}
 
 	/**
-	 * call {@link #ensureRunning(String)} or {@link #ensureStopped(String, boolean)} based on the condition
+	 * call {@link #ensureRunning(int)} or {@link #ensureStopped(int, boolean)} based on the condition
 	 *
-	 * @param presetName
-	 *            the <code>presetName</code> of the Animation
+	 * @param handle
+	 *            the handle of the Animation
 	 * @param running
 	 *            whether or not this Animation should be running at the moment
 	 * @param hardAbort
 	 *            whether to actually cancel an animation mid-run
 	 */
-	public void ensureRunning(String presetName, boolean running, boolean hardAbort) {
+	public void ensureRunning(int handle, boolean running, boolean hardAbort) {
 		if (running) {
-			ensureRunning(presetName);
+			ensureRunning(handle);
 		} else {
-			ensureStopped(presetName, hardAbort);
+			ensureStopped(handle, hardAbort);
 		}
 	}
 
-	public void setDuration(String presetName, float duration) {
-		setSpeed(presetName, getDuration(presetName) / duration);
+	public void setDuration(int handle, float duration) {
+		setSpeed(handle, getDuration(handle) / duration);
 	}
 
-	public float getDuration(String presetName) {
-		return (float) getPreset(presetName).getAnimation().getDuration();
+	public float getDuration(int handle) {
+		return (float) getPreset(handle).getAnimation().getDuration();
 	}
 
 }
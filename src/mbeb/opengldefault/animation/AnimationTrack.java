@@ -0,0 +1,584 @@
+package mbeb.opengldefault.animation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+
+/**
+ * The compressed keys of a single bone channel of an {@link Animation}.
+ * <p>
+ * Keys that linear interpolation reproduces within a tolerance are dropped when the track is built. Positions and
+ * scales are quantized to 16 bit inside the range the channel covers, rotations are stored as quantized
+ * smallest-three quaternions. The track remembers the largest error against the uncompressed keys.
+ */
+public class AnimationTrack {
+
+	/** default tolerance of the key reduction for positions (in bone space units) */
+	public static final float DEFAULT_POSITION_TOLERANCE = 0.0005f;
+	/** default tolerance of the key reduction for rotations (in radians) */
+	public static final float DEFAULT_ROTATION_TOLERANCE = 0.001f;
+	/** default tolerance of the key reduction for scales */
+	public static final float DEFAULT_SCALE_TOLERANCE = 0.0005f;
+
+	/** floats per key in the position and scale arrays */
+	private static final int VEC3_SIZE = 3;
+	/** floats per key in the rotation array */
+	private static final int QUAT_SIZE = 4;
+
+	/** the largest value of a 16 bit quantized component */
+	private static final int QUANTIZATION_STEPS = 0xFFFF;
+	/** bits per quantized component of a smallest-three quaternion */
+	private static final int ROTATION_BITS = 16;
+	/** the range of the three smallest components of a normalized quaternion */
+	private static final float SMALLEST_THREE_RANGE = (float) (1 / Math.sqrt(2));
+
+	/** the timestamps of the kept keys */
+	private final float[] times;
+	/** quantized positions, 3 per key (empty if the position is constant) */
+	private final char[] positions;
+	private final float[] positionMin;
+	private final float[] positionExtent;
+	/** smallest-three quaternions: the index of the dropped component in the lowest 2 bits, then 3 * 16 bits */
+	private final long[] rotations;
+	/** quantized scales, 3 per key (empty if the scale is constant) */
+	private final char[] scales;
+	private final float[] scaleMin;
+	private final float[] scaleExtent;
+
+	/** the largest errors against the uncompressed keys */
+	private float maxPositionError;
+	private float maxRotationError;
+	private float maxScaleError;
+
+	private AnimationTrack(final int keyCount, final float[] positionMin, final float[] positionExtent, final float[] scaleMin, final float[] scaleExtent) {
+		times = new float[keyCount];
+		positions = new char[isConstant(positionExtent) ? 0 : keyCount * VEC3_SIZE];
+		rotations = new long[keyCount];
+		scales = new char[isConstant(scaleExtent) ? 0 : keyCount * VEC3_SIZE];
+		this.positionMin = positionMin;
+		this.positionExtent = positionExtent;
+		this.scaleMin = scaleMin;
+		this.scaleExtent = scaleExtent;
+	}
+
+	/**
+	 * build a track with the default tolerances
+	 *
+	 * @see #compress(float[], float[], float[], float[], float, float, float)
+	 */
+	public static AnimationTrack compress(final float[] times, final float[] positions, final float[] rotations, final float[] scales) {
+		return compress(times, positions, rotations, scales, DEFAULT_POSITION_TOLERANCE, DEFAULT_ROTATION_TOLERANCE, DEFAULT_SCALE_TOLERANCE);
+	}
+
+	/**
+	 * build a track from the uncompressed keys of a channel
+	 *
+	 * @param times
+	 *            the ascending timestamps of the keys
+	 * @param positions
+	 *            x, y, z of each keys position
+	 * @param rotations
+	 *            x, y, z, w of each keys rotation
+	 * @param scales
+	 *            x, y, z of each keys scale
+	 * @param positionTolerance
+	 *            how far an interpolated position may be off for a key to be dropped
+	 * @param rotationTolerance
+	 *            the angle an interpolated rotation may be off for a key to be dropped
+	 * @param scaleTolerance
+	 *            how far an interpolated scale may be off for a key to be dropped
+	 * @return the compressed track
+	 */
+	public static AnimationTrack compress(final float[] times, final float[] positions, final float[] rotations, final float[] scales,
+			final float positionTolerance, final float rotationTolerance, final float scaleTolerance) {
+		final float[] normalizedRotations = rotations.clone();
+		for (int key = 1; key < times.length; key++) {
+			//interpolate along the shorter arc
+			final int quat = key * QUAT_SIZE;
+			if (dot(normalizedRotations, quat - QUAT_SIZE, normalizedRotations, quat) < 0) {
+				for (int i = quat; i < quat + QUAT_SIZE; i++) {
+					normalizedRotations[i] = -normalizedRotations[i];
+				}
+			}
+		}
+
+		final int[] kept = reduceKeys(times, positions, normalizedRotations, scales, positionTolerance, rotationTolerance, scaleTolerance);
+
+		final float[] positionMin = new float[VEC3_SIZE];
+		final float[] positionExtent = new float[VEC3_SIZE];
+		final float[] scaleMin = new float[VEC3_SIZE];
+		final float[] scaleExtent = new float[VEC3_SIZE];
+		findRange(positions, kept, positionMin, positionExtent, positionTolerance);
+		findRange(scales, kept, scaleMin, scaleExtent, scaleTolerance);
+
+		final AnimationTrack track = new AnimationTrack(kept.length, positionMin, positionExtent, scaleMin, scaleExtent);
+		for (int k = 0; k < kept.length; k++) {
+			final int key = kept[k];
+			track.times[k] = times[key];
+			for (int i = 0; i < VEC3_SIZE; i++) {
+				if (track.positions.length > 0) {
+					track.positions[k * VEC3_SIZE + i] = quantize(positions[key * VEC3_SIZE + i], positionMin[i], positionExtent[i]);
+				}
+				if (track.scales.length > 0) {
+					track.scales[k * VEC3_SIZE + i] = quantize(scales[key * VEC3_SIZE + i], scaleMin[i], scaleExtent[i]);
+				}
+			}
+			track.rotations[k] = encodeRotation(normalizedRotations, key * QUAT_SIZE);
+		}
+		track.measureError(times, positions, normalizedRotations, scales);
+		return track;
+	}
+
+	//<editor-fold desc="key reduction">
+	/**
+	 * greedily drop keys that the interpolation between the kept neighbours reproduces
+	 *
+	 * @return the indices of the kept keys
+	 */
+	private static int[] reduceKeys(final float[] times, final float[] positions, final float[] rotations, final float[] scales,
+			final float positionTolerance, final float rotationTolerance, final float scaleTolerance) {
+		final int count = times.length;
+		if (count <= 2) {
+			final int[] all = new int[count];
+			for (int key = 0; key < count; key++) {
+				all[key] = key;
+			}
+			return all;
+		}
+		final int[] kept = new int[count];
+		int keptCount = 0;
+		kept[keptCount++] = 0;
+		int start = 0;
+		for (int end = 2; end < count; end++) {
+			if (!isReproducible(times, positions, rotations, scales, start, end, positionTolerance, rotationTolerance, scaleTolerance)) {
+				start = end - 1;
+				kept[keptCount++] = start;
+			}
+		}
+		kept[keptCount++] = count - 1;
+		return Arrays.copyOf(kept, keptCount);
+	}
+
+	/**
+	 * @return true if all keys between start and end are reproduced by interpolating between start and end
+	 */
+	private static boolean isReproducible(final float[] times, final float[] positions, final float[] rotations, final float[] scales, final int start, final int end,
+			final float positionTolerance, final float rotationTolerance, final float scaleTolerance) {
+		final float[] interpolated = new float[QUAT_SIZE];
+		for (int key = start + 1; key < end; key++) {
+			final float factor = (times[key] - times[start]) / (times[end] - times[start]);
+			lerp(positions, start * VEC3_SIZE, end * VEC3_SIZE, factor, VEC3_SIZE, interpolated);
+			if (distance(interpolated, positions, key * VEC3_SIZE) > positionTolerance) {
+				return false;
+			}
+			lerp(scales, start * VEC3_SIZE, end * VEC3_SIZE, factor, VEC3_SIZE, interpolated);
+			if (distance(interpolated, scales, key * VEC3_SIZE) > scaleTolerance) {
+				return false;
+			}
+			lerp(rotations, start * QUAT_SIZE, end * QUAT_SIZE, factor, QUAT_SIZE, interpolated);
+			if (angle(interpolated, rotations, key * QUAT_SIZE) > rotationTolerance) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * compare the compressed track against the uncompressed keys
+	 */
+	private void measureError(final float[] originalTimes, final float[] originalPositions, final float[] originalRotations, final float[] originalScales) {
+		final Pose sampled = new Pose(null, null, 1);
+		for (int key = 0; key < originalTimes.length; key++) {
+			sampleInto(originalTimes[key], sampled, 0);
+			final BoneTransformation transformation = sampled.getRaw(0);
+			final Vector3f position = transformation.getPosition();
+			final Quaternionf rotation = transformation.getRotation();
+			final Vector3f scale = transformation.getScale();
+			maxPositionError = Math.max(maxPositionError, distance(new float[] {position.x, position.y, position.z}, originalPositions, key * VEC3_SIZE));
+			maxRotationError = Math.max(maxRotationError, angle(new float[] {rotation.x, rotation.y, rotation.z, rotation.w}, originalRotations, key * QUAT_SIZE));
+			maxScaleError = Math.max(maxScaleError, distance(new float[] {scale.x, scale.y, scale.z}, originalScales, key * VEC3_SIZE));
+		}
+	}
+	//</editor-fold>
+
+	//<editor-fold desc="sampling">
+	/**
+	 * write the transformation of this track at a timestamp (clamped to the keys) into a pose
+	 *
+	 * @param timeStamp
+	 *            the animation time to sample at
+	 * @param dest
+	 *            the pose to write to
+	 * @param bone
+	 *            the bone this track animates
+	 */
+	public void sampleInto(final double timeStamp, final Pose dest, final int bone) {
+		sampleInto(timeStamp, dest, bone, -1);
+	}
+
+	/**
+	 * like {@link #sampleInto(double, Pose, int)}, but first checks the keys near the result of the last sample. For
+	 * forward playback this is O(1)
+	 *
+	 * @param timeStamp
+	 *            the animation time to sample at
+	 * @param dest
+	 *            the pose to write to
+	 * @param bone
+	 *            the bone this track animates
+	 * @param cursor
+	 *            the result of the previous sample, or -1 if there is none
+	 * @return the index of the key after the timestamp, to pass as the next cursor
+	 */
+	public int sampleInto(final double timeStamp, final Pose dest, final int bone, final int cursor) {
+		final int after = findKey((float) timeStamp, cursor);
+		final int before;
+		final float factor;
+		if (after == 0) {
+			before = 0;
+			factor = 0;
+		} else if (after == times.length) {
+			before = times.length - 1;
+			factor = 0;
+		} else {
+			before = after - 1;
+			final float distance = times[after] - times[before];
+			factor = distance > 0 ? (float) ((timeStamp - times[before]) / distance) : 0;
+		}
+		final int next = factor == 0 ? before : after;
+
+		final float tx = sampleComponent(positions, positionMin, positionExtent, before, next, 0, factor);
+		final float ty = sampleComponent(positions, positionMin, positionExtent, before, next, 1, factor);
+		final float tz = sampleComponent(positions, positionMin, positionExtent, before, next, 2, factor);
+		final float sx = sampleComponent(scales, scaleMin, scaleExtent, before, next, 0, factor);
+		final float sy = sampleComponent(scales, scaleMin, scaleExtent, before, next, 1, factor);
+		final float sz = sampleComponent(scales, scaleMin, scaleExtent, before, next, 2, factor);
+
+		//normalized lerp between the decoded rotations, the same interpolation the key reduction checked against
+		final long ra = rotations[before];
+		final long rb = rotations[next];
+		final float ax = decodeComponent(ra, 0);
+		final float ay = decodeComponent(ra, 1);
+		final float az = decodeComponent(ra, 2);
+		final float aw = decodeComponent(ra, 3);
+		float bx = decodeComponent(rb, 0);
+		float by = decodeComponent(rb, 1);
+		float bz = decodeComponent(rb, 2);
+		float bw = decodeComponent(rb, 3);
+		if (ax * bx + ay * by + az * bz + aw * bw < 0) {
+			//the encoding made the largest components positive, so the keys may lie on opposite hemispheres
+			bx = -bx;
+			by = -by;
+			bz = -bz;
+			bw = -bw;
+		}
+		float qx = lerp(ax, bx, factor);
+		float qy = lerp(ay, by, factor);
+		float qz = lerp(az, bz, factor);
+		float qw = lerp(aw, bw, factor);
+		final float invLength = (float) (1 / Math.sqrt(qx * qx + qy * qy + qz * qz + qw * qw));
+		qx *= invLength;
+		qy *= invLength;
+		qz *= invLength;
+		qw *= invLength;
+
+		dest.put(bone, tx, ty, tz, qx, qy, qz, qw, sx, sy, sz);
+		return after;
+	}
+
+	/**
+	 * interpolate one component of the quantized positions or scales
+	 */
+	private static float sampleComponent(final char[] values, final float[] min, final float[] extent, final int before, final int next, final int component, final float factor) {
+		if (values.length == 0) {
+			return min[component];
+		}
+		final float a = dequantize(values[before * VEC3_SIZE + component], min[component], extent[component]);
+		final float b = dequantize(values[next * VEC3_SIZE + component], min[component], extent[component]);
+		return lerp(a, b, factor);
+	}
+
+	/**
+	 * binary search for the first key at or after the timestamp
+	 *
+	 * @return the index of the key, or the amount of keys if the timestamp lies after all of them
+	 */
+	private int findKey(final float timeStamp) {
+		int low = 0;
+		int high = times.length;
+		while(low < high) {
+			final int middle = (low + high) >>> 1;
+			if (times[middle] >= timeStamp) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * like {@link #findKey(float)}, but first checks the key at the cursor and the one after it
+	 *
+	 * @param cursor
+	 *            the result of the previous lookup, or -1
+	 */
+	private int findKey(final float timeStamp, final int cursor) {
+		for (int index = cursor; index >= 0 && index <= times.length && index <= cursor + 1; index++) {
+			final boolean beforeMatches = index == 0 || times[index - 1] < timeStamp;
+			final boolean afterMatches = index == times.length || times[index] >= timeStamp;
+			if (beforeMatches && afterMatches) {
+				return index;
+			}
+		}
+		return findKey(timeStamp);
+	}
+	//</editor-fold>
+
+	//<editor-fold desc="quantization">
+	/**
+	 * find the minimum and extent of each component over the kept keys. Vectors that stay within the tolerance get
+	 * stored as a constant (the center of their range, with an extent of 0)
+	 */
+	private static void findRange(final float[] values, final int[] kept, final float[] min, final float[] extent, final float tolerance) {
+		float largestExtent = 0;
+		for (int i = 0; i < VEC3_SIZE; i++) {
+			float low = Float.POSITIVE_INFINITY;
+			float high = Float.NEGATIVE_INFINITY;
+			for (final int key : kept) {
+				low = Math.min(low, values[key * VEC3_SIZE + i]);
+				high = Math.max(high, values[key * VEC3_SIZE + i]);
+			}
+			min[i] = kept.length == 0 ? 0 : low;
+			extent[i] = kept.length == 0 ? 0 : high - low;
+			largestExtent = Math.max(largestExtent, extent[i]);
+		}
+		if (largestExtent <= tolerance) {
+			for (int i = 0; i < VEC3_SIZE; i++) {
+				min[i] += extent[i] / 2;
+				extent[i] = 0;
+			}
+		}
+	}
+
+	private static boolean isConstant(final float[] extent) {
+		return extent[0] <= 0 && extent[1] <= 0 && extent[2] <= 0;
+	}
+
+	private static char quantize(final float value, final float min, final float extent) {
+		if (extent <= 0) {
+			return 0;
+		}
+		return (char) Math.round((value - min) / extent * QUANTIZATION_STEPS);
+	}
+
+	private static float dequantize(final char value, final float min, final float extent) {
+		return min + value * extent / QUANTIZATION_STEPS;
+	}
+
+	/**
+	 * pack a quaternion as its three smallest components and the index of the largest one (whose sign is made
+	 * positive, it is restored from the unit length)
+	 */
+	private static long encodeRotation(final float[] rotations, final int offset) {
+		float length = 0;
+		int largest = 0;
+		for (int i = 0; i < QUAT_SIZE; i++) {
+			final float value = rotations[offset + i];
+			length += value * value;
+			if (Math.abs(value) > Math.abs(rotations[offset + largest])) {
+				largest = i;
+			}
+		}
+		final float scale = (rotations[offset + largest] < 0 ? -1 : 1) / (float) Math.sqrt(length);
+		long packed = largest;
+		int shift = 2;
+		for (int i = 0; i < QUAT_SIZE; i++) {
+			if (i == largest) {
+				continue;
+			}
+			final float normalized = rotations[offset + i] * scale / SMALLEST_THREE_RANGE;
+			final long quantized = Math.round((Math.max(-1, Math.min(1, normalized)) * 0.5f + 0.5f) * QUANTIZATION_STEPS);
+			packed |= quantized << shift;
+			shift += ROTATION_BITS;
+		}
+		return packed;
+	}
+
+	/**
+	 * @return one component (x, y, z, w) of a packed smallest-three quaternion
+	 */
+	private static float decodeComponent(final long packed, final int component) {
+		final int largest = (int) (packed & 3);
+		if (component == largest) {
+			float sum = 0;
+			for (int i = 0; i < QUAT_SIZE; i++) {
+				if (i != largest) {
+					final float value = decodeComponent(packed, i);
+					sum += value * value;
+				}
+			}
+			return (float) Math.sqrt(Math.max(0, 1 - sum));
+		}
+		final int slot = component < largest ? component : component - 1;
+		final long quantized = (packed >>> (2 + slot * ROTATION_BITS)) & QUANTIZATION_STEPS;
+		return ((float) quantized / QUANTIZATION_STEPS * 2 - 1) * SMALLEST_THREE_RANGE;
+	}
+	//</editor-fold>
+
+	//<editor-fold desc="math helpers">
+	private static float lerp(final float a, final float b, final float factor) {
+		return a + (b - a) * factor;
+	}
+
+	private static void lerp(final float[] values, final int from, final int to, final float factor, final int size, final float[] dest) {
+		for (int i = 0; i < size; i++) {
+			dest[i] = lerp(values[from + i], values[to + i], factor);
+		}
+	}
+
+	private static float distance(final float[] vector, final float[] values, final int offset) {
+		float sum = 0;
+		for (int i = 0; i < VEC3_SIZE; i++) {
+			final float delta = vector[i] - values[offset + i];
+			sum += delta * delta;
+		}
+		return (float) Math.sqrt(sum);
+	}
+
+	private static float dot(final float[] a, final int offsetA, final float[] b, final int offsetB) {
+		float sum = 0;
+		for (int i = 0; i < QUAT_SIZE; i++) {
+			sum += a[offsetA + i] * b[offsetB + i];
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the angle between a (not necessarily normalized) quaternion and a quaternion in an array
+	 */
+	private static float angle(final float[] quaternion, final float[] values, final int offset) {
+		final float lengths = (float) Math.sqrt(dot(quaternion, 0, quaternion, 0) * dot(values, offset, values, offset));
+		final float cosine = Math.min(1, Math.abs(dot(quaternion, 0, values, offset)) / lengths);
+		return (float) (2 * Math.acos(cosine));
+	}
+	//</editor-fold>
+
+	//<editor-fold desc="serialization">
+
+	/**
+	 * write the compressed keys, so that {@link #readFrom(DataInput)} restores this track without compressing again
+	 *
+	 * @param out
+	 *            the output to write to
+	 * @throws IOException
+	 *             if the output fails
+	 */
+	public void writeTo(final DataOutput out) throws IOException {
+		out.writeInt(times.length);
+		writeFloats(out, positionMin);
+		writeFloats(out, positionExtent);
+		writeFloats(out, scaleMin);
+		writeFloats(out, scaleExtent);
+		writeFloats(out, times);
+		for (final char position : positions) {
+			out.writeChar(position);
+		}
+		for (final long rotation : rotations) {
+			out.writeLong(rotation);
+		}
+		for (final char scale : scales) {
+			out.writeChar(scale);
+		}
+		out.writeFloat(maxPositionError);
+		out.writeFloat(maxRotationError);
+		out.writeFloat(maxScaleError);
+	}
+
+	/**
+	 * read a track written by {@link #writeTo(DataOutput)}
+	 *
+	 * @param in
+	 *            the input to read from
+	 * @return the restored track
+	 * @throws IOException
+	 *             if the input fails
+	 */
+	public static AnimationTrack readFrom(final DataInput in) throws IOException {
+		final int keyCount = in.readInt();
+		final float[] positionMin = readFloats(in, new float[VEC3_SIZE]);
+		final float[] positionExtent = readFloats(in, new float[VEC3_SIZE]);
+		final float[] scaleMin = readFloats(in, new float[VEC3_SIZE]);
+		final float[] scaleExtent = readFloats(in, new float[VEC3_SIZE]);
+		final AnimationTrack track = new AnimationTrack(keyCount, positionMin, positionExtent, scaleMin, scaleExtent);
+		readFloats(in, track.times);
+		for (int i = 0; i < track.positions.length; i++) {
+			track.positions[i] = in.readChar();
+		}
+		for (int i = 0; i < track.rotations.length; i++) {
+			track.rotations[i] = in.readLong();
+		}
+		for (int i = 0; i < track.scales.length; i++) {
+			track.scales[i] = in.readChar();
+		}
+		track.maxPositionError = in.readFloat();
+		track.maxRotationError = in.readFloat();
+		track.maxScaleError = in.readFloat();
+		return track;
+	}
+
+	private static void writeFloats(final DataOutput out, final float[] values) throws IOException {
+		for (final float value : values) {
+			out.writeFloat(value);
+		}
+	}
+
+	private static float[] readFloats(final DataInput in, final float[] dest) throws IOException {
+		for (int i = 0; i < dest.length; i++) {
+			dest[i] = in.readFloat();
+		}
+		return dest;
+	}
+
+	//</editor-fold>
+
+	/**
+	 * @return the amount of keys kept by the reduction
+	 */
+	public int getKeyCount() {
+		return times.length;
+	}
+
+	/**
+	 * @return the largest distance between a sampled and an uncompressed position
+	 */
+	public float getMaxPositionError() {
+		return maxPositionError;
+	}
+
+	/**
+	 * @return the largest angle (in radians) between a sampled and an uncompressed rotation
+	 */
+	public float getMaxRotationError() {
+		return maxRotationError;
+	}
+
+	/**
+	 * @return the largest distance between a sampled and an uncompressed scale
+	 */
+	public float getMaxScaleError() {
+		return maxScaleError;
+	}
+
+	/**
+	 * @return the approximate heap size of this track in bytes
+	 */
+	public long getMemoryBytes() {
+		//the object itself and the headers of its seven arrays, then the array contents
+		return 56 + 7 * 16 + times.length * 4L + positions.length * 2L + rotations.length * 8L + scales.length * 2L + 4 * VEC3_SIZE * 4L;
+	}
+}
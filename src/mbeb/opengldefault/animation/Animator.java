@@ -9,6 +9,12 @@ public class Animator {
 	private double currentTime;
 	private double totalRunningTime;
 	private Double stopTimestamp;
+	/** the keyFrame index of the last sample, to continue the search from */
+	private int keyFrameCursor;
+	/** the key index of each track of the last sample, to continue the search from (null for keyFrames) */
+	private int[] trackCursors;
+	/** storage for poses interpolated between two keyFrames */
+	private Pose sampledPose;
 
 	public Animator(AnimatorPreset preset) {
 		this.preset = preset;
@@ -94,29 +100,43 @@ public class Animator {
 	 * @return
 	 */
 	public Pose getCurrentPose() {
-		KeyFrame[] beforeAfter = getAnimation().getBeforeAndAfter(currentTime);
-
-		//edge-case handling
-		if (preset.isLooping()) {
-			if (beforeAfter[0] == null) {
-				currentTime += getAnimation().getKeyFrameDistance();
-				return getCurrentPose();
-			}
-			if (beforeAfter[1] == null) {
-				currentTime -= getAnimation().getKeyFrameDistance();
-				return getCurrentPose();
-			}
-		} else {
-			if (beforeAfter[0] == null) {
-				return beforeAfter[1].getPose();
-			} else if (beforeAfter[1] == null) {
-				return beforeAfter[0].getPose();
-			}
+		final double timeStamp = getSampleTime();
+		final int after = getAnimation().findKeyFrame(timeStamp, keyFrameCursor);
+		keyFrameCursor = after;
+		if (getAnimation().getKeyFrameCount() == 0) {
+			return null;
 		}
+		if (sampledPose == null) {
+			sampledPose = getAnimation().createPose();
+			trackCursors = getAnimation().createTrackCursors();
+		}
+		return getAnimation().samplePose(timeStamp, after, sampledPose, trackCursors);
+	}
 
-		double lerpFactor = (currentTime - beforeAfter[0].getTimeStamp()) / (beforeAfter[1].getTimeStamp() - beforeAfter[0].getTimeStamp());
+	/**
+	 * @return the animation time to sample at the moment (wrapped into the keyFrame range for looping animations)
+	 */
+	public double getSampleTime() {
+		if (preset.isLooping() && getAnimation().getKeyFrameCount() > 0) {
+			wrapCurrentTime();
+		}
+		return currentTime;
+	}
 
-		return Pose.lerp(beforeAfter[0].getPose(), beforeAfter[1].getPose(), lerpFactor);
+	/**
+	 * move the current time of a looping animation into the range (first keyFrame, last keyFrame]
+	 */
+	private void wrapCurrentTime() {
+		final double first = getAnimation().getKeyFrameTimeStamp(0);
+		final double loopSize = getAnimation().getKeyFrameDistance();
+		if (loopSize <= 0 || (currentTime > first && currentTime <= first + loopSize)) {
+			return;
+		}
+		double offset = (currentTime - first) % loopSize;
+		if (offset <= 0) {
+			offset += loopSize;
+		}
+		currentTime = first + offset;
 	}
 
 }
@@ -0,0 +1,133 @@
+package mbeb.opengldefault.animation;
+
+import org.joml.Matrix4f;
+
+/**
+ * An {@link Animation} of an {@link AnimatedMesh}, pre-sampled at a fixed rate into skinning-matrix palettes (the
+ * combined transforms of {@link BoneState}). The palettes are read only, so every renderable playing the same clip
+ * at the same phase can share them.
+ */
+public class BakedAnimation {
+
+	private static final String TAG = "BakedAnimation";
+
+	/** phases this close to a baked frame use the shared palette instead of interpolating */
+	private static final double FRAME_SNAP_EPSILON = 0.01;
+
+	private final Animation animation;
+	/** the timestamp of the first baked frame */
+	private final double startTime;
+	/** the animation time between two baked frames */
+	private final double frameTime;
+	/** one palette per baked frame, one matrix per bone */
+	private final Matrix4f[][] palettes;
+	/** the same palettes split into their parts, to interpolate between frames */
+	private final DecomposedPalette[] decomposedPalettes;
+
+	/**
+	 * sample an animation of a mesh. Each frame shows the animation alone at full strength on top of the meshs
+	 * default pose
+	 *
+	 * @param mesh
+	 *            the mesh the animation belongs to
+	 * @param animation
+	 *            the animation to bake
+	 * @param samplesPerTimeUnit
+	 *            how many frames to bake per unit of animation time
+	 */
+	public BakedAnimation(final AnimatedMesh mesh, final Animation animation, final double samplesPerTimeUnit) {
+		this.animation = animation;
+		this.startTime = animation.getKeyFrameCount() == 0 ? 0 : animation.getKeyFrameTimeStamp(0);
+		final double distance = animation.getKeyFrameDistance();
+
+		final int frameCount = Math.max(2, (int) Math.ceil(distance * samplesPerTimeUnit) + 1);
+		this.frameTime = distance / (frameCount - 1);
+		this.palettes = new Matrix4f[frameCount][];
+		this.decomposedPalettes = new DecomposedPalette[frameCount];
+		for (int frame = 0; frame < frameCount; frame++) {
+			palettes[frame] = bakeFrame(mesh, startTime + frame * frameTime);
+			decomposedPalettes[frame] = new DecomposedPalette(palettes[frame].length).set(palettes[frame]);
+		}
+	}
+
+	/**
+	 * evaluate the bone hierarchy once for the given time
+	 *
+	 * @return the skinning matrices of all bones
+	 */
+	private Matrix4f[] bakeFrame(final AnimatedMesh mesh, final double timeStamp) {
+		final Pose pose = mesh.defaultPose();
+		final Pose clipPose = animation.samplePose(timeStamp);
+		if (clipPose != null) {
+			clipPose.mixInto(1, pose);
+		}
+		final BoneState[] states = pose.getConvertedData();
+		final Matrix4f[] palette = new Matrix4f[states.length];
+		for (int bone = 0; bone < states.length; bone++) {
+			palette[bone] = states[bone] != null ? states[bone].getCombinedBoneTransform() : new Matrix4f();
+		}
+		return palette;
+	}
+
+	public Animation getAnimation() {
+		return animation;
+	}
+
+	/**
+	 * @return the amount of baked frames
+	 */
+	public int getFrameCount() {
+		return palettes.length;
+	}
+
+	/**
+	 * @return the amount of bones in each palette
+	 */
+	public int getBoneCount() {
+		return palettes[0].length;
+	}
+
+	/**
+	 * @param timeStamp
+	 *            an animation time inside the keyFrame range
+	 * @return the shared palette of the baked frame nearest to the timeStamp
+	 */
+	public Matrix4f[] getNearestPalette(final double timeStamp) {
+		return palettes[(int) Math.round(getFramePosition(timeStamp))];
+	}
+
+	/**
+	 * get the palette for a timeStamp, interpolating the translation, rotation and scale of each bone between the two
+	 * neighbouring baked frames (see {@link DecomposedPalette}).
+	 * Timestamps on (or very near) a baked frame return the shared palette of that frame
+	 *
+	 * @param timeStamp
+	 *            an animation time, clamped to the keyFrame range
+	 * @param dest
+	 *            storage for an interpolated palette (one matrix per bone)
+	 * @return either a shared baked palette or dest. The shared palettes must not be modified
+	 */
+	public Matrix4f[] getPalette(final double timeStamp, final Matrix4f[] dest) {
+		final double position = getFramePosition(timeStamp);
+		final int frame = (int) position;
+		final double fraction = position - frame;
+		if (fraction <= FRAME_SNAP_EPSILON) {
+			return palettes[frame];
+		}
+		if (fraction >= 1 - FRAME_SNAP_EPSILON) {
+			return palettes[frame + 1];
+		}
+		return DecomposedPalette.interpolate(decomposedPalettes[frame], decomposedPalettes[frame + 1], (float) fraction, dest);
+	}
+
+	/**
+	 * @return the (fractional) frame index of a timeStamp, clamped to the baked range
+	 */
+	private double getFramePosition(final double timeStamp) {
+		if (frameTime <= 0) {
+			return 0;
+		}
+		final double position = (timeStamp - startTime) / frameTime;
+		return Math.min(Math.max(position, 0), palettes.length - 1);
+	}
+}
@@ -19,6 +19,8 @@ public class Bone {
 
 	/** the inverse bind transform of the bone as given by Ai */
 	private Matrix4f inverseBindTransform;
+	/** the inverted inverseBindTransform, to get back from a skinning matrix to the bone transform */
+	private Matrix4f bindTransform;
 	/** boneTransformation in bind pose */
 	private Matrix4f defaultBoneTransform;
 
@@ -82,6 +84,18 @@ public class Bone {
 		return search(b -> b.getName().equals(name), "cant find any bone named \"" + name + "\"");
 	}
 
+	/**
+	 * look up the index of a bone, without logging when there is none
+	 *
+	 * @param name
+	 *            the name to search for
+	 * @return the index of the bone, or -1 if no bone matched the name (or the bone has no index)
+	 */
+	public int indexOfBone(final String name) {
+		final Bone bone = search(b -> b.getName().equals(name), null);
+		return bone != null ? bone.getIndex() : -1;
+	}
+
 	/**
 	 * search for a bone
 	 * 
@@ -120,6 +134,14 @@ public class Bone {
 
 	public void setInverseBindTransform(Matrix4f inverseBindTransform) {
 		this.inverseBindTransform = inverseBindTransform;
+		this.bindTransform = inverseBindTransform.invert(new Matrix4f());
+	}
+
+	/**
+	 * @return the transformation from bone space to mesh space in bind pose
+	 */
+	public Matrix4f getBindTransform() {
+		return bindTransform;
 	}
 
 	public Matrix4f getDefaultBoneTransform() {
@@ -0,0 +1,66 @@
+package mbeb.opengldefault.animation;
+
+import java.nio.FloatBuffer;
+
+import org.joml.Matrix4f;
+import org.lwjgl.BufferUtils;
+
+import mbeb.opengldefault.constants.Constants;
+import mbeb.opengldefault.gl.shader.ShaderProgram;
+
+/**
+ * A persistent direct buffer holding the skinning matrices of one character, ready to be uploaded as the bone uniform
+ * array. It is allocated once and rewritten in place, so animating a character creates no off-heap garbage.
+ */
+public class BonePaletteBuffer {
+
+	/** the matrices, 16 floats each */
+	private final FloatBuffer buffer;
+	/** the amount of bones that fit into the buffer */
+	private final int boneCount;
+
+	/**
+	 * @param boneCount
+	 *            the amount of matrices to store
+	 */
+	public BonePaletteBuffer(final int boneCount) {
+		this.boneCount = boneCount;
+		buffer = BufferUtils.createFloatBuffer(Math.max(1, boneCount) * Constants.MAT4_COMPONENTS);
+	}
+
+	/**
+	 * copy a palette into this buffer
+	 *
+	 * @param palette
+	 *            one matrix per bone. Bones beyond the buffers size are ignored
+	 * @return this
+	 */
+	public BonePaletteBuffer write(final Matrix4f[] palette) {
+		final int bones = Math.min(boneCount, palette.length);
+		for (int bone = 0; bone < bones; bone++) {
+			palette[bone].get(bone * Constants.MAT4_COMPONENTS, buffer);
+		}
+		buffer.clear();
+		buffer.limit(bones * Constants.MAT4_COMPONENTS);
+		return this;
+	}
+
+	/**
+	 * set the last written palette as uniform array
+	 *
+	 * @param shader
+	 *            the shader to upload to
+	 * @param uniformName
+	 *            the name of the mat4-array uniform
+	 */
+	public void upload(final ShaderProgram shader, final String uniformName) {
+		shader.setUniformMatrix4Array(uniformName, buffer, false, false);
+	}
+
+	/**
+	 * @return the amount of bones that fit into this buffer
+	 */
+	public int getBoneCount() {
+		return boneCount;
+	}
+}
@@ -24,6 +24,16 @@ public class BoneState {
 		this.combinedBoneTransform = combinedBoneTransform;
 	}
 
+	/**
+	 * create a BoneState with its own (identity) matrices, to be filled in place
+	 *
+	 * @param bone
+	 *            the bone to wrap
+	 */
+	public BoneState(Bone bone) {
+		this(bone, new Matrix4f(), new Matrix4f(), new Matrix4f());
+	}
+
 	public Bone getBone() {
 		return bone;
 	}
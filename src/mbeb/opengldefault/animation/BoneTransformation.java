@@ -54,8 +54,11 @@ public class BoneTransformation {
 	}
 
 	//////////////////////////////////////////////////////////////////////////////////////////
+	/** the matrix representation, recomputed in place when the parts changed */
 	private Matrix4f matrix;
 	private boolean matrixRepresentationValid;
+	/** whether the matrix was created by this transformation (and thus may be overwritten) */
+	private boolean ownsMatrix;
 
 	private Vector3f position = null;
 	private Quaternionf rotation = null;
@@ -98,11 +101,11 @@ public class BoneTransformation {
 	}
 
 	/**
-	 * Copy constructor
+	 * Copy constructor, the copy does not share any vectors with the source
 	 * @param source the thing to copy
 	 */
 	public BoneTransformation(BoneTransformation source){
-		this(source.getPosition(), source.getRotation(), source.getScale());
+		this(new Vector3f(source.getPosition()), new Quaternionf(source.getRotation()), new Vector3f(source.getScale()));
 	}
 
 	/**
@@ -114,6 +117,7 @@ public class BoneTransformation {
 		this.matrix = matrix;
 		matrixRepresentationValid = true;
 		partsRepresentationValid = false;
+		ownsMatrix = false;
 	}
 
 	/**
@@ -128,7 +132,8 @@ public class BoneTransformation {
 	}
 
 	/**
-	 * @return a matrix representing this transformation
+	 * @return a matrix representing this transformation. It is cached and updated in place, so it must not be
+	 *         modified
 	 */
 	public Matrix4f asMatrix() {
 		ensureMatrixRepresentationValid();
@@ -141,11 +146,22 @@ public class BoneTransformation {
 	private void ensureMatrixRepresentationValid() {
 		if (!matrixRepresentationValid) {
 			Log.assertTrue(TAG, partsRepresentationValid, "Undefined Transformation");
-			matrix = new Matrix4f().translate(position).rotate(rotation.normalize()).scale(scale);
+			getOwnedMatrix().translationRotateScale(position, rotation.normalize(), scale);
 			matrixRepresentationValid = true;
 		}
 	}
 
+	/**
+	 * @return a matrix that may be overwritten, as it is not shared with the creator of this transformation
+	 */
+	private Matrix4f getOwnedMatrix() {
+		if (matrix == null || !ownsMatrix) {
+			matrix = new Matrix4f();
+			ownsMatrix = true;
+		}
+		return matrix;
+	}
+
 	/**
 	 * after this method returns, this BoneTransformation is also present in component representation
 	 */
@@ -0,0 +1,123 @@
+package mbeb.opengldefault.animation;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+
+/**
+ * A palette of skinning matrices, split into translation, rotation and scale per bone. Interpolating these parts
+ * keeps the length of the limbs, while lerping the matrices component by component shrinks and shears them (the
+ * rotation part of a lerped matrix is not a rotation anymore).
+ * Shear in the skinning matrices (non-uniform scales below rotated bones) is lost in between two palettes, the
+ * palettes themselves stay exact.
+ */
+public class DecomposedPalette {
+
+	private static final int VEC3_SIZE = 3;
+	private static final int QUAT_SIZE = 4;
+
+	/** the parts of all bones, stored in consecutive arrays */
+	private final float[] translations;
+	private final float[] rotations;
+	private final float[] scales;
+
+	/** scratch storage for the decomposition */
+	private final Matrix4f unmirrored = new Matrix4f();
+	private final Quaternionf rotation = new Quaternionf();
+	private final Vector3f scale = new Vector3f();
+
+	/**
+	 * @param boneCount
+	 *            the amount of matrices in the palettes
+	 */
+	public DecomposedPalette(final int boneCount) {
+		translations = new float[boneCount * VEC3_SIZE];
+		rotations = new float[boneCount * QUAT_SIZE];
+		scales = new float[boneCount * VEC3_SIZE];
+	}
+
+	/**
+	 * decompose a palette into this one
+	 *
+	 * @param palette
+	 *            one affine matrix per bone
+	 * @return this
+	 */
+	public DecomposedPalette set(final Matrix4f[] palette) {
+		final int bones = java.lang.Math.min(palette.length, rotations.length / QUAT_SIZE);
+		for (int bone = 0; bone < bones; bone++) {
+			final Matrix4f matrix = palette[bone];
+			final int vec = bone * VEC3_SIZE;
+			final int quat = bone * QUAT_SIZE;
+			translations[vec] = matrix.m30();
+			translations[vec + 1] = matrix.m31();
+			translations[vec + 2] = matrix.m32();
+
+			matrix.getScale(scale);
+			if (matrix.determinant3x3() < 0) {
+				//a mirroring matrix has no rotation, so mirror the x axis back and keep it in the scale
+				unmirrored.set(matrix).m00(-matrix.m00()).m01(-matrix.m01()).m02(-matrix.m02());
+				rotation.setFromUnnormalized(unmirrored);
+				scale.x = -scale.x;
+			} else {
+				rotation.setFromUnnormalized(matrix);
+			}
+			rotations[quat] = rotation.x;
+			rotations[quat + 1] = rotation.y;
+			rotations[quat + 2] = rotation.z;
+			rotations[quat + 3] = rotation.w;
+			scales[vec] = scale.x;
+			scales[vec + 1] = scale.y;
+			scales[vec + 2] = scale.z;
+		}
+		return this;
+	}
+
+	/**
+	 * interpolate between two decomposed palettes: translation and scale are lerped, the rotations normalized lerped
+	 *
+	 * @param from
+	 *            the palette at factor 0
+	 * @param to
+	 *            the palette at factor 1
+	 * @param factor
+	 *            the interpolation factor
+	 * @param dest
+	 *            receives the interpolated skinning matrices
+	 * @return dest
+	 */
+	public static Matrix4f[] interpolate(final DecomposedPalette from, final DecomposedPalette to, final float factor, final Matrix4f[] dest) {
+		final int bones = java.lang.Math.min(dest.length, from.rotations.length / QUAT_SIZE);
+		for (int bone = 0; bone < bones; bone++) {
+			final int vec = bone * VEC3_SIZE;
+			final int quat = bone * QUAT_SIZE;
+			final float[] a = from.rotations;
+			final float[] b = to.rotations;
+			//take the shorter way, q and -q are the same rotation
+			final float sign = a[quat] * b[quat] + a[quat + 1] * b[quat + 1] + a[quat + 2] * b[quat + 2] + a[quat + 3] * b[quat + 3] < 0 ? -1 : 1;
+			float qx = lerp(a[quat], sign * b[quat], factor);
+			float qy = lerp(a[quat + 1], sign * b[quat + 1], factor);
+			float qz = lerp(a[quat + 2], sign * b[quat + 2], factor);
+			float qw = lerp(a[quat + 3], sign * b[quat + 3], factor);
+			final float invLength = (float) (1 / java.lang.Math.sqrt(qx * qx + qy * qy + qz * qz + qw * qw));
+			qx *= invLength;
+			qy *= invLength;
+			qz *= invLength;
+			qw *= invLength;
+
+			dest[bone].translationRotateScale(
+					lerp(from.translations[vec], to.translations[vec], factor),
+					lerp(from.translations[vec + 1], to.translations[vec + 1], factor),
+					lerp(from.translations[vec + 2], to.translations[vec + 2], factor),
+					qx, qy, qz, qw,
+					lerp(from.scales[vec], to.scales[vec], factor),
+					lerp(from.scales[vec + 1], to.scales[vec + 1], factor),
+					lerp(from.scales[vec + 2], to.scales[vec + 2], factor));
+		}
+		return dest;
+	}
+
+	private static float lerp(final float a, final float b, final float factor) {
+		return a + (b - a) * factor;
+	}
+}
@@ -1,7 +1,7 @@
 package mbeb.opengldefault.animation;
 
 import java.lang.Math;
-import java.util.*;
+import java.util.Arrays;
 
 import org.joml.*;
 
@@ -9,7 +9,7 @@ import mbeb.opengldefault.logging.Log;
 import mbeb.opengldefault.gl.shader.*;
 
 /**
- * orientations of a bone-construct
+ * orientations of a bone-construct. The transformations are stored in flat arrays, indexed by {@link Bone#getIndex()}
  */
 public class Pose {
 
@@ -17,19 +17,114 @@ public class Pose {
 
 	public static final float LERP_SHORTCUT_EPSILON = 0.001f;
 
-	/** A BoneTransformation for each bone */
-	private Map<String, BoneTransformation> boneTransforms = new HashMap<>();
+	/** floats per bone in the translation and scale arrays */
+	private static final int VEC3_SIZE = 3;
+	/** floats per bone in the rotation array */
+	private static final int QUAT_SIZE = 4;
+
+	private final Bone skeleton;
+	private final Matrix4f transform;
+	/** the amount of bones in the skeleton */
+	private final int boneCount;
+
+	/** whether a transformation is stored for each bone */
+	private final boolean[] present;
+	/** x, y, z of each bones translation */
+	private final float[] translations;
+	/** x, y, z, w of each bones rotation */
+	private final float[] rotations;
+	/** x, y, z of each bones scale */
+	private final float[] scales;
 	/** The priority of each bone */
-	private Map<String, Integer> bonePriorities = new HashMap<>();
-	private Bone skeleton;
-	private Matrix4f transform;
+	private final int[] priorities;
 
-	/** the applied bone matrices */
+	/** the applied bone matrices, reused when the pose changes */
 	private BoneState[] convertedData = null;
+	/** whether the convertedData matches the current transformations */
+	private boolean convertedDataValid = false;
+	/** the combined bone matrices of the convertedData, as uploaded to shaders */
+	private Matrix4f[] palette = null;
 
 	public Pose(Bone skeleton, Matrix4f transform) {
+		this(skeleton, transform, skeleton.boneCount());
+	}
+
+	/**
+	 * create an empty pose with room for a given amount of bones
+	 */
+	Pose(Bone skeleton, Matrix4f transform, int boneCount) {
 		this.skeleton = skeleton;
 		this.transform = transform;
+		this.boneCount = boneCount;
+		present = new boolean[boneCount];
+		translations = new float[boneCount * VEC3_SIZE];
+		rotations = new float[boneCount * QUAT_SIZE];
+		scales = new float[boneCount * VEC3_SIZE];
+		priorities = new int[boneCount];
+		for (int bone = 0; bone < boneCount; bone++) {
+			rotations[bone * QUAT_SIZE + 3] = 1;
+			scales[bone * VEC3_SIZE] = 1;
+			scales[bone * VEC3_SIZE + 1] = 1;
+			scales[bone * VEC3_SIZE + 2] = 1;
+		}
+	}
+
+	/**
+	 * @param boneCount
+	 *            the amount of bones in a skeleton
+	 * @return the approximate heap size of a pose of that skeleton in bytes (without its convertedData)
+	 */
+	public static long estimateMemoryBytes(int boneCount) {
+		//object headers of the pose and its five arrays, then the array contents
+		return 48 + 5 * 16 + boneCount * (1 + 3 * 4 + 4 * 4 + 3 * 4 + 4);
+	}
+
+	/**
+	 * Copy constructor
+	 *
+	 * @param source
+	 *            the pose to copy the transformations and priorities from
+	 */
+	public Pose(Pose source) {
+		this.skeleton = source.skeleton;
+		this.transform = source.transform;
+		this.boneCount = source.boneCount;
+		present = source.present.clone();
+		translations = source.translations.clone();
+		rotations = source.rotations.clone();
+		scales = source.scales.clone();
+		priorities = source.priorities.clone();
+	}
+
+	/**
+	 * overwrite this pose with the transformations and priorities of another pose of the same skeleton, without
+	 * allocating
+	 *
+	 * @param source
+	 *            the pose to copy
+	 * @return this
+	 */
+	public Pose set(Pose source) {
+		Log.assertEqual(TAG, boneCount, source.boneCount, "Cannot copy poses of different sizes");
+		System.arraycopy(source.present, 0, present, 0, boneCount);
+		System.arraycopy(source.translations, 0, translations, 0, translations.length);
+		System.arraycopy(source.rotations, 0, rotations, 0, rotations.length);
+		System.arraycopy(source.scales, 0, scales, 0, scales.length);
+		System.arraycopy(source.priorities, 0, priorities, 0, boneCount);
+		convertedDataValid = false;
+		return this;
+	}
+
+	/**
+	 * remove the transformations and priorities of all bones
+	 *
+	 * @return this
+	 */
+	public Pose clear() {
+		Arrays.fill(present, false);
+		Arrays.fill(priorities, 0);
+		convertedDataValid = false;
+		return this;
 	}
 
 	public Bone getSkeleton() {
@@ -40,18 +135,91 @@ public class Pose {
 		return transform;
 	}
 
+	/**
+	 * @return the amount of bones this pose has room for
+	 */
+	public int getBoneCount() {
+		return boneCount;
+	}
+
 	/**
 	 * store the transformation for a bone, overriding old transformations
 	 *
 	 * @param bone
+	 *            the index of the bone (ignored if negative)
 	 * @param transform
 	 * @return this
 	 */
-	public Pose put(String bone, BoneTransformation transform) {
-		boneTransforms.put(bone, transform);
+	public Pose put(int bone, BoneTransformation transform) {
+		if (bone < 0) {
+			return this;
+		}
+		final Vector3f position = transform.getPosition();
+		final Quaternionf rotation = transform.getRotation();
+		final Vector3f scale = transform.getScale();
+		set(bone, position.x, position.y, position.z, rotation.x, rotation.y, rotation.z, rotation.w, scale.x, scale.y, scale.z);
+		return this;
+	}
+
+	/**
+	 * store a bone transformation given as a matrix, overriding old transformations
+	 *
+	 * @param bone
+	 *            the index of the bone (ignored if negative)
+	 * @param matrix
+	 *            the transformation to decompose into translation, rotation and scale
+	 * @return this
+	 */
+	public Pose put(int bone, Matrix4fc matrix) {
+		if (bone < 0) {
+			return this;
+		}
+		final Quaternionf rotation = matrix.getUnnormalizedRotation(new Quaternionf()).normalize();
+		final Vector3f scale = matrix.getScale(new Vector3f());
+		set(bone, matrix.m30(), matrix.m31(), matrix.m32(), rotation.x, rotation.y, rotation.z, rotation.w, scale.x, scale.y, scale.z);
 		return this;
 	}
 
+	/**
+	 * store the components of a bone transformation, overriding old transformations
+	 *
+	 * @param bone
+	 *            the index of the bone (ignored if negative)
+	 * @return this
+	 */
+	public Pose put(int bone, float tx, float ty, float tz, float qx, float qy, float qz, float qw, float sx, float sy, float sz) {
+		if (bone >= 0) {
+			set(bone, tx, ty, tz, qx, qy, qz, qw, sx, sy, sz);
+		}
+		return this;
+	}
+
+	private void set(int bone, float tx, float ty, float tz, float qx, float qy, float qz, float qw, float sx, float sy, float sz) {
+		final int vec = bone * VEC3_SIZE;
+		final int quat = bone * QUAT_SIZE;
+		translations[vec] = tx;
+		translations[vec + 1] = ty;
+		translations[vec + 2] = tz;
+		rotations[quat] = qx;
+		rotations[quat + 1] = qy;
+		rotations[quat + 2] = qz;
+		rotations[quat + 3] = qw;
+		scales[vec] = sx;
+		scales[vec + 1] = sy;
+		scales[vec + 2] = sz;
+		present[bone] = true;
+		convertedDataValid = false;
+	}
+
+	/**
+	 * @param bone
+	 *            the index of a bone
+	 * @return true if a transformation is stored for this bone
+	 */
+	public boolean hasBone(int bone) {
+		return bone >= 0 && bone < boneCount && present[bone];
+	}
+
 	/**
 	 * merge the Bonetransforms of the other pose into this one
 	 *
@@ -59,22 +227,26 @@ public class Pose {
 	 *            where to read BoneTransformations from
 	 */
 	public void mergeWith(Pose other) {
-		for (Map.Entry<String, BoneTransformation> transform : other.boneTransforms.entrySet()) {
-			if (this.boneTransforms.containsKey(transform.getKey())) {
-				System.err.println("Double key! " + transform.getKey());
+		for (int bone = 0; bone < Math.min(boneCount, other.boneCount); bone++) {
+			if (!other.present[bone]) {
+				continue;
+			}
+			if (present[bone]) {
+				System.err.println("Double key! " + bone);
 			} else {
-				this.boneTransforms.put(transform.getKey(), transform.getValue());
+				copyBone(other, this, bone);
 			}
 		}
 	}
 
-	public int getBonePriority(String boneName) {
-		Integer priority = bonePriorities.get(boneName);
-		return (priority != null) ? priority : 0;
+	public int getBonePriority(int bone) {
+		return bone >= 0 && bone < boneCount ? priorities[bone] : 0;
 	}
 
-	public void setBonePriority(String boneName, int value) {
-		bonePriorities.put(boneName, value);
+	public void setBonePriority(int bone, int value) {
+		if (bone >= 0 && bone < boneCount) {
+			priorities[bone] = value;
+		}
 	}
 
 	/**
@@ -87,20 +259,11 @@ public class Pose {
 	public void mixInto(final double ownStrength, final Pose before) {
 		Log.assertEqual(TAG, this.skeleton, before.skeleton, "Cannot merge poses with different skeletons");
 
-		for (Map.Entry<String, BoneTransformation> beforeSet : before.boneTransforms.entrySet()) {
-			String key = beforeSet.getKey();
-			BoneTransformation beforeTransform = beforeSet.getValue();
-
-			if (getBonePriority(key) > before.getBonePriority(key)) {
-				BoneTransformation afterTransform = this.boneTransforms.get(key);
-				if (afterTransform == null) {
-					continue;
-				}
-				BoneTransformation lerped = BoneTransformation.lerp(
-						beforeTransform,
-						afterTransform, ownStrength);
-				beforeSet.setValue(lerped);
-				before.bonePriorities.put(key, getBonePriority(key));
+		final int count = Math.min(boneCount, before.boneCount);
+		for (int bone = 0; bone < count; bone++) {
+			if (before.present[bone] && present[bone] && priorities[bone] > before.priorities[bone]) {
+				lerpBone(before, this, before, bone, ownStrength);
+				before.priorities[bone] = priorities[bone];
 			}
 		}
 	}
@@ -108,9 +271,11 @@ public class Pose {
 	@Override
 	public String toString() {
 		StringBuilder s = new StringBuilder("Pose(");
-		for (Map.Entry<String, BoneTransformation> transform : boneTransforms.entrySet()) {
-			s.append(transform.getKey()).append("->").append(transform.getValue()).append("\n");
-		}
+		skeleton.foreach(bone -> {
+			if (hasBone(bone.getIndex())) {
+				s.append(bone.getName()).append("->").append(getRaw(bone.getIndex())).append("\n");
+			}
+		});
 		return s.append(")").toString();
 	}
 
@@ -132,25 +297,160 @@ public class Pose {
 
 		Log.assertEqual(TAG, p1.skeleton, p2.skeleton, "Cannot lerp poses with different skeletons");
 
-		Pose result = new Pose(p1.skeleton, p1.transform);
-		result.bonePriorities = p1.bonePriorities;
+		return lerpInto(p1, p2, factor, new Pose(p1.skeleton, p1.transform, p1.boneCount));
+	}
 
-		for (Map.Entry<String, BoneTransformation> boneTransform : p1.boneTransforms.entrySet()) {
-			String name = boneTransform.getKey();
-			BoneTransformation t1 = boneTransform.getValue();
-			BoneTransformation t2 = p2.boneTransforms.get(name);
+	/**
+	 * lerp between two poses (eg of two keyFrames) without allocating
+	 *
+	 * @param p1
+	 * @param p2
+	 * @param factor
+	 * @param dest
+	 *            where to store the result, a pose of the same size that is neither p1 nor p2
+	 * @return dest
+	 */
+	public static final Pose lerp(Pose p1, Pose p2, double factor, Pose dest) {
+		if (Math.abs(factor) <= LERP_SHORTCUT_EPSILON) {
+			return dest.set(p1);
+		}
+		if (Math.abs(factor - 1) <= LERP_SHORTCUT_EPSILON) {
+			return dest.set(p2);
+		}
+
+		Log.assertEqual(TAG, p1.skeleton, p2.skeleton, "Cannot lerp poses with different skeletons");
+		Log.assertEqual(TAG, p1.boneCount, dest.boneCount, "Cannot lerp into a pose of a different size");
 
-			if (t1 != null && t2 != null) {
-				BoneTransformation resTrans = BoneTransformation.lerp(t1, t2, factor);
-				result.put(name, resTrans);
+		Arrays.fill(dest.present, false);
+		return lerpInto(p1, p2, factor, dest);
+	}
+
+	/**
+	 * interpolate all bones present in both poses into an empty pose
+	 *
+	 * @return dest
+	 */
+	private static Pose lerpInto(Pose p1, Pose p2, double factor, Pose dest) {
+		System.arraycopy(p1.priorities, 0, dest.priorities, 0, p1.boneCount);
+
+		final int count = Math.min(p1.boneCount, p2.boneCount);
+		for (int bone = 0; bone < count; bone++) {
+			if (p1.present[bone] && p2.present[bone]) {
+				lerpBone(p1, p2, dest, bone, factor);
+				dest.present[bone] = true;
+			}
+		}
+		dest.convertedDataValid = false;
+		return dest;
+	}
+
+	/**
+	 * copy the transformation of a single bone
+	 */
+	private static void copyBone(Pose from, Pose to, int bone) {
+		System.arraycopy(from.translations, bone * VEC3_SIZE, to.translations, bone * VEC3_SIZE, VEC3_SIZE);
+		System.arraycopy(from.rotations, bone * QUAT_SIZE, to.rotations, bone * QUAT_SIZE, QUAT_SIZE);
+		System.arraycopy(from.scales, bone * VEC3_SIZE, to.scales, bone * VEC3_SIZE, VEC3_SIZE);
+		to.present[bone] = true;
+		to.convertedDataValid = false;
+	}
+
+	/**
+	 * interpolate the transformation of a single bone (the same way as {@link BoneTransformation#lerp}). dest may be
+	 * one of the inputs
+	 *
+	 * @param a
+	 *            the pose at factor 0
+	 * @param b
+	 *            the pose at factor 1
+	 * @param dest
+	 *            where to store the result
+	 * @param bone
+	 *            the bone index
+	 * @param factor
+	 *            the interpolation factor
+	 */
+	private static void lerpBone(Pose a, Pose b, Pose dest, int bone, double factor) {
+		if (Math.abs(factor) <= LERP_SHORTCUT_EPSILON) {
+			if (a != dest) {
+				copyBone(a, dest, bone);
 			}
+			return;
+		}
+		if (Math.abs(factor - 1) <= LERP_SHORTCUT_EPSILON) {
+			copyBone(b, dest, bone);
+			return;
 		}
+		final float t = (float) factor;
+		final int vec = bone * VEC3_SIZE;
+		for (int i = vec; i < vec + VEC3_SIZE; i++) {
+			dest.translations[i] = a.translations[i] + (b.translations[i] - a.translations[i]) * t;
+			dest.scales[i] = a.scales[i] + (b.scales[i] - a.scales[i]) * t;
+		}
+		slerp(a.rotations, b.rotations, dest.rotations, bone * QUAT_SIZE, t);
+		dest.convertedDataValid = false;
+	}
 
-		return result;
+	/**
+	 * spherical interpolation of two quaternions stored in arrays (same as {@link Quaternionf#slerp})
+	 */
+	private static void slerp(float[] a, float[] b, float[] dest, int offset, float alpha) {
+		final float cosom = a[offset] * b[offset] + a[offset + 1] * b[offset + 1] + a[offset + 2] * b[offset + 2] + a[offset + 3] * b[offset + 3];
+		final float absCosom = Math.abs(cosom);
+		float scale0;
+		float scale1;
+		if (1.0f - absCosom > 1E-6f) {
+			final float sinSqr = 1.0f - absCosom * absCosom;
+			final float sinom = (float) (1.0 / Math.sqrt(sinSqr));
+			final float omega = (float) Math.atan2(sinSqr * sinom, absCosom);
+			scale0 = (float) (Math.sin((1.0 - alpha) * omega) * sinom);
+			scale1 = (float) (Math.sin(alpha * omega) * sinom);
+		} else {
+			scale0 = 1.0f - alpha;
+			scale1 = alpha;
+		}
+		scale1 = cosom >= 0.0f ? scale1 : -scale1;
+		for (int i = offset; i < offset + QUAT_SIZE; i++) {
+			dest[i] = scale0 * a[i] + scale1 * b[i];
+		}
 	}
 
-	public BoneTransformation getRaw(String boneName) {
-		return boneTransforms.get(boneName);
+	/**
+	 * @param bone
+	 *            the index of a bone
+	 * @return a new BoneTransformation holding the stored transformation of this bone, or null if there is none
+	 */
+	public BoneTransformation getRaw(int bone) {
+		if (!hasBone(bone)) {
+			return null;
+		}
+		final int vec = bone * VEC3_SIZE;
+		final int quat = bone * QUAT_SIZE;
+		return new BoneTransformation(new Vector3f(translations[vec], translations[vec + 1], translations[vec + 2]),
+				new Quaternionf(rotations[quat], rotations[quat + 1], rotations[quat + 2], rotations[quat + 3]),
+				new Vector3f(scales[vec], scales[vec + 1], scales[vec + 2]));
+	}
+
+	/**
+	 * write the local transformation of a bone into a matrix
+	 *
+	 * @param bone
+	 *            the index of a bone
+	 * @param dest
+	 *            where to store the matrix
+	 * @return dest
+	 */
+	public Matrix4f getLocalMatrix(int bone, Matrix4f dest) {
+		final int vec = bone * VEC3_SIZE;
+		final int quat = bone * QUAT_SIZE;
+		final float qx = rotations[quat];
+		final float qy = rotations[quat + 1];
+		final float qz = rotations[quat + 2];
+		final float qw = rotations[quat + 3];
+		final float invLength = (float) (1.0 / Math.sqrt(qx * qx + qy * qy + qz * qz + qw * qw));
+		return dest.translationRotateScale(translations[vec], translations[vec + 1], translations[vec + 2],
+				qx * invLength, qy * invLength, qz * invLength, qw * invLength,
+				scales[vec], scales[vec + 1], scales[vec + 2]);
 	}
 
 	/**
@@ -162,28 +462,38 @@ public class Pose {
 		return getConvertedData()[boneID];
 	}
 
+	/**
+	 * @return the applied bone matrices. They are updated in place when this pose changes
+	 */
 	public BoneState[] getConvertedData() {
 		if (convertedData == null) {
-			convertedData = new BoneState[skeleton.boneCount()];
+			convertedData = new BoneState[boneCount];
+		}
+		if (!convertedDataValid) {
 			convertData(transform, skeleton);
+			convertedDataValid = true;
 		}
 		return convertedData;
 	}
 
 	private void convertData(Matrix4f parent, Bone bone) {
-		if (bone.getIndex() < 0) {
+		final int index = bone.getIndex();
+		if (index < 0) {
 			return;
 		}
+		if (convertedData[index] == null) {
+			convertedData[index] = new BoneState(bone);
+		}
+		final BoneState state = convertedData[index];
 
-		Matrix4f currentLocalBoneTransform = getRaw(bone.getName()).asMatrix();
-		Matrix4f currentBoneTransform = parent.mul(currentLocalBoneTransform, new Matrix4f());
+		getLocalMatrix(index, state.getLocalBoneTransform());
+		parent.mul(state.getLocalBoneTransform(), state.getPoseBoneTransform());
 
 		for (Bone child : bone.getChildren()) {
-			convertData(currentBoneTransform, child);
+			convertData(state.getPoseBoneTransform(), child);
 		}
 
-		Matrix4f combined = currentBoneTransform.mul(bone.getInverseBindTransform(), new Matrix4f());
-		convertedData[bone.getIndex()] = new BoneState(bone, currentLocalBoneTransform, currentBoneTransform, combined);
+		state.getPoseBoneTransform().mul(bone.getInverseBindTransform(), state.getCombinedBoneTransform());
 	}
 
 	/**
@@ -195,13 +505,21 @@ public class Pose {
 	 *            the uniform to store pose-data
 	 */
 	public void setUniformData(ShaderProgram shader, String uniformName) {
-		BoneState[] transforms = getConvertedData();
-		Matrix4f[] data = new Matrix4f[transforms.length];
+		shader.setUniform(uniformName, getPalette());
+	}
 
-		for (int b = 0; b < transforms.length; b++) {
-			data[b] = transforms[b].getCombinedBoneTransform();
+	/**
+	 * @return the combined bone matrices of the convertedData, indexed by bone. The array is reused, so it must not
+	 *         be modified
+	 */
+	public Matrix4f[] getPalette() {
+		BoneState[] transforms = getConvertedData();
+		if (palette == null) {
+			palette = new Matrix4f[transforms.length];
+			for (int b = 0; b < transforms.length; b++) {
+				palette[b] = transforms[b].getCombinedBoneTransform();
+			}
 		}
-
-		shader.setUniform(uniformName, data);
+		return palette;
 	}
 }
@@ -0,0 +1,195 @@
+package mbeb.opengldefault.animation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.joml.Vector3fc;
+
+import mbeb.opengldefault.logging.Log;
+import mbeb.opengldefault.rendering.renderable.IRenderable;
+import mbeb.opengldefault.rendering.renderable.MaterialRenderable;
+import mbeb.opengldefault.scene.SceneObject;
+
+/**
+ * A stage at the end of the update that evaluates the poses of all visible {@link AnimatedRenderable}s of a scene
+ * graph in parallel, and then publishes them at once. Rendering and bone tracking only read the published poses.
+ * <p>
+ * Invisible renderables only advance their animation time. Distant ones get evaluated at a reduced rate, as decided by
+ * an {@link AnimationLodPolicy}, and interpolate their palettes in between.
+ */
+public class PoseEvaluator {
+
+	private static final String TAG = "PoseEvaluator";
+
+	/** the pool running the evaluations */
+	private final ForkJoinPool pool;
+	/** the policy for renderables without their own */
+	private AnimationLodPolicy lodPolicy = new AnimationLodPolicy();
+
+	/** the visible renderables of the current evaluation, and the index of each one */
+	private final List<AnimatedRenderable> renderables = new ArrayList<>();
+	private final Map<AnimatedRenderable, Integer> indices = new IdentityHashMap<>();
+	/** the camera distance of each visible renderable */
+	private float[] distances = new float[16];
+	/** the renderables in invisible sub-trees */
+	private final Set<AnimatedRenderable> hidden = Collections.newSetFromMap(new IdentityHashMap<>());
+	/** the renderables to evaluate in this update */
+	private final List<AnimatedRenderable> due = new ArrayList<>();
+
+	/** statistics of the last evaluation */
+	private int evaluations = 0;
+	private int skippedEvaluations = 0;
+
+	/**
+	 * create a PoseEvaluator that uses the common ForkJoinPool
+	 */
+	public PoseEvaluator() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * create a PoseEvaluator that uses a specific pool
+	 *
+	 * @param pool
+	 *            the pool to run the evaluations on
+	 */
+	public PoseEvaluator(final ForkJoinPool pool) {
+		this.pool = Log.assertNotNull(TAG, pool);
+	}
+
+	/**
+	 * evaluate and publish the poses of all animated renderables in the visible part of a scene graph, at full rate
+	 *
+	 * @param root
+	 *            the root of the scene graph
+	 */
+	public void evaluate(final SceneObject root) {
+		evaluate(root, null);
+	}
+
+	/**
+	 * evaluate and publish the poses of all animated renderables in the visible part of a scene graph
+	 *
+	 * @param root
+	 *            the root of the scene graph
+	 * @param eye
+	 *            the camera position to measure the LOD distances from, or null to evaluate everything at full rate
+	 */
+	public void evaluate(final SceneObject root, final Vector3fc eye) {
+		collect(root, eye, true);
+
+		skippedEvaluations = 0;
+		for (int i = 0; i < renderables.size(); i++) {
+			final AnimatedRenderable renderable = renderables.get(i);
+			final AnimationLodPolicy policy = renderable.getLodPolicy() != null ? renderable.getLodPolicy() : lodPolicy;
+			renderable.setLodInterval(eye == null ? 1 : policy.getEvaluationInterval(distances[i]));
+			if (renderable.isPoseEvaluationDue()) {
+				due.add(renderable);
+			} else {
+				renderable.skipPoseEvaluation();
+				skippedEvaluations++;
+			}
+		}
+		for (final AnimatedRenderable renderable : hidden) {
+			if (!indices.containsKey(renderable)) {
+				skippedEvaluations++;
+			}
+		}
+		evaluations = due.size();
+
+		if (due.size() > 1) {
+			pool.submit(() -> due.parallelStream().forEach(AnimatedRenderable::evaluatePose)).join();
+		} else {
+			due.forEach(AnimatedRenderable::evaluatePose);
+		}
+		for (final AnimatedRenderable renderable : due) {
+			renderable.swapPoseBuffers();
+		}
+		due.clear();
+		renderables.clear();
+		indices.clear();
+		hidden.clear();
+	}
+
+	/**
+	 * gather the animated renderables below an object
+	 *
+	 * @param object
+	 *            the root of the sub-tree
+	 * @param eye
+	 *            the camera position, or null
+	 * @param visible
+	 *            false if an object above is invisible
+	 */
+	private void collect(final SceneObject object, final Vector3fc eye, final boolean visible) {
+		final boolean objectVisible = visible && object.isVisible();
+		IRenderable renderable = object.getRenderable();
+		while(renderable instanceof MaterialRenderable) {
+			renderable = ((MaterialRenderable) renderable).getWrappedRenderable();
+		}
+		if (renderable instanceof AnimatedRenderable) {
+			if (objectVisible) {
+				addVisible((AnimatedRenderable) renderable, eye == null ? 0 : object.getGlobalPosition().distance(eye));
+			} else {
+				hidden.add((AnimatedRenderable) renderable);
+			}
+		}
+		for (final SceneObject child : object.getSubObjects()) {
+			collect(child, eye, objectVisible);
+		}
+	}
+
+	/**
+	 * add a visible renderable, keeping the smallest distance of renderables that are used multiple times
+	 */
+	private void addVisible(final AnimatedRenderable renderable, final float distance) {
+		final Integer index = indices.get(renderable);
+		if (index != null) {
+			distances[index] = Math.min(distances[index], distance);
+			return;
+		}
+		if (renderables.size() == distances.length) {
+			final float[] grown = new float[distances.length * 2];
+			System.arraycopy(distances, 0, grown, 0, distances.length);
+			distances = grown;
+		}
+		indices.put(renderable, renderables.size());
+		distances[renderables.size()] = distance;
+		renderables.add(renderable);
+	}
+
+	/**
+	 * @return the policy for renderables without their own
+	 */
+	public AnimationLodPolicy getLodPolicy() {
+		return lodPolicy;
+	}
+
+	/**
+	 * @param lodPolicy
+	 *            the policy for renderables without their own, {@link AnimationLodPolicy#FULL_RATE} to disable the LOD
+	 */
+	public void setLodPolicy(final AnimationLodPolicy lodPolicy) {
+		this.lodPolicy = Log.assertNotNull(TAG, lodPolicy);
+	}
+
+	/**
+	 * @return the amount of poses evaluated in the last update
+	 */
+	public int getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * @return the amount of pose evaluations skipped in the last update, because the renderable was invisible or
+	 *         interpolated between two evaluations
+	 */
+	public int getSkippedEvaluations() {
+		return skippedEvaluations;
+	}
+}
@@ -0,0 +1,150 @@
+package mbeb.opengldefault.animation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+import mbeb.opengldefault.scene.BoundingBox;
+
+/**
+ * The extents of the vertices influenced by each bone of an {@link AnimatedMesh}, in bind space. A skinned vertex is
+ * a weighted mix of its bind position transformed by the skinning matrices of its bones, so transforming each bone
+ * box by its skinning matrix bounds the skinned mesh for any pose, without skinning a single vertex.
+ */
+public class SkinningBounds {
+
+	/** min and max corner of each bone box, 6 floats per bone. Bones without vertices have min > max */
+	private final float[] extents;
+
+	/**
+	 * create empty bounds
+	 *
+	 * @param boneCount
+	 *            the amount of bones of the skeleton
+	 */
+	public SkinningBounds(final int boneCount) {
+		extents = new float[boneCount * 6];
+		for (int bone = 0; bone < boneCount; bone++) {
+			Arrays.fill(extents, bone * 6, bone * 6 + 3, Float.POSITIVE_INFINITY);
+			Arrays.fill(extents, bone * 6 + 3, bone * 6 + 6, Float.NEGATIVE_INFINITY);
+		}
+	}
+
+	/**
+	 * grow the box of a bone so that it contains a vertex
+	 *
+	 * @param bone
+	 *            the index of a bone influencing the vertex
+	 * @param position
+	 *            the bind position of the vertex
+	 */
+	public void include(final int bone, final Vector3fc position) {
+		final int offset = bone * 6;
+		extents[offset] = java.lang.Math.min(extents[offset], position.x());
+		extents[offset + 1] = java.lang.Math.min(extents[offset + 1], position.y());
+		extents[offset + 2] = java.lang.Math.min(extents[offset + 2], position.z());
+		extents[offset + 3] = java.lang.Math.max(extents[offset + 3], position.x());
+		extents[offset + 4] = java.lang.Math.max(extents[offset + 4], position.y());
+		extents[offset + 5] = java.lang.Math.max(extents[offset + 5], position.z());
+	}
+
+	/**
+	 * write the bone extents, so that {@link #readFrom(DataInput)} restores them
+	 *
+	 * @param out
+	 *            the output to write to
+	 * @throws IOException
+	 *             if the output fails
+	 */
+	public void writeTo(final DataOutput out) throws IOException {
+		out.writeInt(getBoneCount());
+		for (final float extent : extents) {
+			out.writeFloat(extent);
+		}
+	}
+
+	/**
+	 * read bone extents written by {@link #writeTo(DataOutput)}
+	 *
+	 * @param in
+	 *            the input to read from
+	 * @return the restored bounds
+	 * @throws IOException
+	 *             if the input fails
+	 */
+	public static SkinningBounds readFrom(final DataInput in) throws IOException {
+		final SkinningBounds bounds = new SkinningBounds(in.readInt());
+		for (int i = 0; i < bounds.extents.length; i++) {
+			bounds.extents[i] = in.readFloat();
+		}
+		return bounds;
+	}
+
+	public int getBoneCount() {
+		return extents.length / 6;
+	}
+
+	/**
+	 * calculate the extents of the mesh skinned with a palette, and grow min and max to contain them
+	 *
+	 * @param palette
+	 *            the skinning matrices, one per bone
+	 * @param min
+	 *            the min corner to grow
+	 * @param max
+	 *            the max corner to grow
+	 * @param scratchMin
+	 *            scratch storage
+	 * @param scratchMax
+	 *            scratch storage
+	 */
+	public void include(final Matrix4f[] palette, final Vector3f min, final Vector3f max, final Vector3f scratchMin, final Vector3f scratchMax) {
+		final int bones = java.lang.Math.min(palette.length, getBoneCount());
+		for (int bone = 0; bone < bones; bone++) {
+			final int offset = bone * 6;
+			if (extents[offset] > extents[offset + 3]) {
+				continue;
+			}
+			palette[bone].transformAab(extents[offset], extents[offset + 1], extents[offset + 2], extents[offset + 3], extents[offset + 4], extents[offset + 5], scratchMin, scratchMax);
+			min.min(scratchMin);
+			max.max(scratchMax);
+		}
+	}
+
+	/**
+	 * calculate the extents of the mesh skinned with a palette into min and max
+	 *
+	 * @param palette
+	 *            the skinning matrices, one per bone
+	 * @param min
+	 *            receives the min corner
+	 * @param max
+	 *            receives the max corner
+	 * @param scratchMin
+	 *            scratch storage
+	 * @param scratchMax
+	 *            scratch storage
+	 * @return false if no bone has vertices, so the extents are empty
+	 */
+	public boolean calculate(final Matrix4f[] palette, final Vector3f min, final Vector3f max, final Vector3f scratchMin, final Vector3f scratchMax) {
+		min.set(Float.POSITIVE_INFINITY);
+		max.set(Float.NEGATIVE_INFINITY);
+		include(palette, min, max, scratchMin, scratchMax);
+		return min.x <= max.x;
+	}
+
+	/**
+	 * @return a box from min to max, or an empty box if min > max
+	 */
+	static BoundingBox toBoundingBox(final Vector3f min, final Vector3f max) {
+		if (min.x > max.x) {
+			return new BoundingBox.Empty();
+		}
+		return new BoundingBox(min, max.sub(min));
+	}
+}
@@ -98,19 +98,15 @@ public abstract class Camera implements IEntityConvertable {
 	private Matrix4f projectionView;
 
 	/**
-	 * The uniform buffer object of this texture.
+	 * The uniform buffer object of this camera. It is created on first use, so cameras can be used without an OpenGL
+	 * context as long as they are not used for rendering.
 	 */
 	private UniformBuffer ubo;
 
 	/**
-	 * Creates a new camera and initializes its UBO.
+	 * Creates a new camera. Its UBO gets initialized on first use.
 	 */
 	protected Camera() {
-		this.ubo = new UniformBuffer(UBO_INDEX, UBO_NAME, MAT4_SIZE * 3);
-		ubo.whileBound(glObject -> {
-			ubo.bufferData(MAT4_SIZE * 3, GLBuffer.Usage.DYNAMIC_DRAW);
-			return true;
-		});
 		this.setUBODirty();
 		this.setEye(new Vector3f());
 		this.setCenter(new Vector3f(1, 0, 0));
@@ -159,7 +155,7 @@ public abstract class Camera implements IEntityConvertable {
 	 */
 	public final void updateUniformBlock() {
 		if (this.requiresUBOUpdate()) {
-			ubo.writer().write(this.getProjection()).write(this.getView()).write(this.getProjectionView()).flush();
+			getUniformBuffer().writer().write(this.getProjection()).write(this.getView()).write(this.getProjectionView()).flush();
 			this.setUBOClean();
 		}
 	}
@@ -273,8 +269,11 @@ public abstract class Camera implements IEntityConvertable {
 	 * @return an up-to-date projection-view matrix for this camera
 	 */
 	public final Matrix4f getProjectionView() {
+		//refreshing the projection or the view marks the projection-view dirty
+		final Matrix4f projection = this.getProjection();
+		final Matrix4f view = this.getView();
 		if (this.isProjectionViewDirty()) {
-			this.projectionView = this.getProjection().mul(this.getView(), new Matrix4f());
+			this.projectionView = projection.mul(view, new Matrix4f());
 			this.setProjectionViewClean();
 			this.setUBODirty();
 		}
@@ -394,7 +393,21 @@ public abstract class Camera implements IEntityConvertable {
 	 */
 	public void use() {
 		this.updateUniformBlock();
-		this.ubo.bindBufferBase();
+		this.getUniformBuffer().bindBufferBase();
+	}
+
+	/**
+	 * @return the UBO of this camera, initialized on the first call
+	 */
+	private UniformBuffer getUniformBuffer() {
+		if (ubo == null) {
+			ubo = new UniformBuffer(UBO_INDEX, UBO_NAME, MAT4_SIZE * 3);
+			ubo.whileBound(glObject -> {
+				ubo.bufferData(MAT4_SIZE * 3, GLBuffer.Usage.DYNAMIC_DRAW);
+				return true;
+			});
+		}
+		return ubo;
 	}
 
 	/**
@@ -1,7 +1,13 @@
 package mbeb.opengldefault.camera;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
 import mbeb.opengldefault.controls.Mouse;
+import mbeb.opengldefault.scene.BoundingBox;
 import mbeb.opengldefault.scene.SceneObject;
+import mbeb.opengldefault.scene.SceneSpatialIndex;
 
 import org.joml.Matrix4f;
 import org.joml.Vector2f;
@@ -25,6 +31,28 @@ public class MousePicker3D {
 	 */
 	private final Camera camera;
 
+	/**
+	 * the objects selected by the last index search
+	 */
+	private final List<SceneObject> selectedObjects = new ArrayList<>();
+
+	/**
+	 * scratch storage for the global box of the checked object
+	 */
+	private final Vector3f boxMin = new Vector3f();
+	private final Vector3f boxMax = new Vector3f();
+
+	/**
+	 * scratch storage for the global transformation of each depth of the traversal
+	 */
+	private final List<Matrix4f> transformStack = new ArrayList<>();
+
+	/**
+	 * the index of the running index search, and the callback selecting its hits
+	 */
+	private SceneSpatialIndex searchedIndex;
+	private final IntConsumer selectHit = this::selectHit;
+
 	public MousePicker3D(final Camera camera) {
 		this.camera = camera;
 	}
@@ -37,6 +65,14 @@ public class MousePicker3D {
 		return ray;
 	}
 
+	/**
+	 * Setter for the ray, for picking with something else than the mouse
+	 * @param ray the new ray direction in world space
+	 */
+	public void setRay(Vector3f ray) {
+		this.ray = ray;
+	}
+
 	/**
 	 * Updates the ray to match current camera and Mouse position
 	 * @param deltaTime time since last update
@@ -84,17 +120,64 @@ public class MousePicker3D {
 	 * @param parentTransform parent transformation to convert from parentSpace to worldSpace
 	 */
 	public void searchBoundingBoxes(SceneObject currentObject, Matrix4f parentTransform) {
+		searchBoundingBoxes(currentObject, parentTransform, 0);
+	}
+
+	/**
+	 * @param depth the depth of currentObject in the traversal, to find its scratch transformation
+	 */
+	private void searchBoundingBoxes(SceneObject currentObject, Matrix4f parentTransform, int depth) {
 		if (ray == null || camera.getEye() == null || currentObject.getBoundingBox() == null) {
 			return;
 		}
 
-		boolean selected = currentObject.getBoundingBox().intersectsRay(camera.getEye(), ray, parentTransform);
+		final BoundingBox box = currentObject.getBoundingBox();
+		if (transformStack.size() == depth) {
+			transformStack.add(new Matrix4f());
+		}
+		final Matrix4f transform = parentTransform.mul(currentObject.getTransformation().asMatrix(), transformStack.get(depth));
+		boolean selected = false;
+		if (!box.isEmpty()) {
+			box.getTransformedExtents(transform, boxMin, boxMax);
+			selected = BoundingBox.intersectsRay(camera.getEye(), ray, boxMin, boxMax);
+		}
 
 		currentObject.setSelected(selected);
 
-		final Matrix4f transform = parentTransform.mul(currentObject.getTransformation().asMatrix(), new Matrix4f());
-		for (SceneObject child : currentObject.getSubObjects()) {
-			searchBoundingBoxes(child, transform);
+		final List<SceneObject> children = currentObject.getSubObjects();
+		for (int i = 0; i < children.size(); i++) {
+			searchBoundingBoxes(children.get(i), transform, depth + 1);
 		}
 	}
+
+	/**
+	 * Selects all Objects whose renderable BoundingBox intersects the ray, using a spatial index instead of
+	 * traversing the whole scene. The index tests its candidates against their exact global boxes. Objects
+	 * selected by the previous search get deselected.
+	 * @param index the spatial index of the scene
+	 */
+	public void searchBoundingBoxes(SceneSpatialIndex index) {
+		if (ray == null || camera.getEye() == null) {
+			return;
+		}
+		for (SceneObject previous : selectedObjects) {
+			previous.setSelected(false);
+		}
+		selectedObjects.clear();
+
+		index.update();
+		searchedIndex = index;
+		index.queryRay(camera.getEye(), ray, selectHit);
+		searchedIndex = null;
+	}
+
+	/**
+	 * select a node hit by the index search
+	 * @param node the node index in the searched index
+	 */
+	private void selectHit(int node) {
+		SceneObject hit = searchedIndex.getTransforms().getObject(node);
+		hit.setSelected(true);
+		selectedObjects.add(hit);
+	}
 }
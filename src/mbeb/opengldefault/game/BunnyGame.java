@@ -3,15 +3,18 @@ package mbeb.opengldefault.game;
 import mbeb.ld38.HealthBarGUI;
 import mbeb.ld38.SharedData;
 import mbeb.ld38.overworld.OverWorld;
+import mbeb.lifeforms.Sword;
 
 public class BunnyGame extends Game {
 	/** Class Name Tag */
 	private static final String TAG = "BunnyGame";
 
+	private SharedData data;
+
 	@Override
 	public void init() {
 
-		SharedData data = new SharedData(new HealthBarGUI());
+		data = new SharedData(new HealthBarGUI());
 		data.overworld = new OverWorld();
 
 		addGameState(GameStateIdentifier.INTRO, new IntroGameState(data));
@@ -23,6 +26,8 @@ public class BunnyGame extends Game {
 	@Override
 	public void clear() {
 		super.clear();
+		data.overworld.releaseAssets();
+		Sword.releaseAssets();
 	}
 
 }
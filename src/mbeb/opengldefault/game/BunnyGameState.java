@@ -33,7 +33,9 @@ import mbeb.opengldefault.logging.GLErrors;
 import mbeb.opengldefault.options.ButtonOption;
 import mbeb.opengldefault.options.Option;
 import mbeb.opengldefault.options.SliderOption;
-import mbeb.opengldefault.rendering.io.ObjectLoader;
+import mbeb.opengldefault.rendering.io.AssetGroup;
+import mbeb.opengldefault.rendering.io.AssetHandle;
+import mbeb.opengldefault.rendering.io.AssetRegistry;
 import mbeb.opengldefault.rendering.renderable.BezierCurveRenderable;
 import mbeb.opengldefault.rendering.renderable.IRenderable;
 import mbeb.opengldefault.rendering.renderable.Skybox;
@@ -98,6 +100,9 @@ public class BunnyGameState implements GameState {
 
 	SoundSource speaker;
 
+	/** the assets used by this state */
+	private final AssetGroup assetHandles = new AssetGroup();
+
 	@Override
 	public void init() {
 		timePassed = 0;
@@ -112,21 +117,27 @@ public class BunnyGameState implements GameState {
 		final Skybox skybox = new Skybox("skybox/mountain");
 		bunnyScene = new Scene(camera, skybox);
 
-		Material playerMaterial = new Material("material/player", 2);
-		//Material lampMaterial = new Material("material/lamp", 3);
-		Material bunnyMaterial = new Material("material/bunny", 4);
-		Material metalbox = new Material("material/metalbox", 4);
+		final AssetRegistry assets = AssetRegistry.getInstance();
+		AssetHandle<Material> playerMaterialHandle = acquire(assets.acquireMaterial("material/player", 2));
+		//AssetHandle<Material> lampMaterialHandle = acquire(assets.acquireMaterial("material/lamp", 3));
+		AssetHandle<Material> bunnyMaterialHandle = acquire(assets.acquireMaterial("material/bunny", 4));
+		AssetHandle<Material> metalbox = acquire(assets.acquireMaterial("material/metalbox", 4));
+
+		AssetHandle<AnimatedMesh> playerAnimMeshHandle = acquire(assets.acquireAnimatedMesh("player.fbx", MeshFlip, 0));
+		AssetHandle<AnimatedMesh> bunnyAnimMeshHandle = acquire(assets.acquireAnimatedMesh("ohrenFlackern.fbx", MeshFlip, 0));
+		AssetHandle<IRenderable> containerMesh = acquire(assets.acquireMesh("cube.obj"));
 
-		AnimatedMesh playerAnimMesh = new ObjectLoader().loadFromFileAnim("player.fbx");
-		playerAnimMesh.setTransform(MeshFlip);
+		Material playerMaterial = playerMaterialHandle.get();
+		Material bunnyMaterial = bunnyMaterialHandle.get();
+
+		AnimatedMesh playerAnimMesh = playerAnimMeshHandle.get();
 		playerAnimMesh.getSkeleton().printRecursive("");
 
-		final AnimatedMesh bunnyAnimMesh = new ObjectLoader().loadFromFileAnim("ohrenFlackern.fbx");
-		bunnyAnimMesh.setTransform(MeshFlip);
+		final AnimatedMesh bunnyAnimMesh = bunnyAnimMeshHandle.get();
 		System.out.println();
 		bunnyAnimMesh.getSkeleton().printRecursive("");
 
-		final IRenderable containerRenderable = new ObjectLoader().loadFromFile("cube.obj").withMaterial(metalbox);
+		final IRenderable containerRenderable = containerMesh.get().withMaterial(metalbox.get());
 
 		curveShader = new ShaderProgram("bezier.vert", "bezier.frag", "bezier.geom");
 		curveShader.addUniformBlockIndex(Camera.UBO_NAME, Camera.UBO_INDEX);
@@ -345,9 +356,18 @@ public class BunnyGameState implements GameState {
 		}
 	}
 
+	/**
+	 * remember an asset handle, so that it gets released in {@link #clear()}
+	 */
+	private <T> AssetHandle<T> acquire(AssetHandle<T> handle) {
+		return assetHandles.add(handle);
+	}
+
 	@Override
 	public void clear() {
 		bunnyScene.getSoundEnvironment().cleanup();
+		assetHandles.releaseAll();
+		bunnyScene.getSkybox().releaseAssets();
 	}
 
 	@Override
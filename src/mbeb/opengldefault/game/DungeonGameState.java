@@ -14,6 +14,7 @@ import mbeb.ld38.*;
 import mbeb.ld38.dungeon.*;
 import mbeb.ld38.dungeon.room.*;
 import mbeb.lifeforms.*;
+import mbeb.opengldefault.animation.*;
 import mbeb.opengldefault.camera.*;
 import mbeb.opengldefault.controls.*;
 import mbeb.opengldefault.gl.*;
@@ -57,6 +58,8 @@ public class DungeonGameState implements GameState {
 		final Skybox skybox = new Skybox("darkbox/db");
 
 		scene = new Scene(camera, skybox);
+		scene.setParallelUpdate(new ParallelUpdate());
+		scene.setPoseEvaluator(new PoseEvaluator());
 		world = new EntityWorld();
 
 		//shaders
@@ -141,6 +144,10 @@ public class DungeonGameState implements GameState {
 
 	@Override
 	public void clear() {
+		goblin.releaseAssets();
+		chest.releaseAssets();
+		RoomType.releaseRoomTypes();
+		scene.getSkybox().releaseAssets();
 	}
 
 	@Override
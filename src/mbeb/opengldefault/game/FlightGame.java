@@ -138,6 +138,7 @@ public class FlightGame implements GameState {
 
 	@Override
 	public void clear() {
+		scene.getSkybox().releaseAssets();
 	}
 
 	@Override
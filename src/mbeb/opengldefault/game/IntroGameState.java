@@ -227,6 +227,11 @@ public class IntroGameState implements GameState {
 		}
 	}
 
+	@Override
+	public void clear() {
+		skyBox.releaseAssets();
+	}
+
 	@Override
 	public GameStateIdentifier getNextState() {
 		return KeyBoard.isKeyDown(GLFW.GLFW_KEY_ESCAPE) && starting || progress >= 1 ? GameStateIdentifier.OVERWORLD
@@ -98,6 +98,7 @@ public class OverworldGameState implements GameState {
 		final SceneObject waterObject =
 				new SceneObject(water, new BoneTransformation(new Vector3f(), new Quaternionf(), new Vector3f(100)));
 		waterObject.setShader(waterShader);
+		waterObject.setTransparent(true);
 
 		final ShaderProgram animationShader = new ShaderProgram("boneAnimation.vert", "basic.frag");
 		animationShader.addUniformBlockIndex(Camera.UBO_NAME, Camera.UBO_INDEX);
@@ -185,6 +186,12 @@ public class OverworldGameState implements GameState {
 		text.render();
 	}
 
+	@Override
+	public void clear() {
+		player.releaseAssets();
+		skybox.releaseAssets();
+	}
+
 	@Override
 	public GameStateIdentifier getNextState() {
 		if (KeyBoard.isKeyDown(GLFW.GLFW_KEY_ESCAPE)) {
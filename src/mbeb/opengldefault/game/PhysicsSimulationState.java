@@ -157,6 +157,11 @@ public class PhysicsSimulationState implements GameState {
 		scene.render(KeyBoard.isKeyDown(GLFW_KEY_TAB));
 	}
 	
+	@Override
+	public void clear() {
+		scene.getSkybox().releaseAssets();
+	}
+	
 	@Override
 	public GameStateIdentifier getNextState() {
 		return KeyBoard.isKeyDown(GLFW_KEY_ESCAPE) ? GameStateIdentifier.MAIN_MENU : null;
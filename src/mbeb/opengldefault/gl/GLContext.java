@@ -3,12 +3,6 @@ package mbeb.opengldefault.gl;
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.system.MemoryUtil.NULL;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.Comparator;
-
 import org.joml.Vector2f;
 import org.lwjgl.Version;
 import org.lwjgl.glfw.GLFWErrorCallback;
@@ -24,6 +18,8 @@ import mbeb.opengldefault.game.Game;
 import mbeb.opengldefault.logging.GLErrors;
 import mbeb.opengldefault.logging.Log;
 import mbeb.opengldefault.logging.LogMode;
+import mbeb.opengldefault.rendering.io.AssetLoader;
+import mbeb.opengldefault.rendering.io.AssetRegistry;
 
 public class GLContext {
 
@@ -133,6 +129,7 @@ public class GLContext {
 			lastTime = thisTime;
 
 			//Log.log(TAG, (int) (1 / deltaTime) + "fps");
+			AssetLoader.getInstance().drainUploads(AssetLoader.DEFAULT_UPLOAD_BUDGET);
 			game.update(deltaTime);
 			game.render();
 		}
@@ -143,19 +140,13 @@ public class GLContext {
 	 */
 	private static void clean() {
 		game.clear();
+		//everything still listed here is used for the whole game (or leaked by a game state)
+		AssetRegistry.getInstance().logMemoryUsage();
+		AssetLoader.getInstance().shutdown();
 		glfwDestroyWindow(window);
 		glfwTerminate();
 		glfwSetErrorCallback(null).free();
 		Log.closeLogFile();
-		File resFile = new File("res");
-		if (!resFile.exists()) {
-			return;
-		}
-		try {
-			Files.walk(resFile.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
-		} catch(IOException ex) {
-			Log.error(TAG, "Unable to delete old res-directory", ex);
-		}
 	}
 
 	/**
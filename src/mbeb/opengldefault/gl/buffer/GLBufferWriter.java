@@ -54,6 +54,18 @@ public class GLBufferWriter {
 		useSpacing = true;
 	}
 
+	/**
+	 * create a writer that only collects data in main memory, so it can be used on threads without a GL context.
+	 * It cannot be flushed, hand its {@link #getWrittenData()} to a real writer on the GL thread instead
+	 *
+	 * @param capacity
+	 *            the amount of bytes to collect
+	 * @return a new writer without buffer
+	 */
+	public static GLBufferWriter staging(int capacity) {
+		return new GLBufferWriter(null, 0, capacity);
+	}
+
 	//<editor-fold desc="write">
 
 	/**
@@ -109,6 +121,27 @@ public class GLBufferWriter {
 		return this;
 	}
 
+	/**
+	 * copy raw bytes to the buffer, for example from a memory-mapped file. The bytes have to be in native order
+	 *
+	 * @param data
+	 *            the bytes between position and limit get written, the position of data is not changed
+	 * @return this, for chaining
+	 */
+	public GLBufferWriter write(ByteBuffer data) {
+		writeBuffer.put(data.duplicate());
+		return this;
+	}
+
+	/**
+	 * @return a read-only view on the bytes written so far (in native order). It shares the content of this writer
+	 */
+	public ByteBuffer getWrittenData() {
+		final ByteBuffer data = writeBuffer.duplicate();
+		data.flip();
+		return data.asReadOnlyBuffer().order(writeBuffer.order());
+	}
+
 	/**
 	 * write a Matrix4f to the buffer
 	 * This method fills up some space if required for the layout.
@@ -335,6 +368,10 @@ public class GLBufferWriter {
 	 *            the behaviour that determines which method to use to write the data
 	 */
 	public void flush(boolean shouldBindBefore, boolean shouldUnbindAfter, WriteType writeType) {
+		if (glBuffer == null) {
+			Log.error(TAG, "This writer has no buffer to flush into");
+			return;
+		}
 		if (shouldBindBefore) {
 			glBuffer.bind();
 		}
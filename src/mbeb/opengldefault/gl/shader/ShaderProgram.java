@@ -57,6 +57,9 @@ public class ShaderProgram extends GLObject {
 
 	private boolean compiled = false;
 
+	/** reused for uploading matrix arrays, grown when needed */
+	private FloatBuffer matrixUploadBuffer = null;
+
 	/**
 	 * handles current parameter set and offers precompilation of Shader-Files
 	 */
@@ -416,7 +419,7 @@ public class ShaderProgram extends GLObject {
 		ensureCompiled();
 		final int uniformLocation = getUniform(name, !onlyTry);
 		if (!onlyTry || uniformLocation >= 0) {
-			FloatBuffer matrixBuffer = BufferUtils.createFloatBuffer(Constants.MAT4_COMPONENTS * value.length);
+			FloatBuffer matrixBuffer = getMatrixUploadBuffer(Constants.MAT4_COMPONENTS * value.length);
 			for (int i = 0; i < value.length; i++) {
 				Matrix4f matrix = value[i];
 				matrix.get(i * Constants.MAT4_COMPONENTS, matrixBuffer);
@@ -428,6 +431,44 @@ public class ShaderProgram extends GLObject {
 		}
 	}
 
+	/**
+	 * Sets the value of the given uniform to an array of 4x4 matrices that is already stored in a buffer
+	 *
+	 * @param name
+	 *            the name of the uniform
+	 * @param matrices
+	 *            the matrices (16 floats each, column major) between the buffers position and limit
+	 * @param transpose
+	 *            whether to transpose the matrices
+	 * @param onlyTry
+	 *            whether the shader should only attempt to set the uniform
+	 * @return the location of the set uniform or -1 if an error occurred
+	 */
+	public int setUniformMatrix4Array(final String name, final FloatBuffer matrices, final boolean transpose, final boolean onlyTry) {
+		ensureCompiled();
+		final int uniformLocation = getUniform(name, !onlyTry);
+		if (!onlyTry || uniformLocation >= 0) {
+			glUniformMatrix4fv(uniformLocation, transpose, matrices);
+			return GLErrors.checkForError(TAG, "setUniformMatrix4Array") ? -1 : uniformLocation;
+		} else {
+			return uniformLocation;
+		}
+	}
+
+	/**
+	 * @param floats
+	 *            the amount of floats to upload
+	 * @return the reused upload buffer, with its limit set to the given amount
+	 */
+	private FloatBuffer getMatrixUploadBuffer(final int floats) {
+		if (matrixUploadBuffer == null || matrixUploadBuffer.capacity() < floats) {
+			matrixUploadBuffer = BufferUtils.createFloatBuffer(floats);
+		}
+		matrixUploadBuffer.clear();
+		matrixUploadBuffer.limit(floats);
+		return matrixUploadBuffer;
+	}
+
 	/**
 	 * Attempts the value of the given uniform the given array of 4x4 matrices.
 	 *
@@ -87,6 +87,24 @@ public class CubeMap extends Texture {
 		return loadCubeMapImages(path, "jpg");
 	}
 
+	/**
+	 * Loads and converts the cube map images at the given path with the given extension, without a GL context.
+	 *
+	 * @param path
+	 *            the path of the cube map
+	 * @param extension
+	 *            the file extension
+	 * @return the decoded faces
+	 */
+	public static DecodedImage[] decodeCubeMapImages(String path, String extension) {
+		BufferedImage[] images = loadCubeMapImages(path, extension);
+		DecodedImage[] decoded = new DecodedImage[images.length];
+		for (int i = 0; i < images.length; i++) {
+			decoded[i] = new DecodedImage(images[i], false);
+		}
+		return decoded;
+	}
+
 	/**
 	 * Creates a new cube map.
 	 * The created texture is not generated yet.
@@ -107,6 +125,24 @@ public class CubeMap extends Texture {
 		this.setImages(images);
 	}
 
+	/**
+	 * Creates a new cube map with already decoded faces.
+	 *
+	 * @param images
+	 *            the cubemap faces, see {@link #decodeCubeMapImages(String, String)}
+	 */
+	public CubeMap(DecodedImage[] images) {
+		this();
+		this.ensureExists();
+		this.whileBound(texture -> {
+			boolean success = true;
+			for (int i = 0; i < images.length && success; i++) {
+				success = this.setFaceData(Face.POSITIVE_X.getGlEnum() + i, InternalFormat.RGBA8, Format.RGBA, DataType.UNSIGNED_BYTE, images[i].getWidth(), images[i].getHeight(), images[i].getData());
+			}
+			return success;
+		});
+	}
+
 	/**
 	 * Creates a new cube map with the images at the given path.
 	 * 
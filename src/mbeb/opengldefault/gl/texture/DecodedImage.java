@@ -0,0 +1,98 @@
+package mbeb.opengldefault.gl.texture;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+/**
+ * The pixels of an image, converted into the RGBA layout of a texture but not uploaded yet. Decoding needs no GL
+ * context, so it can happen on any thread.
+ */
+public class DecodedImage {
+
+	private final int width;
+	private final int height;
+	/** RGBA bytes */
+	private final ByteBuffer data;
+
+	/**
+	 * convert an image with {@link Texture#generateBuffer(BufferedImage, boolean)}
+	 *
+	 * @param image
+	 *            the image to convert
+	 */
+	public DecodedImage(final BufferedImage image) {
+		this(image, true);
+	}
+
+	/**
+	 * convert an image with {@link Texture#generateBuffer(BufferedImage, boolean)}
+	 *
+	 * @param image
+	 *            the image to convert
+	 * @param flipped
+	 *            flip on y coordinate (cube map faces are not flipped)
+	 */
+	public DecodedImage(final BufferedImage image, final boolean flipped) {
+		this.width = image.getWidth();
+		this.height = image.getHeight();
+		this.data = Texture.generateBuffer(image, flipped);
+	}
+
+	/**
+	 * Loads and converts an image from the textures folder
+	 *
+	 * @param path
+	 *            Path of the Image
+	 * @return the decoded image
+	 */
+	public static DecodedImage load(final String path) {
+		return new DecodedImage(Texture.loadBufferedImage(path));
+	}
+
+	/**
+	 * Loads and converts multiple images from a directory, which are named 0.ext, 1.ext, ...
+	 *
+	 * @param directory
+	 *            path to the directory of Images
+	 * @param extension
+	 *            file extension of the Images
+	 * @param amount
+	 *            how many images to load
+	 * @return the decoded images
+	 */
+	public static DecodedImage[] loadAll(final String directory, final String extension, final int amount) {
+		final DecodedImage[] images = new DecodedImage[amount];
+		for (int imageNumber = 0; imageNumber < amount; imageNumber++) {
+			images[imageNumber] = load(directory + "/" + imageNumber + "." + extension);
+		}
+		return images;
+	}
+
+	/**
+	 * @param images
+	 *            some decoded images
+	 * @return the amount of pixel bytes of all the images
+	 */
+	public static long getByteSize(final DecodedImage[] images) {
+		long bytes = 0;
+		for (final DecodedImage image : images) {
+			bytes += image.getData().remaining();
+		}
+		return bytes;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the RGBA bytes of the image
+	 */
+	public ByteBuffer getData() {
+		return data;
+	}
+}
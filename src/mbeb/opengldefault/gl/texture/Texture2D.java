@@ -52,11 +52,20 @@ public class Texture2D extends Texture {
 	 *            the image to set
 	 */
 	public Texture2D(BufferedImage image) {
+		this(new DecodedImage(image));
+	}
+
+	/**
+	 * Creates a 2D texture and initializes it with an already decoded image.
+	 *
+	 * @param image
+	 *            the image to set
+	 */
+	public Texture2D(DecodedImage image) {
 		this();
 		this.ensureExists();
-		ByteBuffer imageData = Texture.generateBuffer(image, true);
 		this.setImageData(image.getWidth(), image.getHeight(), InternalFormat.RGBA8, Format.RGBA,
-				DataType.UNSIGNED_BYTE, imageData);
+				DataType.UNSIGNED_BYTE, image.getData());
 	}
 
 	/**
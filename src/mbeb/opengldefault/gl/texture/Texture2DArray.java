@@ -57,4 +57,15 @@ public class Texture2DArray extends ThreeDimensionalTexture {
 	public Texture2DArray(BufferedImage[] images) {
 		this(images, images.length);
 	}
+
+	/**
+	 * Creates a 2D texture array with already decoded images.
+	 *
+	 * @param images
+	 *            the images to use
+	 */
+	public Texture2DArray(DecodedImage[] images) {
+		this(images[0].getWidth(), images[0].getHeight(), images.length, InternalFormat.RGBA8);
+		this.setLayers(images);
+	}
 }
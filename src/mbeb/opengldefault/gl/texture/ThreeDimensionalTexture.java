@@ -57,6 +57,19 @@ public abstract class ThreeDimensionalTexture extends Texture {
 		});
 	}
 
+	/**
+	 * Sets a single image of this three dimensional texture.
+	 *
+	 * @param z
+	 *            the z coordinate of the layer to set
+	 * @param image
+	 *            the already decoded image to set
+	 * @return whether the operation succeeded
+	 */
+	public boolean setLayer(int z, DecodedImage image) {
+		return this.setLayerData(image.getWidth(), image.getHeight(), z, Format.RGBA, DataType.UNSIGNED_BYTE, image.getData());
+	}
+
 	/**
 	 * Sets all images of this texture to the given array.
 	 *
@@ -74,6 +87,23 @@ public abstract class ThreeDimensionalTexture extends Texture {
 		});
 	}
 
+	/**
+	 * Sets all images of this texture to the given array.
+	 *
+	 * @param images
+	 *            the already decoded images to set
+	 * @return whether the operation succeeded
+	 */
+	public boolean setLayers(DecodedImage[] images) {
+		return this.whileBound((ThreeDimensionalTexture texture) -> {
+			boolean success = true;
+			for (int i = 0; i < images.length && success; i++) {
+				success = this.setLayer(i, images[i]);
+			}
+			return success;
+		});
+	}
+
 	/**
 	 * Sets data for one image of this three dimensional texture.
 	 *
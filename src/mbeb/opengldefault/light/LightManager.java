@@ -3,6 +3,7 @@ package mbeb.opengldefault.light;
 import java.util.*;
 
 import mbeb.opengldefault.gl.shader.*;
+import mbeb.opengldefault.scene.ParallelUpdate;
 
 /**
  * I am managing different lights (like directional, point or spot lights), e.g. adding, deleting and updating their
@@ -78,36 +79,42 @@ public class LightManager {
 	}
 
 	/**
-	 * adds DirectionalLight <i>light</i> and updates all shaders
+	 * adds DirectionalLight <i>light</i> and updates all shaders (deferred during a parallel update)
 	 *
 	 * @param light
 	 *            that will be added
 	 */
 	public void addLight(final DirectionalLight light) {
-		directionalLightTypeManager.addLight(light);
-		updateShaders();
+		ParallelUpdate.defer(() -> {
+			directionalLightTypeManager.addLight(light);
+			updateShaders();
+		});
 	}
 
 	/**
-	 * adds PointLight <i>light</i> and updates all shaders
+	 * adds PointLight <i>light</i> and updates all shaders (deferred during a parallel update)
 	 *
 	 * @param light
 	 *            that will be added
 	 */
 	public void addLight(final PointLight light) {
-		pointLightTypeManager.addLight(light);
-		updateShaders();
+		ParallelUpdate.defer(() -> {
+			pointLightTypeManager.addLight(light);
+			updateShaders();
+		});
 	}
 
 	/**
-	 * adds SpotLight <i>light</i> and updates all shaders
+	 * adds SpotLight <i>light</i> and updates all shaders (deferred during a parallel update)
 	 *
 	 * @param light
 	 *            that will be added
 	 */
 	public void addLight(final SpotLight light) {
-		spotLightTypeManager.addLight(light);
-		updateShaders();
+		ParallelUpdate.defer(() -> {
+			spotLightTypeManager.addLight(light);
+			updateShaders();
+		});
 	}
 
 	/**
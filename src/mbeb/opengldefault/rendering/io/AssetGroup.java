@@ -0,0 +1,32 @@
+package mbeb.opengldefault.rendering.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link AssetHandle}s of one owner (like a game state), so that they can be released together.
+ */
+public class AssetGroup {
+
+	private final List<AssetHandle<?>> handles = new ArrayList<>();
+
+	/**
+	 * remember a handle, so that it gets released in {@link #releaseAll()}
+	 *
+	 * @param handle
+	 *            a new handle
+	 * @return the handle
+	 */
+	public <T> AssetHandle<T> add(final AssetHandle<T> handle) {
+		handles.add(handle);
+		return handle;
+	}
+
+	/**
+	 * release all handles of this group. The group can be used again afterwards
+	 */
+	public void releaseAll() {
+		handles.forEach(AssetHandle::release);
+		handles.clear();
+	}
+}
@@ -0,0 +1,71 @@
+package mbeb.opengldefault.rendering.io;
+
+import java.util.concurrent.CompletableFuture;
+
+import mbeb.opengldefault.logging.Log;
+
+/**
+ * One user of an asset that is shared through the {@link AssetRegistry}. Release the handle when the asset is not
+ * needed anymore, the asset gets deleted once all of its handles have been released.
+ *
+ * @param <T>
+ *            the type of the asset
+ */
+public class AssetHandle<T> {
+
+	private static final String TAG = "AssetHandle";
+
+	private final AssetRegistry registry;
+	private final AssetRegistry.Entry<T> entry;
+	private boolean released = false;
+
+	AssetHandle(final AssetRegistry registry, final AssetRegistry.Entry<T> entry) {
+		this.registry = registry;
+		this.entry = entry;
+	}
+
+	/**
+	 * wait for the asset, see {@link AssetLoader#await(CompletableFuture)}. Has to be called on the GL thread
+	 *
+	 * @return the asset, or null if loading failed
+	 */
+	public T get() {
+		if (released) {
+			Log.error(TAG, "Using the released asset " + getKey());
+		}
+		return registry.getLoader().await(entry.getAsset());
+	}
+
+	/**
+	 * @return the loading asset, completed on the GL thread
+	 */
+	public CompletableFuture<T> getFuture() {
+		return entry.getAsset();
+	}
+
+	/**
+	 * @return the path and load parameters of the asset
+	 */
+	public String getKey() {
+		return entry.getKey();
+	}
+
+	/**
+	 * @return the GPU memory of the asset, or 0 if it has not been decoded yet
+	 */
+	public long getByteSize() {
+		return entry.getByteSize();
+	}
+
+	/**
+	 * stop using the asset. Has to be called on the GL thread
+	 */
+	public void release() {
+		if (released) {
+			Log.error(TAG, "Released " + getKey() + " twice");
+			return;
+		}
+		released = true;
+		registry.release(entry);
+	}
+}
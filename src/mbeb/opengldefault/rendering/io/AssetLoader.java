@@ -0,0 +1,220 @@
+package mbeb.opengldefault.rendering.io;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import mbeb.opengldefault.animation.AnimatedMesh;
+import mbeb.opengldefault.gl.texture.DecodedImage;
+import mbeb.opengldefault.gl.texture.Texture2D;
+import mbeb.opengldefault.logging.Log;
+import mbeb.opengldefault.rendering.renderable.IRenderable;
+import mbeb.opengldefault.scene.materials.Material;
+
+/**
+ * Loads meshes, materials and textures in the background.
+ * <p>
+ * The files get decoded (Assimp import, ImageIO decode and pixel conversion) on a pool of worker threads. Everything
+ * that creates or fills GL objects is queued and run on the GL thread by {@link #drainUploads(double)}, which the
+ * game loop calls once per frame with a time budget. Start all loads first and {@link #await(CompletableFuture)}
+ * them afterwards, so that the files get decoded in parallel.
+ */
+public class AssetLoader {
+
+	private static final String TAG = "AssetLoader";
+
+	/** how many seconds per frame the game loop spends on uploads by default */
+	public static final double DEFAULT_UPLOAD_BUDGET = 0.004;
+
+	private static AssetLoader instance = null;
+
+	/**
+	 * @return the loader shared by the whole game
+	 */
+	public static AssetLoader getInstance() {
+		if (instance == null) {
+			instance = new AssetLoader(java.lang.Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+		}
+		return instance;
+	}
+
+	/** the threads that decode files */
+	private final ExecutorService workers;
+	/** the GL work waiting for the GL thread */
+	private final BlockingQueue<Runnable> uploads = new LinkedBlockingQueue<>();
+	private final ObjectLoader objectLoader = new ObjectLoader();
+
+	/**
+	 * @param threadCount
+	 *            how many files can be decoded at the same time
+	 */
+	public AssetLoader(final int threadCount) {
+		final AtomicInteger threadNumber = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(threadCount, (final Runnable task) -> {
+			final Thread thread = new Thread(task, TAG + "-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	ObjectLoader getObjectLoader() {
+		return objectLoader;
+	}
+
+	//<editor-fold desc="loading">
+
+	/**
+	 * load an object in the background, see {@link ObjectLoader#loadFromFile(String)}
+	 *
+	 * @param path
+	 *            the path of the object
+	 * @return the renderable, completed on the GL thread
+	 */
+	public CompletableFuture<IRenderable> loadMesh(final String path) {
+		return load(() -> objectLoader.decodeFromFile(path), DecodedMesh::upload);
+	}
+
+	/**
+	 * load an object in the background, see {@link ObjectLoader#loadFromFile(String, DataFragment[])}
+	 *
+	 * @param path
+	 *            the path of the object
+	 * @param format
+	 *            which data to load
+	 * @return the renderable, completed on the GL thread
+	 */
+	public CompletableFuture<IRenderable> loadMesh(final String path, final DataFragment[] format) {
+		return load(() -> objectLoader.decodeFromFile(path, format), DecodedMesh::upload);
+	}
+
+	/**
+	 * load an object in the background and give it a material
+	 *
+	 * @param path
+	 *            the path of the object
+	 * @param material
+	 *            the (loading) material for the object
+	 * @return the renderable with the material, completed on the GL thread
+	 */
+	public CompletableFuture<IRenderable> loadMesh(final String path, final CompletableFuture<Material> material) {
+		return loadMesh(path).thenCombine(material, (final IRenderable mesh, final Material meshMaterial) -> mesh == null ? null : mesh.withMaterial(meshMaterial));
+	}
+
+	/**
+	 * load an animated object and its meta data in the background, see {@link ObjectLoader#loadFromFileAnim(String)}
+	 *
+	 * @param path
+	 *            the path of the object
+	 * @return the mesh, completed on the GL thread
+	 */
+	public CompletableFuture<AnimatedMesh> loadAnimatedMesh(final String path) {
+		return load(() -> objectLoader.decodeFromFileAnim(path), (final DecodedMesh decoded) -> (AnimatedMesh) decoded.upload());
+	}
+
+	/**
+	 * load a material in the background, see {@link Material#Material(String, String, int)}
+	 *
+	 * @param path
+	 *            the path to the material
+	 * @param extension
+	 *            the image file extension
+	 * @param amount
+	 *            how many layers the material uses
+	 * @return the material, completed on the GL thread
+	 */
+	public CompletableFuture<Material> loadMaterial(final String path, final String extension, final int amount) {
+		return load(() -> DecodedImage.loadAll(path, extension, amount), Material::new);
+	}
+
+	/**
+	 * load a material with "png" images in the background
+	 *
+	 * @param path
+	 *            the path to the material
+	 * @param amount
+	 *            how many layers the material uses
+	 * @return the material, completed on the GL thread
+	 */
+	public CompletableFuture<Material> loadMaterial(final String path, final int amount) {
+		return loadMaterial(path, "png", amount);
+	}
+
+	/**
+	 * load a texture in the background, see {@link Texture2D#Texture2D(String)}
+	 *
+	 * @param path
+	 *            the path of the image
+	 * @return the texture, completed on the GL thread
+	 */
+	public CompletableFuture<Texture2D> loadTexture(final String path) {
+		return load(() -> DecodedImage.load(path), Texture2D::new);
+	}
+
+	/**
+	 * decode on a worker and queue the upload of the result for the GL thread
+	 *
+	 * @param decode
+	 *            the GL-free part of the loading
+	 * @param upload
+	 *            creates the GL objects from the decoded data, gets skipped if the decoder returned null
+	 * @return the uploaded asset
+	 */
+	<D, T> CompletableFuture<T> load(final Supplier<D> decode, final Function<D, T> upload) {
+		return CompletableFuture.supplyAsync(decode, workers).thenApplyAsync((final D decoded) -> decoded == null ? null : upload.apply(decoded), uploads::add);
+	}
+
+	//</editor-fold>
+
+	//<editor-fold desc="GL thread">
+
+	/**
+	 * run queued uploads until the budget is used up. Has to be called on the GL thread
+	 *
+	 * @param budget
+	 *            how many seconds may be spent. At least one upload runs, so loading always progresses
+	 * @return how many uploads were run
+	 */
+	public int drainUploads(final double budget) {
+		final long end = System.nanoTime() + (long) (budget * 1e9);
+		int count = 0;
+		Runnable upload;
+		while((count == 0 || System.nanoTime() < end) && (upload = uploads.poll()) != null) {
+			upload.run();
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * wait for an asset while running uploads, so that waiting on the GL thread can not dead lock. Has to be called
+	 * on the GL thread
+	 *
+	 * @param asset
+	 *            the loading asset
+	 * @return the asset, or null if loading failed
+	 */
+	public <T> T await(final CompletableFuture<T> asset) {
+		try {
+			while(!asset.isDone()) {
+				final Runnable upload = uploads.poll(1, TimeUnit.MILLISECONDS);
+				if (upload != null) {
+					upload.run();
+				}
+			}
+			return asset.join();
+		} catch(final InterruptedException | CompletionException ex) {
+			Log.error(TAG, "Unable to load asset", ex);
+			return null;
+		}
+	}
+
+	//</editor-fold>
+
+	/**
+	 * stop the workers. Loads that have not been decoded yet never complete
+	 */
+	public void shutdown() {
+		workers.shutdownNow();
+	}
+}
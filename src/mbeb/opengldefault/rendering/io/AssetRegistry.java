@@ -0,0 +1,287 @@
+package mbeb.opengldefault.rendering.io;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.*;
+
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+
+import mbeb.opengldefault.animation.AnimatedMesh;
+import mbeb.opengldefault.gl.texture.CubeMap;
+import mbeb.opengldefault.gl.texture.DecodedImage;
+import mbeb.opengldefault.gl.texture.Texture2D;
+import mbeb.opengldefault.logging.Log;
+import mbeb.opengldefault.rendering.renderable.IRenderable;
+import mbeb.opengldefault.rendering.renderable.VAORenderable;
+import mbeb.opengldefault.scene.materials.Material;
+
+/**
+ * Shares loaded assets between everyone who needs them.
+ * <p>
+ * Assets are identified by their path and load parameters, asking for the same asset twice returns a second
+ * {@link AssetHandle} on the same GL objects instead of loading them again. Each handle counts as one user, the GL
+ * objects get deleted once the last handle has been released. Loading happens with the {@link AssetLoader}, so
+ * acquiring never blocks, only {@link AssetHandle#get()} does.
+ * <p>
+ * Shared assets must not be changed by their users. Everything that changes an asset (like the static transform of
+ * an animated mesh) is a load parameter instead, so that users with different parameters get different assets.
+ * <p>
+ * The registry is not thread safe, acquire and release assets on the GL thread.
+ */
+public class AssetRegistry {
+
+	private static final String TAG = "AssetRegistry";
+
+	private static AssetRegistry instance = null;
+
+	/**
+	 * @return the registry shared by the whole game
+	 */
+	public static AssetRegistry getInstance() {
+		if (instance == null) {
+			instance = new AssetRegistry(AssetLoader.getInstance());
+		}
+		return instance;
+	}
+
+	/**
+	 * One shared asset and its users
+	 *
+	 * @param <T>
+	 *            the type of the asset
+	 */
+	static class Entry<T> {
+		private final String key;
+		private final Consumer<T> deleter;
+		private CompletableFuture<T> asset;
+		/** how many unreleased handles exist */
+		private int references = 0;
+		/** the GPU memory of the asset, known once it has been decoded */
+		private volatile long byteSize = 0;
+
+		private Entry(final String key, final Consumer<T> deleter) {
+			this.key = key;
+			this.deleter = deleter;
+		}
+
+		String getKey() {
+			return key;
+		}
+
+		CompletableFuture<T> getAsset() {
+			return asset;
+		}
+
+		long getByteSize() {
+			return byteSize;
+		}
+	}
+
+	private final AssetLoader loader;
+	/** all assets with at least one user, in the order they were first acquired */
+	private final Map<String, Entry<?>> entries = new LinkedHashMap<>();
+
+	/**
+	 * @param loader
+	 *            the loader to load new assets with
+	 */
+	public AssetRegistry(final AssetLoader loader) {
+		this.loader = loader;
+	}
+
+	AssetLoader getLoader() {
+		return loader;
+	}
+
+	//<editor-fold desc="acquiring">
+
+	/**
+	 * @param path
+	 *            the path of the object
+	 * @return a handle on the shared VAO-Renderable, see {@link ObjectLoader#loadFromFile(String)}
+	 */
+	public AssetHandle<IRenderable> acquireMesh(final String path) {
+		return acquire("mesh " + path, () -> loader.getObjectLoader().decodeFromFile(path), DecodedMesh::getByteSize, DecodedMesh::upload, AssetRegistry::deleteMesh);
+	}
+
+	/**
+	 * @param path
+	 *            the path of the object
+	 * @param format
+	 *            which data to load
+	 * @return a handle on the shared Renderable, see {@link ObjectLoader#loadFromFile(String, DataFragment[])}
+	 */
+	public AssetHandle<IRenderable> acquireMesh(final String path, final DataFragment[] format) {
+		return acquire("mesh " + path + " " + Arrays.toString(format), () -> loader.getObjectLoader().decodeFromFile(path, format), DecodedMesh::getByteSize, DecodedMesh::upload,
+				AssetRegistry::deleteMesh);
+	}
+
+	/**
+	 * @param path
+	 *            the path of the object
+	 * @return a handle on the shared mesh, see {@link ObjectLoader#loadFromFileAnim(String)}
+	 */
+	public AssetHandle<AnimatedMesh> acquireAnimatedMesh(final String path) {
+		return acquire("animatedMesh " + path, () -> loader.getObjectLoader().decodeFromFileAnim(path), DecodedMesh::getByteSize, (final DecodedMesh decoded) -> (AnimatedMesh) decoded.upload(),
+				AssetRegistry::deleteMesh);
+	}
+
+	/**
+	 * @param path
+	 *            the path of the object
+	 * @param transform
+	 *            the static transform of the mesh, see {@link AnimatedMesh#setTransform(Matrix4f)}
+	 * @param bakeRate
+	 *            the baked frames per animation tick, see {@link AnimatedMesh#bakeAnimations(double)}, or 0 to not
+	 *            bake the animations
+	 * @return a handle on the shared mesh, with the transform applied and the animations baked while decoding
+	 */
+	public AssetHandle<AnimatedMesh> acquireAnimatedMesh(final String path, final Matrix4fc transform, final double bakeRate) {
+		final Matrix4f meshTransform = new Matrix4f(transform);
+		return acquire("animatedMesh " + path + " " + Arrays.toString(meshTransform.get(new float[16])) + " baked " + bakeRate, () -> {
+			final DecodedMesh decoded = loader.getObjectLoader().decodeFromFileAnim(path);
+			if (decoded != null) {
+				final AnimatedMesh mesh = (AnimatedMesh) decoded.getRenderable();
+				mesh.setTransform(meshTransform);
+				if (bakeRate > 0) {
+					mesh.bakeAnimations(bakeRate);
+				}
+			}
+			return decoded;
+		}, DecodedMesh::getByteSize, (final DecodedMesh decoded) -> (AnimatedMesh) decoded.upload(), AssetRegistry::deleteMesh);
+	}
+
+	/**
+	 * @param path
+	 *            the path to the material
+	 * @param extension
+	 *            the image file extension
+	 * @param amount
+	 *            how many layers the material uses
+	 * @return a handle on the shared material, see {@link Material#Material(String, String, int)}
+	 */
+	public AssetHandle<Material> acquireMaterial(final String path, final String extension, final int amount) {
+		return acquire("material " + path + "/*." + extension + " x" + amount, () -> DecodedImage.loadAll(path, extension, amount), DecodedImage::getByteSize, Material::new, Material::delete);
+	}
+
+	/**
+	 * @param path
+	 *            the path to the material
+	 * @param amount
+	 *            how many layers the material uses
+	 * @return a handle on the shared material with "png" images
+	 */
+	public AssetHandle<Material> acquireMaterial(final String path, final int amount) {
+		return acquireMaterial(path, "png", amount);
+	}
+
+	/**
+	 * @param path
+	 *            the path of the image
+	 * @return a handle on the shared texture, see {@link Texture2D#Texture2D(String)}
+	 */
+	public AssetHandle<Texture2D> acquireTexture(final String path) {
+		return acquire("texture " + path, () -> DecodedImage.load(path), (final DecodedImage image) -> image.getData().remaining(), Texture2D::new, Texture2D::delete);
+	}
+
+	/**
+	 * @param path
+	 *            the path of the cube map
+	 * @param extension
+	 *            the file extension
+	 * @return a handle on the shared cube map, see {@link CubeMap#CubeMap(String, String)}
+	 */
+	public AssetHandle<CubeMap> acquireCubeMap(final String path, final String extension) {
+		return acquire("cubeMap " + path + "*." + extension, () -> CubeMap.decodeCubeMapImages(path, extension), DecodedImage::getByteSize, CubeMap::new, CubeMap::delete);
+	}
+
+	/**
+	 * return a new handle on the asset with the given key, and load it if nobody uses it yet
+	 *
+	 * @param key
+	 *            the path and load parameters of the asset
+	 * @param decode
+	 *            the GL-free part of the loading
+	 * @param byteSize
+	 *            calculates the GPU memory of the decoded asset
+	 * @param upload
+	 *            creates the GL objects from the decoded data
+	 * @param deleter
+	 *            deletes the GL objects of the asset
+	 * @return a new handle
+	 */
+	private <D, T> AssetHandle<T> acquire(final String key, final Supplier<D> decode, final ToLongFunction<D> byteSize, final Function<D, T> upload, final Consumer<T> deleter) {
+		@SuppressWarnings("unchecked")
+		Entry<T> entry = (Entry<T>) entries.get(key);
+		if (entry == null) {
+			final Entry<T> created = new Entry<>(key, deleter);
+			created.asset = loader.load(() -> {
+				final D decoded = decode.get();
+				if (decoded != null) {
+					created.byteSize = byteSize.applyAsLong(decoded);
+				}
+				return decoded;
+			}, upload);
+			entries.put(key, created);
+			entry = created;
+		}
+		entry.references++;
+		return new AssetHandle<>(this, entry);
+	}
+
+	//</editor-fold>
+
+	/**
+	 * remove one user of an asset, and delete it if this was the last one
+	 *
+	 * @param entry
+	 *            the asset
+	 */
+	<T> void release(final Entry<T> entry) {
+		entry.references--;
+		if (entry.references > 0) {
+			return;
+		}
+		entries.remove(entry.key);
+		//if the asset is still loading, it gets deleted right after its upload
+		entry.asset.thenAccept((final T asset) -> {
+			if (asset != null) {
+				entry.deleter.accept(asset);
+			}
+		});
+	}
+
+	private static void deleteMesh(final IRenderable mesh) {
+		if (mesh instanceof AnimatedMesh) {
+			((AnimatedMesh) mesh).getMesh().delete();
+		} else if (mesh instanceof VAORenderable) {
+			((VAORenderable) mesh).delete();
+		}
+	}
+
+	//<editor-fold desc="memory report">
+
+	/**
+	 * @return the GPU memory of all assets in use
+	 */
+	public long getTotalByteSize() {
+		long bytes = 0;
+		for (final Entry<?> entry : entries.values()) {
+			bytes += entry.byteSize;
+		}
+		return bytes;
+	}
+
+	/**
+	 * log every asset in use, with its amount of users and its GPU memory
+	 */
+	public void logMemoryUsage() {
+		for (final Entry<?> entry : entries.values()) {
+			Log.log(TAG, entry.key + ": " + entry.references + " users, " + entry.byteSize / 1024 + " KB");
+		}
+		Log.log(TAG, entries.size() + " assets, " + getTotalByteSize() / 1024 + " KB");
+	}
+
+	//</editor-fold>
+}
@@ -1,7 +1,5 @@
 package mbeb.opengldefault.rendering.io;
 
-import java.util.*;
-
 import mbeb.opengldefault.gl.buffer.GLBufferWriter;
 import mbeb.opengldefault.logging.Log;
 import org.joml.Vector2f;
@@ -140,12 +138,8 @@ public enum DataFragment {
 		}
 
 		@Override
-		public void addTo(AIMesh mesh, int vertexID, GLBufferWriter writer, Map<Integer, List<Map.Entry<Integer, Float>>> vertexBoneWeights) {
-			List<Map.Entry<Integer, Float>> weightsData = vertexBoneWeights.get(vertexID);
-			Log.assertTrue(TAG, weightsData.size() == 3, "unexpected amount of weights");
-			for (Map.Entry<Integer, Float> e : weightsData) {
-				writer.write((float)e.getKey());
-			}
+		public void addTo(AIMesh mesh, int vertexID, GLBufferWriter writer, VertexWeights vertexBoneWeights) {
+			writeBoneIndices(vertexID, writer, vertexBoneWeights, size());
 		}
 	},
 	/**
@@ -159,12 +153,48 @@ public enum DataFragment {
 		}
 
 		@Override
-		public void addTo(AIMesh mesh, int vertexID, GLBufferWriter writer, Map<Integer, List<Map.Entry<Integer, Float>>> vertexBoneWeights) {
-			List<Map.Entry<Integer, Float>> weightsData = vertexBoneWeights.get(vertexID);
-			Log.assertTrue(TAG, weightsData.size() == 3, "unexpected amount of weights");
-			for (Map.Entry<Integer, Float> e : weightsData) {
-				writer.write(e.getValue());
-			}
+		public void addTo(AIMesh mesh, int vertexID, GLBufferWriter writer, VertexWeights vertexBoneWeights) {
+			writeBoneWeights(vertexID, writer, vertexBoneWeights, size());
+		}
+	},
+	/**
+	 * the indices of the 4 bones that a vertex is connected to
+	 */
+	BONE_INDICES_4 {
+
+		@Override
+		public boolean needsBoneData() {
+			return true;
+		}
+
+		@Override
+		public int size() {
+			return 4;
+		}
+
+		@Override
+		public boolean isFloat() {
+			return true;
+		}
+
+		@Override
+		public void addTo(AIMesh mesh, int vertexID, GLBufferWriter writer, VertexWeights vertexBoneWeights) {
+			writeBoneIndices(vertexID, writer, vertexBoneWeights, size());
+		}
+	},
+	/**
+	 * the weight of the 4 bones that a vertex is connected to
+	 */
+	BONE_WEIGHTS_4 {
+
+		@Override
+		public int size() {
+			return 4;
+		}
+
+		@Override
+		public void addTo(AIMesh mesh, int vertexID, GLBufferWriter writer, VertexWeights vertexBoneWeights) {
+			writeBoneWeights(vertexID, writer, vertexBoneWeights, size());
 		}
 	};
 
@@ -196,10 +226,30 @@ public enum DataFragment {
 	 * @param writer
 	 * @param vertexBoneWeights
 	 */
-	public void addTo(AIMesh mesh, int vertexID, GLBufferWriter writer, Map<Integer, List<Map.Entry<Integer, Float>>> vertexBoneWeights) {
+	public void addTo(AIMesh mesh, int vertexID, GLBufferWriter writer, VertexWeights vertexBoneWeights) {
 		addTo(mesh, vertexID, writer);
 	}
 
+	/**
+	 * write the bone indices of a vertex (as floats)
+	 */
+	private static void writeBoneIndices(int vertexID, GLBufferWriter writer, VertexWeights vertexBoneWeights, int amount) {
+		Log.assertTrue(TAG, vertexBoneWeights.getWeightsPerVertex() == amount, "unexpected amount of weights");
+		for (int slot = 0; slot < amount; slot++) {
+			writer.write((float) vertexBoneWeights.getBoneIndex(vertexID, slot));
+		}
+	}
+
+	/**
+	 * write the bone weights of a vertex
+	 */
+	private static void writeBoneWeights(int vertexID, GLBufferWriter writer, VertexWeights vertexBoneWeights, int amount) {
+		Log.assertTrue(TAG, vertexBoneWeights.getWeightsPerVertex() == amount, "unexpected amount of weights");
+		for (int slot = 0; slot < amount; slot++) {
+			writer.write(vertexBoneWeights.getWeight(vertexID, slot));
+		}
+	}
+
 	/**
 	 * @return true if this fragment needs animation information
 	 */
@@ -240,6 +290,19 @@ public enum DataFragment {
 		return res;
 	}
 
+	/**
+	 * @param format
+	 * @return how many bones per vertex the format contains, or 0 if it has no bone data
+	 */
+	public static int getWeightsPerVertex(DataFragment[] format) {
+		for (DataFragment frag : format) {
+			if (frag.needsBoneData()) {
+				return frag.size();
+			}
+		}
+		return 0;
+	}
+
 	/**
 	 * @param format
 	 * @return true if this format needs animation information
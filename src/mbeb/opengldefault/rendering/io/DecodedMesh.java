@@ -0,0 +1,61 @@
+package mbeb.opengldefault.rendering.io;
+
+import java.nio.ByteBuffer;
+
+import mbeb.opengldefault.gl.buffer.GLBufferWriter;
+import mbeb.opengldefault.rendering.renderable.IRenderable;
+import mbeb.opengldefault.rendering.renderable.VAORenderable;
+
+/**
+ * A mesh that has been read from a file, but not uploaded to the GPU yet. Decoding needs no GL context, so it can
+ * happen on any thread, {@link #upload()} has to be called on the GL thread.
+ */
+class DecodedMesh {
+
+	/** the vao the vertex data belongs to */
+	private final VAORenderable vaomesh;
+	/** the renderable to return: the vao itself or an AnimatedMesh around it */
+	private final IRenderable renderable;
+	/** the interleaved vertex bytes in native order */
+	private final ByteBuffer vertexData;
+	/** the indices in native order, or null for meshes rendered with glDrawArrays */
+	private final ByteBuffer indexData;
+
+	DecodedMesh(final VAORenderable vaomesh, final IRenderable renderable, final ByteBuffer vertexData) {
+		this(vaomesh, renderable, vertexData, null);
+	}
+
+	DecodedMesh(final VAORenderable vaomesh, final IRenderable renderable, final ByteBuffer vertexData, final ByteBuffer indexData) {
+		this.vaomesh = vaomesh;
+		this.renderable = renderable;
+		this.vertexData = vertexData;
+		this.indexData = indexData;
+	}
+
+	/**
+	 * @return the renderable, which can not be rendered before {@link #upload()}
+	 */
+	IRenderable getRenderable() {
+		return renderable;
+	}
+
+	/**
+	 * @return how many bytes get uploaded to the GPU
+	 */
+	long getByteSize() {
+		return vertexData.remaining() + (indexData == null ? 0 : indexData.remaining());
+	}
+
+	/**
+	 * create the GL objects and fill them with the vertex data
+	 *
+	 * @return the renderable
+	 */
+	IRenderable upload() {
+		if (indexData != null) {
+			vaomesh.indicesWriter().write(indexData).flush(GLBufferWriter.WriteType.FULL_DATA);
+		}
+		vaomesh.upload(vertexData);
+		return renderable;
+	}
+}
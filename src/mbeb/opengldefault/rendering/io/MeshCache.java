@@ -0,0 +1,368 @@
+package mbeb.opengldefault.rendering.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import mbeb.opengldefault.animation.*;
+import mbeb.opengldefault.gl.buffer.GLBufferWriter;
+import mbeb.opengldefault.logging.Log;
+import mbeb.opengldefault.rendering.renderable.IRenderable;
+import mbeb.opengldefault.rendering.renderable.VAORenderable;
+import mbeb.opengldefault.scene.BoundingBox;
+
+/**
+ * A binary container for an imported mesh, so that the next start does not have to run Assimp and the
+ * {@link DataFragment} conversion again.
+ * <p>
+ * The file starts with a header (magic, version, size, modification time and checksum of the source file) and the
+ * length of the meta
+ * data. The meta data holds the DataFragment layout, the bounding box and (for {@link AnimatedMesh}es) the skeleton,
+ * the skinning bounds and the compressed animation tracks. It is followed by the interleaved vertex bytes and the
+ * indices in native byte order, which get copied from the memory-mapped file straight into the staging buffer of a
+ * {@link GLBufferWriter} when the mesh is uploaded.
+ */
+public class MeshCache {
+
+	private static final String TAG = "MeshCache";
+
+	/** the directory the cache files are stored in */
+	private static final File CACHE_DIRECTORY = new File(ResourceCache.getCacheDirectory(), "meshes");
+	private static final String FILE_EXTENSION = ".mesh";
+	/** "LD38" */
+	private static final int MAGIC = 0x4C443338;
+	/** increase this whenever the layout of the file or the imported vertex data changes */
+	private static final int VERSION = 3;
+	/**
+	 * the bytes of the header in front of the meta data: magic, version, source length, modification time and checksum,
+	 * meta length
+	 */
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 4;
+
+	private final File file;
+	private final DataFragment[] format;
+
+	/**
+	 * @param rawPath
+	 *            the path of the model as given to the {@link ObjectLoader}
+	 * @param format
+	 *            the vertex format the model gets loaded with
+	 */
+	public MeshCache(final String rawPath, final DataFragment[] format) {
+		this.format = format;
+		final String formatKey = Integer.toHexString(Arrays.toString(format).hashCode());
+		this.file = new File(CACHE_DIRECTORY, rawPath + "." + formatKey + FILE_EXTENSION);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	//<editor-fold desc="reading">
+
+	/**
+	 * load the cached mesh, if the cache exists and was written for the current content of the source file
+	 *
+	 * @param source
+	 *            the model file the cache was created from
+	 * @return the decoded VAORenderable or AnimatedMesh, or null if the mesh has to be imported again. It does not
+	 *         touch GL, so it can be called from any thread
+	 */
+	DecodedMesh read(final File source) {
+		if (!file.exists()) {
+			return null;
+		}
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (mapped.remaining() < HEADER_SIZE || mapped.getInt() != MAGIC || mapped.getInt() != VERSION) {
+				Log.log(TAG, file + " has an unknown layout, importing again");
+				return null;
+			}
+			final long length = mapped.getLong();
+			final long modified = mapped.getLong();
+			final long crc = mapped.getLong();
+			//only hash the source if it was touched since the cache was written
+			if (length != source.length() || modified != source.lastModified() && crc != checksum(source)) {
+				Log.log(TAG, file + " is outdated, importing again");
+				return null;
+			}
+			final byte[] meta = new byte[mapped.getInt()];
+			mapped.get(meta);
+			return readMesh(new DataInputStream(new ByteArrayInputStream(meta)), mapped);
+		} catch(final IOException | RuntimeException ex) {
+			Log.error(TAG, "Cannot read " + file, ex);
+			return null;
+		}
+	}
+
+	/**
+	 * create the renderable described by the meta data
+	 *
+	 * @param meta
+	 *            the meta data
+	 * @param data
+	 *            the mapped file, positioned behind the meta data
+	 * @return the decoded mesh, or null if the cache does not match the requested format
+	 */
+	private DecodedMesh readMesh(final DataInputStream meta, final ByteBuffer data) throws IOException {
+		final boolean littleEndian = meta.readBoolean();
+		if (littleEndian != (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN)) {
+			Log.log(TAG, file + " was written with a different byte order, importing again");
+			return null;
+		}
+		final String[] formatNames = new String[meta.readInt()];
+		for (int f = 0; f < formatNames.length; f++) {
+			formatNames[f] = meta.readUTF();
+		}
+		if (!Arrays.equals(formatNames, getFormatNames())) {
+			Log.log(TAG, file + " was written for a different format, importing again");
+			return null;
+		}
+		final int vertexCount = meta.readInt();
+		final int vertexBytes = meta.readInt();
+		final int indexCount = meta.readInt();
+		final BoundingBox box = readBoundingBox(meta);
+
+		final VAORenderable vaomesh = new VAORenderable(vertexCount, format);
+		vaomesh.setBoundingBox(box);
+		//the slices stay valid after the channel is closed, they get uploaded later on the GL thread
+		final ByteBuffer vertexData = slice(data, vertexBytes);
+		final ByteBuffer indexData = indexCount > 0 ? slice(data, indexCount * Integer.BYTES) : null;
+
+		if (!meta.readBoolean()) {
+			return new DecodedMesh(vaomesh, vaomesh, vertexData, indexData);
+		}
+		final Matrix4f transform = readMatrix(meta);
+		final Bone skeleton = readBone(meta);
+		final AnimatedMesh animMesh = new AnimatedMesh(vaomesh, skeleton);
+		animMesh.setTransform(transform);
+
+		final int animationCount = meta.readInt();
+		for (int a = 0; a < animationCount; a++) {
+			final Animation anim = new Animation();
+			anim.setName(meta.readUTF());
+			anim.setDuration(meta.readDouble());
+			anim.setSkeleton(skeleton);
+			final double[] timeStamps = new double[meta.readInt()];
+			for (int t = 0; t < timeStamps.length; t++) {
+				timeStamps[t] = meta.readDouble();
+			}
+			final AnimationTrack[] tracks = new AnimationTrack[meta.readInt()];
+			for (int bone = 0; bone < tracks.length; bone++) {
+				tracks[bone] = meta.readBoolean() ? AnimationTrack.readFrom(meta) : null;
+			}
+			anim.setTracks(tracks, timeStamps, animMesh.getTransform());
+			animMesh.addAnimation(anim);
+		}
+		if (meta.readBoolean()) {
+			animMesh.setSkinningBounds(SkinningBounds.readFrom(meta));
+		}
+		return new DecodedMesh(vaomesh, animMesh, vertexData, indexData);
+	}
+
+	/**
+	 * @return a native ordered view on the next bytes of the data, which advances the position of data
+	 */
+	private static ByteBuffer slice(final ByteBuffer data, final int bytes) {
+		final ByteBuffer slice = data.slice();
+		slice.limit(bytes);
+		data.position(data.position() + bytes);
+		return slice.order(ByteOrder.nativeOrder());
+	}
+
+	private static BoundingBox readBoundingBox(final DataInput in) throws IOException {
+		if (in.readBoolean()) {
+			return new BoundingBox.Empty();
+		}
+		final Vector3f start = new Vector3f(in.readFloat(), in.readFloat(), in.readFloat());
+		final Vector3f size = new Vector3f(in.readFloat(), in.readFloat(), in.readFloat());
+		return new BoundingBox(start, size);
+	}
+
+	private static Matrix4f readMatrix(final DataInput in) throws IOException {
+		final float[] values = new float[16];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = in.readFloat();
+		}
+		return new Matrix4f().set(values);
+	}
+
+	private static Bone readBone(final DataInput in) throws IOException {
+		final Bone bone = new Bone(in.readUTF(), in.readInt());
+		bone.setDefaultBoneTransform(readMatrix(in));
+		if (in.readBoolean()) {
+			bone.setInverseBindTransform(readMatrix(in));
+		}
+		final int children = in.readInt();
+		for (int c = 0; c < children; c++) {
+			bone.getChildren().add(readBone(in));
+		}
+		return bone;
+	}
+
+	//</editor-fold>
+
+	//<editor-fold desc="writing">
+
+	/**
+	 * store a freshly imported mesh. Errors are logged, the mesh is imported again on the next start then
+	 *
+	 * @param source
+	 *            the model file the mesh was imported from
+	 * @param renderable
+	 *            the imported VAORenderable or AnimatedMesh
+	 * @param vertexData
+	 *            the interleaved vertex bytes (in native order) that get uploaded into the renderables VBO
+	 */
+	public void write(final File source, final IRenderable renderable, final ByteBuffer vertexData) {
+		final VAORenderable vaomesh = renderable instanceof AnimatedMesh ? ((AnimatedMesh) renderable).getMesh() : (VAORenderable) renderable;
+		try {
+			final ByteArrayOutputStream metaBytes = new ByteArrayOutputStream();
+			final DataOutputStream meta = new DataOutputStream(metaBytes);
+			writeMeta(meta, vaomesh, renderable, vertexData.remaining());
+			meta.flush();
+
+			Files.createDirectories(file.getParentFile().toPath());
+			//a unique name, as another loader thread may write the same cache file at the same time
+			final File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+			try {
+				writeFile(temp, source, metaBytes, vertexData);
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(temp.toPath());
+			}
+		} catch(final IOException ex) {
+			Log.error(TAG, "Cannot write " + file, ex);
+		}
+	}
+
+	/**
+	 * write the header, the meta data and the vertex bytes into a file
+	 */
+	private static void writeFile(final File target, final File source, final ByteArrayOutputStream metaBytes, final ByteBuffer vertexData) throws IOException {
+		try(FileOutputStream stream = new FileOutputStream(target)) {
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(source.length());
+			out.writeLong(source.lastModified());
+			out.writeLong(checksum(source));
+			out.writeInt(metaBytes.size());
+			metaBytes.writeTo(out);
+			out.flush();
+			final ByteBuffer vertices = vertexData.duplicate();
+			while(vertices.hasRemaining()) {
+				stream.getChannel().write(vertices);
+			}
+		}
+	}
+
+	private void writeMeta(final DataOutputStream meta, final VAORenderable vaomesh, final IRenderable renderable, final int vertexBytes) throws IOException {
+		meta.writeBoolean(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN);
+		final String[] formatNames = getFormatNames();
+		meta.writeInt(formatNames.length);
+		for (final String name : formatNames) {
+			meta.writeUTF(name);
+		}
+		meta.writeInt(vaomesh.getVertexCount());
+		meta.writeInt(vertexBytes);
+		//the imported meshes are not indexed
+		meta.writeInt(0);
+		writeBoundingBox(meta, vaomesh.getBoundingBox());
+
+		meta.writeBoolean(renderable instanceof AnimatedMesh);
+		if (!(renderable instanceof AnimatedMesh)) {
+			return;
+		}
+		final AnimatedMesh animMesh = (AnimatedMesh) renderable;
+		writeMatrix(meta, animMesh.getTransform());
+		writeBone(meta, animMesh.getSkeleton());
+
+		meta.writeInt(animMesh.getAnimations().size());
+		for (final Animation anim : animMesh.getAnimations().values()) {
+			meta.writeUTF(anim.getName());
+			meta.writeDouble(anim.getDuration());
+			meta.writeInt(anim.getKeyFrameCount());
+			for (int t = 0; t < anim.getKeyFrameCount(); t++) {
+				meta.writeDouble(anim.getKeyFrameTimeStamp(t));
+			}
+			final AnimationTrack[] tracks = anim.hasTracks() ? anim.getTracks() : new AnimationTrack[0];
+			meta.writeInt(tracks.length);
+			for (final AnimationTrack track : tracks) {
+				meta.writeBoolean(track != null);
+				if (track != null) {
+					track.writeTo(meta);
+				}
+			}
+		}
+		final SkinningBounds skinningBounds = animMesh.getSkinningBounds();
+		meta.writeBoolean(skinningBounds != null);
+		if (skinningBounds != null) {
+			skinningBounds.writeTo(meta);
+		}
+	}
+
+	private static void writeBoundingBox(final DataOutput out, final BoundingBox box) throws IOException {
+		out.writeBoolean(box.isEmpty());
+		if (box.isEmpty()) {
+			return;
+		}
+		final Vector3f start = box.getLocalStart();
+		final Vector3f size = box.getLocalSize();
+		out.writeFloat(start.x);
+		out.writeFloat(start.y);
+		out.writeFloat(start.z);
+		out.writeFloat(size.x);
+		out.writeFloat(size.y);
+		out.writeFloat(size.z);
+	}
+
+	private static void writeMatrix(final DataOutput out, final Matrix4f matrix) throws IOException {
+		for (final float value : matrix.get(new float[16])) {
+			out.writeFloat(value);
+		}
+	}
+
+	private static void writeBone(final DataOutput out, final Bone bone) throws IOException {
+		out.writeUTF(bone.getName());
+		out.writeInt(bone.getIndex());
+		writeMatrix(out, bone.getDefaultBoneTransform());
+		out.writeBoolean(bone.getInverseBindTransform() != null);
+		if (bone.getInverseBindTransform() != null) {
+			writeMatrix(out, bone.getInverseBindTransform());
+		}
+		out.writeInt(bone.getChildren().size());
+		for (final Bone child : bone.getChildren()) {
+			writeBone(out, child);
+		}
+	}
+
+	//</editor-fold>
+
+	private String[] getFormatNames() {
+		final String[] names = new String[format.length];
+		for (int f = 0; f < format.length; f++) {
+			names[f] = format[f].name();
+		}
+		return names;
+	}
+
+	/**
+	 * @return the CRC32 checksum of a files content
+	 */
+	private static long checksum(final File source) throws IOException {
+		try(FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+			final CRC32 crc = new CRC32();
+			crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			return crc.getValue();
+		}
+	}
+}
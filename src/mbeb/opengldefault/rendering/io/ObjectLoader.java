@@ -1,14 +1,13 @@
 package mbeb.opengldefault.rendering.io;
 
 import java.io.*;
-import java.nio.file.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 import org.joml.*;
 import org.lwjgl.assimp.*;
 
 import mbeb.opengldefault.animation.*;
-import mbeb.opengldefault.gl.*;
 import mbeb.opengldefault.gl.buffer.*;
 import mbeb.opengldefault.logging.*;
 import mbeb.opengldefault.rendering.renderable.*;
@@ -27,6 +26,9 @@ public class ObjectLoader {
 
 	private static final String TAG = "ObjectLoader";
 
+	/** the model files, which Assimp has to open by path */
+	private static final ResourceCache MODELS = new ResourceCache("/models/", "models");
+
 	/**
 	 * load an object into a Renderable. Assumes, that the file contains 3
 	 * Position, 3 Normal and 2 UV Fragments
@@ -47,9 +49,38 @@ public class ObjectLoader {
 	 * @return a Renderable
 	 */
 	public AnimatedMesh loadFromFileAnim(final String path) {
-		final AnimatedMesh mesh = (AnimatedMesh) loadFromFile(path, PosNormUvAnim3);
+		final DecodedMesh decoded = decodeFromFileAnim(path);
+		return decoded == null ? null : (AnimatedMesh) decoded.upload();
+	}
+
+	/**
+	 * read an object with 3 Position, 3 Normal and 2 UV Fragments without uploading it
+	 *
+	 * @param path
+	 *            the absolute File-Path to the object
+	 * @return the decoded VAO-Renderable, or null if it could not be loaded
+	 */
+	DecodedMesh decodeFromFile(final String path) {
+		return decodeFromFile(path, PosNormUv);
+	}
+
+	/**
+	 * read an animated object and its meta data without uploading it
+	 *
+	 * @param path
+	 *            the absolute File-Path to the object
+	 * @return the decoded AnimatedMesh, or null if it could not be loaded
+	 */
+	DecodedMesh decodeFromFileAnim(final String path) {
+		final DecodedMesh decoded = decodeFromFile(path, PosNormUvAnim3);
+		if (decoded == null) {
+			return null;
+		}
+		final AnimatedMesh mesh = (AnimatedMesh) decoded.getRenderable();
 		loadAnimationMetaData(mesh, path + ".meta.yaml");
-		return mesh;
+		//sample the boxes of the animations now that their bone priorities are known
+		mesh.getBoundingBox();
+		return decoded;
 	}
 
 	/**
@@ -61,11 +92,11 @@ public class ObjectLoader {
 	 *            path to the file containing this information
 	 */
 	private void loadAnimationMetaData(final AnimatedMesh mesh, final String metaPath) {
-		final String extractedPath = getExtractedPath(metaPath);
-		if (extractedPath == null) {
+		final File metaFile = MODELS.getFile(metaPath);
+		if (metaFile == null) {
 			return;
 		}
-		final YAMLParser.YAMLNode root = new YAMLParser(new File(extractedPath)).getRoot();
+		final YAMLParser.YAMLNode root = new YAMLParser(metaFile).getRoot();
 		System.out.println(root.getChildren().size());
 		final YAMLParser.YAMLNode animations = root.getChildByName("animations");
 		for (final YAMLParser.YAMLNode animNode : animations.getChildren().values()) {
@@ -105,7 +136,8 @@ public class ObjectLoader {
 	}
 
 	/**
-	 * load an object into a Renderable
+	 * load an object into a Renderable. The first import of a file is stored in a {@link MeshCache}, later loads
+	 * read the cache instead of importing the file again
 	 *
 	 * @param path
 	 *            the absolute File-Path to the object
@@ -114,14 +146,38 @@ public class ObjectLoader {
 	 * @return a VAO-Renderable
 	 */
 	public IRenderable loadFromFile(final String path, final DataFragment[] format) {
+		final DecodedMesh decoded = decodeFromFile(path, format);
+		return decoded == null ? null : decoded.upload();
+	}
+
+	/**
+	 * read an object (from the {@link MeshCache} or with Assimp) without touching GL, so that it can be called from
+	 * any thread. {@link DecodedMesh#upload()} has to be called on the GL thread afterwards
+	 *
+	 * @param path
+	 *            the absolute File-Path to the object
+	 * @param format
+	 *            which data to load
+	 * @return the decoded mesh, or null if it could not be loaded
+	 */
+	DecodedMesh decodeFromFile(final String path, final DataFragment[] format) {
 		try {
-			final String realPath = getExtractedPath(path);
-			final AIScene scene = Assimp.aiImportFile(realPath, Assimp.aiProcess_Triangulate | Assimp.aiProcess_CalcTangentSpace);
+			final File source = MODELS.getFile(path);
+			if (source == null) {
+				Log.error(TAG, "Cannot find " + path);
+				return null;
+			}
+			final MeshCache cache = new MeshCache(path, format);
+			final DecodedMesh cached = cache.read(source);
+			if (cached != null) {
+				return cached;
+			}
+			final AIScene scene = Assimp.aiImportFile(source.getPath(), Assimp.aiProcess_Triangulate | Assimp.aiProcess_CalcTangentSpace);
 
 			final Bone sceneStructure = parseScene(scene);
 
 			if (scene.mNumMeshes() > 0) {
-				return loadMesh(scene, 0, format, sceneStructure);
+				return decodeMesh(scene, 0, format, sceneStructure, cache, source);
 				//todo not return just the first mesh, rather combine meshes
 			} else {
 				Log.error(TAG, "No Mesh found in object");
@@ -134,27 +190,6 @@ public class ObjectLoader {
 		}
 	}
 
-	private String getExtractedPath(final String rawPath) {
-		final File res = new File("res");
-		if (!res.exists()) {
-			res.mkdirs();
-		}
-		final File export = new File(res, rawPath);
-		if (!export.exists()) {
-			export.getParentFile().mkdirs();
-			try {
-				final InputStream inStream = GLContext.class.getResourceAsStream("/models/" + rawPath);
-				if (inStream == null) {
-					return null;
-				}
-				Files.copy(inStream, export.toPath(), StandardCopyOption.REPLACE_EXISTING);
-			} catch(final IOException ex) {
-				Log.error(TAG, "Cannot extract resource " + rawPath, ex);
-			}
-		}
-		return "res/" + rawPath;
-	}
-
 	/**
 	 * load a single mesh
 	 *
@@ -164,25 +199,30 @@ public class ObjectLoader {
 	 *            which mesh to load
 	 * @param format
 	 *            the format the data should be in
-	 * @return
+	 * @param cache
+	 *            the cache to store the loaded mesh in
+	 * @param source
+	 *            the file the scene was imported from
+	 * @return the mesh, ready to be uploaded
 	 */
-	private IRenderable loadMesh(final AIScene scene, final int meshID, final DataFragment[] format, final Bone sceneStructure) {
+	private DecodedMesh decodeMesh(final AIScene scene, final int meshID, final DataFragment[] format, final Bone sceneStructure, final MeshCache cache, final File source) {
 		final AIMesh mesh = AIMesh.create(scene.mMeshes().get(meshID));
 
 		final int vertexCount = mesh.mNumVertices();
 
 		final VAORenderable vaomesh = new VAORenderable(vertexCount, format);
-		final GLBufferWriter dataWriter = vaomesh.dataWriter();
+		final GLBufferWriter dataWriter = vaomesh.stagingWriter();
 
 		BoundingBox box = new BoundingBox.Empty();
 		final boolean isAnimated = DataFragment.needsBoneData(format);
-		// vertex-id  3elements     bone-id  weight
-		Map<Integer, List<Map.Entry<Integer, Float>>> vertexBoneWeights = null;
+		VertexWeights vertexBoneWeights = null;
 		Bone skeleton = null;
+		SkinningBounds skinningBounds = null;
 
 		if (isAnimated) {
 			skeleton = parseSkeleton(mesh, sceneStructure);
-			vertexBoneWeights = loadVertexWeights(mesh, skeleton, 3);
+			vertexBoneWeights = loadVertexWeights(mesh, skeleton, DataFragment.getWeightsPerVertex(format));
+			skinningBounds = new SkinningBounds(skeleton.boneCount());
 		}
 		final Matrix4f sceneTransform = BoneTransformation.matrixFromAI(scene.mRootNode().mTransformation());
 
@@ -190,77 +230,75 @@ public class ObjectLoader {
 			final AIVector3D aiposition = mesh.mVertices().get(v);
 			final Vector3f position = new Vector3f(aiposition.x(), aiposition.y(), aiposition.z());
 			box = box.extendTo(position);
+			if (isAnimated) {
+				includeInSkinningBounds(skinningBounds, vertexBoneWeights, v, position);
+			}
 			for (final DataFragment dataFormat : format) {
 				dataFormat.addTo(mesh, v, dataWriter, vertexBoneWeights);
 			}
 		}
 		mesh.close();
 
-		dataWriter.flush(GLBufferWriter.WriteType.FULL_DATA);
-		vaomesh.setAttribPointers();
+		final ByteBuffer vertexData = dataWriter.getWrittenData();
 		vaomesh.setBoundingBox(box);
-		vaomesh.finishWriting();
 
 		if (isAnimated) {
 			final AnimatedMesh animMesh = new AnimatedMesh(vaomesh, skeleton);
 			animMesh.setTransform(sceneTransform);
 			loadAnimations(animMesh, scene);
-			return animMesh;
+			animMesh.setSkinningBounds(skinningBounds);
+			cache.write(source, animMesh, vertexData);
+			return new DecodedMesh(vaomesh, animMesh, vertexData);
 		} else {
-			return vaomesh;
+			cache.write(source, vaomesh, vertexData);
+			return new DecodedMesh(vaomesh, vaomesh, vertexData);
+		}
+	}
+
+	/**
+	 * add a vertex to the extents of the bones it is weighted on
+	 *
+	 * @param bounds
+	 *            the bone extents to grow
+	 * @param weights
+	 *            the normalized weights of all vertices
+	 * @param vertex
+	 *            the vertex to add
+	 * @param position
+	 *            the bind position of the vertex
+	 */
+	private void includeInSkinningBounds(final SkinningBounds bounds, final VertexWeights weights, final int vertex, final Vector3f position) {
+		for (int slot = 0; slot < weights.getWeightsPerVertex(); slot++) {
+			final int bone = weights.getBoneIndex(vertex, slot);
+			if (bone != VertexWeights.NO_BONE && weights.getWeight(vertex, slot) >= THRESHOLD) {
+				bounds.include(bone, position);
+			}
 		}
 	}
 
 	/**
-	 * load the per-vertex weights on the bones
+	 * load the per-vertex weights on the bones, keeping only the strongest bones of each vertex
 	 *
 	 * @param mesh
 	 * @param skeleton
 	 * @param weightsAmount
 	 *            how many bones per vertex
-	 * @return
+	 * @return the normalized weights
 	 */
-	private Map<Integer, List<Map.Entry<Integer, Float>>> loadVertexWeights(final AIMesh mesh, final Bone skeleton, final int weightsAmount) {
-		//calculate weights here
-		final Map<Integer, List<Map.Entry<Integer, Float>>> vertexBoneWeights = new HashMap<>();
-		final Map<Integer, Map<Integer, Float>> rawVertexBoneWeights = new HashMap<>(2 * mesh.mNumVertices());
+	private VertexWeights loadVertexWeights(final AIMesh mesh, final Bone skeleton, final int weightsAmount) {
+		final VertexWeights vertexBoneWeights = new VertexWeights(mesh.mNumVertices(), weightsAmount);
 		for (int b = 0; b < mesh.mNumBones(); b++) {
 			final AIBone bone = AIBone.create(mesh.mBones().get(b));
+			final int boneID = skeleton.firstBoneNamed(bone.mName().dataString()).getIndex();
+			final AIVertexWeight.Buffer aiWeights = bone.mWeights();
 			for (int w = 0; w < bone.mNumWeights(); w++) {
-				final AIVertexWeight aiWeight = bone.mWeights().get(w);
-				final int vertex = aiWeight.mVertexId();
-				final Map<Integer, Float> vertexMapping = rawVertexBoneWeights.computeIfAbsent(vertex, k -> new HashMap<>());
-				final String boneName = bone.mName().dataString();
-				final int boneID = skeleton.firstBoneNamed(boneName).getIndex();
-				vertexMapping.put(boneID, aiWeight.mWeight());
+				//read at the buffer position, so that no struct object is created per weight
+				aiWeights.position(w);
+				vertexBoneWeights.add(aiWeights.mVertexId(), boneID, aiWeights.mWeight());
 			}
 			bone.close();
 		}
-		//normalize weights
-		for (int v = 0; v < mesh.mNumVertices(); v++) {
-			Map<Integer, Float> weights = rawVertexBoneWeights.get(v);
-			if (weights == null) {
-				weights = new HashMap<>();
-			}
-			while(weights.size() < weightsAmount) {
-				//putting 0 at some non-existent index
-				weights.put(-weights.size() - 1, 0f);
-			}
-			final ArrayList<Map.Entry<Integer, Float>> list = new ArrayList<>(weights.entrySet());
-
-			list.sort((final Map.Entry<Integer, Float> o1, final Map.Entry<Integer, Float> o2) -> o2.getValue().compareTo(o1.getValue()));
-
-			while(list.size() > weightsAmount) {
-				list.remove(list.size() - 1);
-			}
-			//adjusts weights
-			final float sum = list.stream().map(Map.Entry::getValue).reduce(0f, Float::sum);
-			for (final Map.Entry<Integer, Float> entry : list) {
-				entry.setValue(entry.getValue() / sum);
-			}
-
-			vertexBoneWeights.put(v, list);
-		}
+		vertexBoneWeights.normalize();
 		return vertexBoneWeights;
 	}
 
@@ -334,33 +372,89 @@ public class ObjectLoader {
 	 *            the aiScene to load from
 	 */
 	private void loadAnimations(final AnimatedMesh animMesh, final AIScene scene) {
+		final Bone skeleton = animMesh.getSkeleton();
+		final int boneCount = skeleton.boneCount();
 		for (int a = 0; a < scene.mNumAnimations(); a++) {
 			final AIAnimation aianim = AIAnimation.create(scene.mAnimations().get(a));
 			final Animation anim = Animation.copySettingsFromAI(aianim);
+			anim.setSkeleton(skeleton);
 
+			final AnimationTrack[] tracks = new AnimationTrack[boneCount];
+			final List<Double> timeStamps = new ArrayList<>();
+			int rawKeys = 0;
 			for (int channel = 0; channel < aianim.mNumChannels(); channel++) {
 				final AINodeAnim node = AINodeAnim.create(aianim.mChannels().get(channel));
 				final String boneName = node.mNodeName().dataString();
+				//resolve the bone once, the tracks are indexed by bone
+				final int boneIndex = skeleton.indexOfBone(boneName);
+				if (boneIndex < 0) {
+					//this channel animates a node that does not deform the mesh
+					node.close();
+					continue;
+				}
 
 				Log.assertEqual(TAG, node.mNumPositionKeys(), node.mNumRotationKeys(), "unequal position and rotation key amount");
 				Log.assertEqual(TAG, node.mNumScalingKeys(), node.mNumRotationKeys(), "unequal scaling and rotation key amount");
 
-				for (int key = 0; key < node.mNumPositionKeys(); key++) {
-
+				final int keys = node.mNumPositionKeys();
+				final float[] times = new float[keys];
+				final float[] positions = new float[keys * 3];
+				final float[] rotations = new float[keys * 4];
+				final float[] scales = new float[keys * 3];
+				for (int key = 0; key < keys; key++) {
 					final AIVectorKey pos = node.mPositionKeys().get(key);
 					final AIQuatKey rot = node.mRotationKeys().get(key);
 					final AIVectorKey scale = node.mScalingKeys().get(key);
 
-					final BoneTransformation transform = new BoneTransformation(new Vector3f(pos.mValue().x(), pos.mValue().y(), pos.mValue().z()),
-							new Quaternionf(rot.mValue().x(), rot.mValue().y(), rot.mValue().z(), rot.mValue().w()), new Vector3f(scale.mValue().x(), scale.mValue().y(), scale.mValue().z()));
-					final KeyFrame keyFrame = new KeyFrame(pos.mTime(), new Pose(animMesh.getSkeleton(), animMesh.getTransform()).put(boneName, transform));
-
-					anim.mergeKeyFrame(keyFrame);
+					times[key] = (float) pos.mTime();
+					timeStamps.add(pos.mTime());
+					positions[key * 3] = pos.mValue().x();
+					positions[key * 3 + 1] = pos.mValue().y();
+					positions[key * 3 + 2] = pos.mValue().z();
+					rotations[key * 4] = rot.mValue().x();
+					rotations[key * 4 + 1] = rot.mValue().y();
+					rotations[key * 4 + 2] = rot.mValue().z();
+					rotations[key * 4 + 3] = rot.mValue().w();
+					scales[key * 3] = scale.mValue().x();
+					scales[key * 3 + 1] = scale.mValue().y();
+					scales[key * 3 + 2] = scale.mValue().z();
 				}
+				tracks[boneIndex] = AnimationTrack.compress(times, positions, rotations, scales);
+				rawKeys += keys;
 				node.close();
 			}
 
+			final double[] times = new double[timeStamps.size()];
+			for (int t = 0; t < times.length; t++) {
+				times[t] = timeStamps.get(t);
+			}
+			anim.setTracks(tracks, times, animMesh.getTransform());
+			logCompression(anim, rawKeys, boneCount);
+
 			animMesh.addAnimation(anim);
 		}
 	}
+
+	/**
+	 * log how much the track compression saved, compared to one full pose per keyFrame
+	 */
+	private void logCompression(final Animation anim, final int rawKeys, final int boneCount) {
+		int keys = 0;
+		long bytes = 0;
+		float positionError = 0;
+		float rotationError = 0;
+		float scaleError = 0;
+		for (final AnimationTrack track : anim.getTracks()) {
+			if (track != null) {
+				keys += track.getKeyCount();
+				bytes += track.getMemoryBytes();
+				positionError = java.lang.Math.max(positionError, track.getMaxPositionError());
+				rotationError = java.lang.Math.max(rotationError, track.getMaxRotationError());
+				scaleError = java.lang.Math.max(scaleError, track.getMaxScaleError());
+			}
+		}
+		final long uncompressedBytes = anim.getKeyFrameCount() * Pose.estimateMemoryBytes(boneCount);
+		Log.log(TAG, String.format(Locale.ROOT, "animation %s: %d keys -> %d keys, %d KB -> %d KB, max error: position %.5f, rotation %.5f rad, scale %.5f",
+				anim.getName(), rawKeys, keys, uncompressedBytes / 1024, bytes / 1024, positionError, rotationError, scaleError));
+	}
 }
@@ -0,0 +1,143 @@
+package mbeb.opengldefault.rendering.io;
+
+import java.io.*;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.*;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import mbeb.opengldefault.logging.Log;
+
+/**
+ * Makes classpath resources available as files, for libraries like Assimp that can only open paths.
+ * <p>
+ * Resources that already are files (when running from the build directory) are read in place. Resources inside a
+ * jar get extracted once into a persistent directory in the users cache directory. Each extracted file is stored
+ * under the CRC32 and size of its content, which the jar lists in its central directory, so checking an extracted
+ * file at startup does not read the resource at all.
+ */
+public class ResourceCache {
+
+	private static final String TAG = "ResourceCache";
+
+	/** the name of the directory of this game inside the users cache directory */
+	private static final String APPLICATION_NAME = "LD38";
+
+	/**
+	 * @return the directory for persistent caches of this game, inside the users cache directory
+	 */
+	public static File getCacheDirectory() {
+		String base = System.getenv("XDG_CACHE_HOME");
+		if (base == null) {
+			base = System.getenv("LOCALAPPDATA");
+		}
+		if (base == null) {
+			base = new File(System.getProperty("user.home"), ".cache").getPath();
+		}
+		return new File(base, APPLICATION_NAME);
+	}
+
+	/** the classpath directory of the resources, like "/models/" */
+	private final String resourceRoot;
+	/** the directory the resources get extracted to */
+	private final File directory;
+
+	/**
+	 * @param resourceRoot
+	 *            the classpath directory of the resources, like "/models/"
+	 * @param name
+	 *            the name of the directory inside {@link #getCacheDirectory()} to extract to
+	 */
+	public ResourceCache(final String resourceRoot, final String name) {
+		this.resourceRoot = resourceRoot;
+		this.directory = new File(getCacheDirectory(), name);
+	}
+
+	/**
+	 * get a file with the content of a resource, and extract it if needed. This can be called from multiple threads
+	 *
+	 * @param rawPath
+	 *            the path of the resource, relative to the resource root
+	 * @return a file with the content of the resource, or null if there is no such resource
+	 */
+	public File getFile(final String rawPath) {
+		final URL url = ResourceCache.class.getResource(resourceRoot + rawPath);
+		if (url == null) {
+			return null;
+		}
+		try {
+			if ("file".equals(url.getProtocol())) {
+				return new File(url.toURI());
+			}
+			return extract(url, new File(rawPath).getName());
+		} catch(final IOException | URISyntaxException ex) {
+			Log.error(TAG, "Cannot extract resource " + rawPath, ex);
+			return null;
+		}
+	}
+
+	/**
+	 * find the extracted file of a resource, or extract it now
+	 *
+	 * @param url
+	 *            the location of the resource
+	 * @param fileName
+	 *            the name of the resource. It is kept, because Assimp chooses its importer by the file extension
+	 * @return the extracted file
+	 */
+	private File extract(final URL url, final String fileName) throws IOException {
+		final URLConnection connection = url.openConnection();
+		if (connection instanceof JarURLConnection) {
+			final JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+			if (entry.getCrc() != -1 && entry.getSize() != -1) {
+				final File extracted = new File(new File(directory, key(entry.getCrc(), entry.getSize())), fileName);
+				if (extracted.length() != entry.getSize()) {
+					try(InputStream in = connection.getInputStream()) {
+						store(in, extracted);
+					}
+				}
+				return extracted;
+			}
+		}
+		//the checksum is unknown in advance: hash the content while copying it into a temporary file
+		Files.createDirectories(directory.toPath());
+		final File temp = File.createTempFile(fileName, ".tmp", directory);
+		try(CheckedInputStream in = new CheckedInputStream(connection.getInputStream(), new CRC32())) {
+			Files.copy(in, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			final File extracted = new File(new File(directory, key(in.getChecksum().getValue(), temp.length())), fileName);
+			if (extracted.length() != temp.length()) {
+				Files.createDirectories(extracted.getParentFile().toPath());
+				Files.move(temp.toPath(), extracted.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			return extracted;
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
+
+	/**
+	 * copy a stream into a file. The content is written to a temporary file first, so that other threads or
+	 * processes never see a partly written file
+	 */
+	private static void store(final InputStream in, final File extracted) throws IOException {
+		Files.createDirectories(extracted.getParentFile().toPath());
+		final File temp = File.createTempFile(extracted.getName(), ".tmp", extracted.getParentFile());
+		try {
+			Files.copy(in, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Files.move(temp.toPath(), extracted.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
+
+	/**
+	 * @return the name of the directory for a content with the given checksum and size
+	 */
+	private static String key(final long crc, final long size) {
+		return String.format("%08x-%d", crc, size);
+	}
+}
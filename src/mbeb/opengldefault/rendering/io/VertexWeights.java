@@ -0,0 +1,108 @@
+package mbeb.opengldefault.rendering.io;
+
+import java.util.Arrays;
+
+/**
+ * The strongest bone influences of every vertex of a mesh, in flat primitive arrays.
+ * <p>
+ * Vertex v owns the slots <code>v * k</code> to <code>v * k + k - 1</code>, sorted by descending weight. Weights get
+ * inserted into these slots as they are read, a weaker weight than all k slots is dropped right away. Unused slots
+ * have the bone index -1 and the weight 0.
+ */
+public class VertexWeights {
+
+	/** the bone index of an unused slot */
+	public static final int NO_BONE = -1;
+
+	/** k: how many bones can influence one vertex */
+	private final int weightsPerVertex;
+	private final int[] boneIndices;
+	private final float[] weights;
+
+	/**
+	 * create weights with all slots unused
+	 *
+	 * @param vertexCount
+	 *            the amount of vertices of the mesh
+	 * @param weightsPerVertex
+	 *            how many bones can influence one vertex
+	 */
+	public VertexWeights(final int vertexCount, final int weightsPerVertex) {
+		this.weightsPerVertex = weightsPerVertex;
+		this.boneIndices = new int[vertexCount * weightsPerVertex];
+		this.weights = new float[vertexCount * weightsPerVertex];
+		Arrays.fill(boneIndices, NO_BONE);
+	}
+
+	/**
+	 * add the influence of a bone to a vertex, if it is one of the k strongest so far
+	 *
+	 * @param vertex
+	 *            the vertex index
+	 * @param bone
+	 *            the bone index
+	 * @param weight
+	 *            the raw weight of the bone on the vertex
+	 */
+	public void add(final int vertex, final int bone, final float weight) {
+		final int start = vertex * weightsPerVertex;
+		int slot = start + weightsPerVertex - 1;
+		if (weight <= weights[slot]) {
+			return;
+		}
+		//shift weaker weights back (dropping the last one) until the new weight fits
+		while(slot > start && weights[slot - 1] < weight) {
+			boneIndices[slot] = boneIndices[slot - 1];
+			weights[slot] = weights[slot - 1];
+			slot--;
+		}
+		boneIndices[slot] = bone;
+		weights[slot] = weight;
+	}
+
+	/**
+	 * scale the weights of every vertex so that they sum up to 1. Vertices without any bone keep their zero weights
+	 */
+	public void normalize() {
+		for (int start = 0; start < weights.length; start += weightsPerVertex) {
+			float sum = 0;
+			for (int slot = start; slot < start + weightsPerVertex; slot++) {
+				sum += weights[slot];
+			}
+			if (sum > 0) {
+				for (int slot = start; slot < start + weightsPerVertex; slot++) {
+					weights[slot] /= sum;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return k: how many bones can influence one vertex
+	 */
+	public int getWeightsPerVertex() {
+		return weightsPerVertex;
+	}
+
+	/**
+	 * @param vertex
+	 *            the vertex index
+	 * @param slot
+	 *            0 for the strongest bone, up to k - 1
+	 * @return the index of the bone, or {@link #NO_BONE}
+	 */
+	public int getBoneIndex(final int vertex, final int slot) {
+		return boneIndices[vertex * weightsPerVertex + slot];
+	}
+
+	/**
+	 * @param vertex
+	 *            the vertex index
+	 * @param slot
+	 *            0 for the strongest bone, up to k - 1
+	 * @return the weight of the bone
+	 */
+	public float getWeight(final int vertex, final int slot) {
+		return weights[vertex * weightsPerVertex + slot];
+	}
+}
@@ -21,6 +21,14 @@ public interface IRenderable extends IRenderableHolder{
 
 	BoundingBox getBoundingBox();
 
+	/**
+	 * @return a box of the current state only (e.g. the current pose of an animation), that may change with every
+	 *         update. {@link #getBoundingBox()} has to contain all of them
+	 */
+	default BoundingBox getCurrentBoundingBox() {
+		return getBoundingBox();
+	}
+
 	default void update(double deltaTime) {
 	}
 
@@ -36,6 +36,27 @@ public class MaterialRenderable implements IRenderable{
 		this.material = material;
 	}
 	
+	/**
+	 * @return the Material that gets bound for rendering
+	 */
+	public Material getMaterial() {
+		return material;
+	}
+
+	/**
+	 * @return the name of the Material-uniform
+	 */
+	public String getUniformName() {
+		return uniformName;
+	}
+
+	/**
+	 * @return the decorated IRenderable
+	 */
+	public IRenderable getWrappedRenderable() {
+		return renderable;
+	}
+
 	@Override
 	public IRenderable withMaterial(Material material) {
 		setMaterial(material);
@@ -8,6 +8,8 @@ import mbeb.opengldefault.gl.shader.UBOManager;
 import mbeb.opengldefault.gl.texture.CubeMap;
 import mbeb.opengldefault.gl.texture.Texture;
 import mbeb.opengldefault.logging.GLErrors;
+import mbeb.opengldefault.rendering.io.AssetHandle;
+import mbeb.opengldefault.rendering.io.AssetRegistry;
 import mbeb.opengldefault.scene.Scene;
 
 /**
@@ -19,6 +21,7 @@ public class Skybox {
 
 	private static final String TAG = "Skybox";
 
+	private final AssetHandle<CubeMap> cubeMapHandle;
 	private final CubeMap cubeMap;
 	private Camera camera;
 	private final IRenderable skyboxRenderable;
@@ -43,7 +46,8 @@ public class Skybox {
 	 *            the file extension for the images
 	 */
 	public Skybox(final String texturePath, String extension) {
-		cubeMap = new CubeMap(texturePath, extension);
+		cubeMapHandle = AssetRegistry.getInstance().acquireCubeMap(texturePath, extension);
+		cubeMap = cubeMapHandle.get();
 		cubeMap.whileBound(texture -> cubeMap.setWrapMode(Texture.WrapMode.CLAMP_TO_EDGE)
 				&& cubeMap.setInterpolates(true));
 		shader = new ShaderProgram("skybox.vert", "skybox.frag");
@@ -79,4 +83,11 @@ public class Skybox {
 		glDepthMask(true);
 		GLErrors.checkForError(TAG, "glDepthMask");
 	}
+
+	/**
+	 * stop using the shared cube map. The skybox can not be rendered afterwards
+	 */
+	public void releaseAssets() {
+		cubeMapHandle.release();
+	}
 }
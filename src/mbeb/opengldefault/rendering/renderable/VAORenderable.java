@@ -3,6 +3,8 @@ package mbeb.opengldefault.rendering.renderable;
 import static mbeb.opengldefault.constants.Constants.FLOAT_SIZE;
 import static org.lwjgl.opengl.GL11.*;
 
+import java.nio.ByteBuffer;
+
 import org.joml.Matrix4f;
 
 import mbeb.opengldefault.gl.buffer.ElementBuffer;
@@ -86,6 +88,17 @@ public class VAORenderable implements IRenderable {
 		this.dataFormat = format;
 	}
 
+	/**
+	 * @return the amount of vertices (or indices, if this renderable is indexed) to draw
+	 */
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public DataFragment[] getDataFormat() {
+		return dataFormat;
+	}
+
 	@Override
 	public BoundingBox getBoundingBox() {
 		return Log.assertNotNull(TAG, boundingBox);
@@ -180,6 +193,17 @@ public class VAORenderable implements IRenderable {
 	@Override
 	public void render(ShaderProgram shader) {
 		bind();
+		draw(shader);
+		unbind();
+	}
+
+	/**
+	 * issue the draw call for this Renderable, without binding or unbinding the VAO.
+	 * Used by callers that batch multiple draws of the same VAO
+	 *
+	 * @param shader
+	 */
+	public void draw(ShaderProgram shader) {
 		if (EBO == null) {
 			glDrawArrays(shader.getDrawMode().getGlEnum(), 0, vertexCount);
 			GLErrors.checkForError(TAG, "glDrawArrays");
@@ -187,7 +211,6 @@ public class VAORenderable implements IRenderable {
 			glDrawElements(shader.getDrawMode().getGlEnum(), vertexCount, GL_UNSIGNED_INT, 0);
 			GLErrors.checkForError(TAG, "glDrawElements");
 		}
-		unbind();
 	}
 
 	/**
@@ -197,6 +220,26 @@ public class VAORenderable implements IRenderable {
 		return getVBO().writer(FLOAT_SIZE * vertexCount * DataFragment.getTotalSize(dataFormat)).setSpacingMode(false);
 	}
 
+	/**
+	 * @return a writer that collects vertex data for this renderable without a GL context, pass its data to
+	 *         {@link #upload(ByteBuffer)} later
+	 */
+	public GLBufferWriter stagingWriter() {
+		return GLBufferWriter.staging(FLOAT_SIZE * vertexCount * DataFragment.getTotalSize(dataFormat)).setSpacingMode(false);
+	}
+
+	/**
+	 * fill the vbo with interleaved vertex data and finish writing. Has to be called on the GL thread
+	 *
+	 * @param vertexData
+	 *            the vertex bytes in native order, as collected by a {@link #stagingWriter()}
+	 */
+	public void upload(ByteBuffer vertexData) {
+		dataWriter().write(vertexData).flush(GLBufferWriter.WriteType.FULL_DATA);
+		setAttribPointers();
+		finishWriting();
+	}
+
 	/**
 	 * If you never call this one, this Renderable will use glDrawArrays instead of glDrawElements
 	 * 
@@ -227,4 +270,14 @@ public class VAORenderable implements IRenderable {
 			EBO.delete();
 		}
 	}
+
+	/**
+	 * delete the vertex array of this renderable. It can not be rendered afterwards
+	 */
+	public void delete() {
+		if (VAO != null) {
+			VAO.delete();
+			VAO = null;
+		}
+	}
 }
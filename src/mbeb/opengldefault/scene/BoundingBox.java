@@ -3,7 +3,6 @@ package mbeb.opengldefault.scene;
 import mbeb.opengldefault.util.Streamerator;
 import org.joml.*;
 
-import mbeb.opengldefault.camera.*;
 import mbeb.opengldefault.logging.*;
 
 import java.util.*;
@@ -51,6 +50,17 @@ public class BoundingBox {
 			return result;
 		}
 
+		@Override
+		public BoundingBox include(final BoundingBox childBox) {
+			if (childBox.isEmpty()) {
+				return this;
+			}
+			final Vector3f min = new Vector3f();
+			final Vector3f max = new Vector3f();
+			childBox.getParentGlobalExtents(min, max);
+			return new BoundingBox(min, max.sub(min), getModelTransform());
+		}
+
 		@Override
 		public BoundingBox extendTo(final Vector3f localVertex) {
 			return new BoundingBox(localVertex, new Vector3f(0), getModelTransform());
@@ -119,6 +129,22 @@ public class BoundingBox {
 		return this;
 	}
 
+	/**
+	 * move this box to new local extents in place
+	 *
+	 * @param localMin
+	 *            the new minimum corner
+	 * @param localMax
+	 *            the new maximum corner
+	 * @return this
+	 */
+	public BoundingBox setExtents(final Vector3fc localMin, final Vector3fc localMax) {
+		localStart.set(localMin);
+		localMax.sub(localMin, localSize);
+		changed();
+		return this;
+	}
+
 	/**
 	 * increase the size of this BoundingBox by the given factor.
 	 * The center of the BoundingBox is the scaling origin
@@ -172,95 +198,207 @@ public class BoundingBox {
 	 * @return a new boundingBox
 	 */
 	public BoundingBox unionWith(final BoundingBox childBox) {
-		//We also need to check for updates in the child BB, because the BB could potentially grow, if the children have transformations on their own
+		return this.duplicate().include(childBox);
+	}
+
+	/**
+	 * grow this box (in place) so that it also contains the given child-box, without allocating
+	 *
+	 * @param childBox
+	 *            - its translation is seen as relative to this ones
+	 * @return this box, or a new one if this box was empty
+	 */
+	public BoundingBox include(final BoundingBox childBox) {
 		if (childBox.isEmpty()) {
-			return this.duplicate();
+			return this;
 		}
-		final List<Vector4f> childCorners = Streamerator.asList(childBox.getParentGlobalCorners());
-		BoundingBox bigger = this.duplicate();
-		for (final Vector4f corner : childCorners) {
-			bigger = bigger.extendTo(new Vector3f(corner.x, corner.y, corner.z));
-		}
-		return bigger;
+		final Matrix4fc m = childBox.getModelTransform();
+		final Vector3f start = childBox.localStart;
+		final Vector3f size = childBox.localSize;
+
+		final float minX = java.lang.Math.min(localStart.x, transformedMin(m.m30(), m.m00(), m.m10(), m.m20(), start, size));
+		final float minY = java.lang.Math.min(localStart.y, transformedMin(m.m31(), m.m01(), m.m11(), m.m21(), start, size));
+		final float minZ = java.lang.Math.min(localStart.z, transformedMin(m.m32(), m.m02(), m.m12(), m.m22(), start, size));
+		final float maxX = java.lang.Math.max(localStart.x + localSize.x, transformedMax(m.m30(), m.m00(), m.m10(), m.m20(), start, size));
+		final float maxY = java.lang.Math.max(localStart.y + localSize.y, transformedMax(m.m31(), m.m01(), m.m11(), m.m21(), start, size));
+		final float maxZ = java.lang.Math.max(localStart.z + localSize.z, transformedMax(m.m32(), m.m02(), m.m12(), m.m22(), start, size));
+
+		localStart.set(minX, minY, minZ);
+		localSize.set(maxX - minX, maxY - minY, maxZ - minZ);
+		changed();
+		return this;
 	}
 
+	//<editor-fold desc="Extents">
+
 	/**
-	 * collect the 8 corners in local space
+	 * transform an axis aligned box and store the axis aligned box around the result (Arvo's method: every output
+	 * extent is the translation plus the smaller/bigger product of each matrix entry with the input extents)
 	 *
-	 * @return
+	 * @param transform
+	 *            the transformation to apply
+	 * @param start
+	 *            the minimum corner of the box
+	 * @param size
+	 *            the size of the box
+	 * @param outMin
+	 *            receives the minimum corner of the transformed box
+	 * @param outMax
+	 *            receives the maximum corner of the transformed box
 	 */
-	public Iterator<Vector3f> getLocalCorners() {
-		if (localCorners == null) {
-			localCorners = new Vector3f[8];
-			for (int x = 0; x <= 1; x++) {
-				for (int y = 0; y <= 1; y++) {
-					for (int z = 0; z <= 1; z++) {
-						final Vector3f res = new Vector3f(localSize);
-						res.mul(x, y, z);
-						res.add(localStart);
-						localCorners[x * 4 + y * 2 + z] = res;
-					}
-				}
-			}
-		}
-		return Streamerator.ofArray(localCorners);
+	public static void transformExtents(final Matrix4fc transform, final Vector3fc start, final Vector3fc size, final Vector3f outMin, final Vector3f outMax) {
+		final Matrix4fc m = transform;
+		final float minX = transformedMin(m.m30(), m.m00(), m.m10(), m.m20(), start, size);
+		final float minY = transformedMin(m.m31(), m.m01(), m.m11(), m.m21(), start, size);
+		final float minZ = transformedMin(m.m32(), m.m02(), m.m12(), m.m22(), start, size);
+		final float maxX = transformedMax(m.m30(), m.m00(), m.m10(), m.m20(), start, size);
+		final float maxY = transformedMax(m.m31(), m.m01(), m.m11(), m.m21(), start, size);
+		final float maxZ = transformedMax(m.m32(), m.m02(), m.m12(), m.m22(), start, size);
+		outMin.set(minX, minY, minZ);
+		outMax.set(maxX, maxY, maxZ);
 	}
 
 	/**
-	 * apply own transformation to local corners and return them
+	 * the minimum of one output axis of Arvo's method
 	 *
-	 * @return
+	 * @param translation
+	 *            the translation of this axis
+	 * @param x
+	 *            the matrix entry mapping the input x to this axis
+	 * @param y
+	 *            the matrix entry mapping the input y to this axis
+	 * @param z
+	 *            the matrix entry mapping the input z to this axis
 	 */
-	public Iterator<Vector4f> getParentGlobalCorners() {
-		return Streamerator.map(getLocalCorners(),
-				local -> new Vector4f(local, 1.0f).mul(getModelTransform()));
+	private static float transformedMin(final float translation, final float x, final float y, final float z, final Vector3fc start, final Vector3fc size) {
+		return translation
+				+ java.lang.Math.min(x * start.x(), x * (start.x() + size.x()))
+				+ java.lang.Math.min(y * start.y(), y * (start.y() + size.y()))
+				+ java.lang.Math.min(z * start.z(), z * (start.z() + size.z()));
 	}
 
 	/**
-	 * apply parent
+	 * the maximum of one output axis of Arvo's method
 	 *
-	 * @param parentTransform
-	 * @return
+	 * @see #transformedMin(float, float, float, float, Vector3fc, Vector3fc)
 	 */
-	public Iterator<Vector4f> getGlobalCorners(final Matrix4f parentTransform) {
-		return Streamerator.map(getParentGlobalCorners(),
-				parentGlobal -> parentGlobal.mul(parentTransform));
+	private static float transformedMax(final float translation, final float x, final float y, final float z, final Vector3fc start, final Vector3fc size) {
+		return translation
+				+ java.lang.Math.max(x * start.x(), x * (start.x() + size.x()))
+				+ java.lang.Math.max(y * start.y(), y * (start.y() + size.y()))
+				+ java.lang.Math.max(z * start.z(), z * (start.z() + size.z()));
 	}
 
 	/**
-	 * calculate the screen-space positions of my 8 corners
+	 * transform this box by a given matrix (instead of its model transform)
+	 *
+	 * @param transform
+	 *            the transformation to apply to the local box
+	 * @param outMin
+	 *            receives the minimum corner
+	 * @param outMax
+	 *            receives the maximum corner
+	 */
+	public void getTransformedExtents(final Matrix4fc transform, final Vector3f outMin, final Vector3f outMax) {
+		transformExtents(transform, localStart, localSize, outMin, outMax);
+	}
+
+	/**
+	 * apply the own model transform to this box
+	 *
+	 * @param outMin
+	 *            receives the minimum corner
+	 * @param outMax
+	 *            receives the maximum corner
+	 */
+	public void getParentGlobalExtents(final Vector3f outMin, final Vector3f outMax) {
+		getTransformedExtents(getModelTransform(), outMin, outMax);
+	}
+
+	/**
+	 * apply the own model transform and then the parent transformation to this box
 	 *
 	 * @param parentTransform
-	 *            the boundingBoxes parent transformation
-	 * @param camera
-	 *            the camera to look from
-	 * @return screen-space positions
+	 *            the boxes parent transformation
+	 * @param scratch
+	 *            storage for the combined transformation
+	 * @param outMin
+	 *            receives the minimum corner
+	 * @param outMax
+	 *            receives the maximum corner
 	 */
-	public Iterator<Vector3f> getCornersOnScreen(final Matrix4f parentTransform, final Camera camera) {
-		return Streamerator.map(getGlobalCorners(parentTransform), camera::getPositionOnScreen);
+	public void getGlobalExtents(final Matrix4fc parentTransform, final Matrix4f scratch, final Vector3f outMin, final Vector3f outMax) {
+		getTransformedExtents(parentTransform.mul(getModelTransform(), scratch), outMin, outMax);
 	}
 
-	private BoundingBox getGlobalBoundingBox(final Matrix4f parentTransform) {
-		final List<Vector4f> globalCorners = Streamerator.asList(getGlobalCorners(parentTransform));
-
-		Vector4f someCorner = globalCorners.get(0);
-		float minX = someCorner.x;
-		float minY = someCorner.y;
-		float minZ = someCorner.z;
-		float maxX = someCorner.x;
-		float maxY = someCorner.y;
-		float maxZ = someCorner.z;
-
-		for (Vector4f globalCorner : globalCorners.subList(1, globalCorners.size() - 1)) {
-			minX = java.lang.Math.min(globalCorner.x, minX);
-			minY = java.lang.Math.min(globalCorner.y, minY);
-			minZ = java.lang.Math.min(globalCorner.z, minZ);
-			maxX = java.lang.Math.max(globalCorner.x, maxX);
-			maxY = java.lang.Math.max(globalCorner.y, maxY);
-			maxZ = java.lang.Math.max(globalCorner.z, maxZ);
-		}
+	/**
+	 * @param min
+	 *            the minimum corner of a box in local space
+	 * @param max
+	 *            the maximum corner of a box in local space
+	 * @return true if the given box lies completely inside this one
+	 */
+	public boolean contains(final Vector3fc min, final Vector3fc max) {
+		return !isEmpty()
+				&& min.x() >= localStart.x && min.y() >= localStart.y && min.z() >= localStart.z
+				&& max.x() <= localStart.x + localSize.x
+				&& max.y() <= localStart.y + localSize.y
+				&& max.z() <= localStart.z + localSize.z;
+	}
+
+	/**
+	 * @param min
+	 *            the minimum corner of a box in local space
+	 * @param max
+	 *            the maximum corner of a box in local space
+	 * @return true if the given box reaches the border of this one, so this box might shrink without it
+	 */
+	public boolean touches(final Vector3fc min, final Vector3fc max) {
+		return isEmpty()
+				|| min.x() <= localStart.x || min.y() <= localStart.y || min.z() <= localStart.z
+				|| max.x() >= localStart.x + localSize.x
+				|| max.y() >= localStart.y + localSize.y
+				|| max.z() >= localStart.z + localSize.z;
+	}
 
-		return new BoundingBox(new Vector3f(minX, minY, minZ), new Vector3f(maxX - minX, maxY - minY, maxZ - minZ));/**/
+	/**
+	 * calculate a single corner in local space
+	 *
+	 * @param index
+	 *            the corner index from 0 to 7 (bit 2: x, bit 1: y, bit 0: z)
+	 * @param dest
+	 *            where to store the corner
+	 * @return dest
+	 */
+	public Vector3f getLocalCorner(final int index, final Vector3f dest) {
+		return dest.set(
+				localStart.x + ((index & 4) == 0 ? 0 : localSize.x),
+				localStart.y + ((index & 2) == 0 ? 0 : localSize.y),
+				localStart.z + ((index & 1) == 0 ? 0 : localSize.z));
+	}
+
+	//</editor-fold>
+
+	/**
+	 * collect the 8 corners in local space
+	 *
+	 * @return
+	 */
+	public Iterator<Vector3f> getLocalCorners() {
+		if (localCorners == null) {
+			localCorners = new Vector3f[8];
+			for (int x = 0; x <= 1; x++) {
+				for (int y = 0; y <= 1; y++) {
+					for (int z = 0; z <= 1; z++) {
+						final Vector3f res = new Vector3f(localSize);
+						res.mul(x, y, z);
+						res.add(localStart);
+						localCorners[x * 4 + y * 2 + z] = res;
+					}
+				}
+			}
+		}
+		return Streamerator.ofArray(localCorners);
 	}
 
 	/**
@@ -289,15 +427,28 @@ public class BoundingBox {
 		if (isEmpty()) {
 			return false;
 		}
-		BoundingBox globalBoundingBox = getGlobalBoundingBox(parentTransform);
-		Vector3f min = globalBoundingBox.getLocalStart();
-		Vector3f max = globalBoundingBox.getLocalEnd();
-		if (min == null || max == null) {
-			Log.error(TAG, "Undefined BoundingBox");
-			return false;
-		}
-		float tmin = (min.x - origin.x) / direction.x;
-		float tmax = (max.x - origin.x) / direction.x;
+		final Vector3f min = new Vector3f();
+		final Vector3f max = new Vector3f();
+		getGlobalExtents(parentTransform, new Matrix4f(), min, max);
+		return intersectsRay(origin, direction, min, max);
+	}
+
+	/**
+	 * slab test of a ray against a global axis aligned box
+	 *
+	 * @param origin
+	 *            the ray origin
+	 * @param direction
+	 *            the ray direction
+	 * @param min
+	 *            the minimum corner of the box
+	 * @param max
+	 *            the maximum corner of the box
+	 * @return true if the ray hits the box
+	 */
+	public static boolean intersectsRay(Vector3fc origin, Vector3fc direction, Vector3fc min, Vector3fc max) {
+		float tmin = (min.x() - origin.x()) / direction.x();
+		float tmax = (max.x() - origin.x()) / direction.x();
 
 		if (tmin > tmax) {
 			float buffer = tmin;
@@ -305,8 +456,8 @@ public class BoundingBox {
 			tmax = buffer;
 		}
 
-		float tymin = (min.y - origin.y) / direction.y;
-		float tymax = (max.y - origin.y) / direction.y;
+		float tymin = (min.y() - origin.y()) / direction.y();
+		float tymax = (max.y() - origin.y()) / direction.y();
 
 		if (tymin > tymax) {
 			float buffer = tymin;
@@ -326,8 +477,8 @@ public class BoundingBox {
 			tmax = tymax;
 		}
 
-		float tzmin = (min.z - origin.z) / direction.z;
-		float tzmax = (max.z - origin.z) / direction.z;
+		float tzmin = (min.z() - origin.z()) / direction.z();
+		float tzmax = (max.z() - origin.z()) / direction.z();
 
 		if (tzmin > tzmax) {
 			float buffer = tzmin;
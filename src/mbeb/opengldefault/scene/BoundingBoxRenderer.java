@@ -21,6 +21,10 @@ public class BoundingBoxRenderer extends SceneGraphRenderer {
 		super(root, cam);
 	}
 
+	public BoundingBoxRenderer(final TransformStore transforms, final Camera cam) {
+		super(transforms, cam);
+	}
+
 	private Matrix4f getBoxTransformFor(final BoundingBox.Owner obj) {
 		if (obj.getBoundingBox().isEmpty()) {
 			return new Matrix4f();
@@ -48,7 +52,7 @@ public class BoundingBoxRenderer extends SceneGraphRenderer {
 	}
 
 	@Override
-	public void renderSelf(final SceneObject object, final Matrix4f transform) {
+	public void renderSelf(final SceneObject object, final ShaderProgram objectShader, final Matrix4f transform) {
 		shader.use();
 		renderBox(object, colorFor(object.isSelected()), transform);
 	}
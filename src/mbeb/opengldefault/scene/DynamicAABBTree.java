@@ -0,0 +1,548 @@
+package mbeb.opengldefault.scene;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import org.joml.FrustumIntersection;
+import org.joml.Intersectionf;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+
+import mbeb.opengldefault.logging.Log;
+
+/**
+ * A dynamic bounding volume hierarchy of axis aligned boxes.
+ * Every leaf (proxy) stores a slightly enlarged ("fat") box, so small movements don't require restructuring.
+ * Leaves are inserted by the surface area heuristic and the tree is kept balanced with rotations.
+ */
+public class DynamicAABBTree {
+
+	private static final String TAG = "DynamicAABBTree";
+
+	/** marks the absence of a node */
+	public static final int NULL_NODE = -1;
+
+	/** how many floats one box takes (min xyz, max xyz) */
+	private static final int BOX_FLOATS = 6;
+	private static final int INITIAL_CAPACITY = 32;
+
+	/** how much every leaf box gets enlarged in each direction */
+	private final float margin;
+
+	private int root = NULL_NODE;
+	private int nodeCount;
+	private int capacity;
+	private int freeList;
+
+	private float[] boxes;
+	/** the parent of each node, or the next free node for free nodes */
+	private int[] parents;
+	private int[] firstChildren;
+	private int[] secondChildren;
+	/** the height of each node (0 for leaves, -1 for free nodes) */
+	private int[] heights;
+	private int[] userData;
+
+	/** the traversal stack, reused for every query */
+	private int[] stack = new int[64];
+
+	/** scratch data for ray queries */
+	private final Vector2f rayResult = new Vector2f();
+
+	public DynamicAABBTree() {
+		this(0.1f);
+	}
+
+	/**
+	 * create a new empty tree
+	 *
+	 * @param margin
+	 *            how much the box of every leaf is enlarged in each direction
+	 */
+	public DynamicAABBTree(final float margin) {
+		this.margin = margin;
+		allocate(INITIAL_CAPACITY);
+	}
+
+	//<editor-fold desc="node pool">
+
+	private void allocate(final int newCapacity) {
+		if (boxes == null) {
+			boxes = new float[newCapacity * BOX_FLOATS];
+			parents = new int[newCapacity];
+			firstChildren = new int[newCapacity];
+			secondChildren = new int[newCapacity];
+			heights = new int[newCapacity];
+			userData = new int[newCapacity];
+		} else {
+			boxes = Arrays.copyOf(boxes, newCapacity * BOX_FLOATS);
+			parents = Arrays.copyOf(parents, newCapacity);
+			firstChildren = Arrays.copyOf(firstChildren, newCapacity);
+			secondChildren = Arrays.copyOf(secondChildren, newCapacity);
+			heights = Arrays.copyOf(heights, newCapacity);
+			userData = Arrays.copyOf(userData, newCapacity);
+		}
+		//link the new nodes into the free list
+		for (int node = capacity; node < newCapacity - 1; node++) {
+			parents[node] = node + 1;
+			heights[node] = -1;
+		}
+		parents[newCapacity - 1] = NULL_NODE;
+		heights[newCapacity - 1] = -1;
+		freeList = capacity;
+		capacity = newCapacity;
+	}
+
+	private int allocateNode() {
+		if (freeList == NULL_NODE) {
+			allocate(capacity * 2);
+		}
+		final int node = freeList;
+		freeList = parents[node];
+		parents[node] = NULL_NODE;
+		firstChildren[node] = NULL_NODE;
+		secondChildren[node] = NULL_NODE;
+		heights[node] = 0;
+		userData[node] = -1;
+		nodeCount++;
+		return node;
+	}
+
+	private void freeNode(final int node) {
+		parents[node] = freeList;
+		heights[node] = -1;
+		freeList = node;
+		nodeCount--;
+	}
+
+	//</editor-fold>
+
+	//<editor-fold desc="proxies">
+
+	/**
+	 * insert a new leaf
+	 *
+	 * @param min
+	 *            the minimum corner of the tight box
+	 * @param max
+	 *            the maximum corner of the tight box
+	 * @param data
+	 *            a user value to store with this leaf
+	 * @return the id of the new proxy
+	 */
+	public int createProxy(final Vector3f min, final Vector3f max, final int data) {
+		final int proxy = allocateNode();
+		setFatBox(proxy, min, max);
+		userData[proxy] = data;
+		insertLeaf(proxy);
+		return proxy;
+	}
+
+	/**
+	 * remove a leaf from the tree
+	 *
+	 * @param proxy
+	 *            the id returned by {@link #createProxy(Vector3f, Vector3f, int)}
+	 */
+	public void destroyProxy(final int proxy) {
+		Log.assertTrue(TAG, isLeaf(proxy), "Can only destroy leaves");
+		removeLeaf(proxy);
+		freeNode(proxy);
+	}
+
+	/**
+	 * refit a leaf to a new tight box. The tree only gets restructured if the new box leaves the fat box
+	 *
+	 * @param proxy
+	 *            the leaf to move
+	 * @param min
+	 *            the new minimum corner
+	 * @param max
+	 *            the new maximum corner
+	 * @return true if the leaf was re-inserted
+	 */
+	public boolean moveProxy(final int proxy, final Vector3f min, final Vector3f max) {
+		final int offset = proxy * BOX_FLOATS;
+		if (boxes[offset] <= min.x && boxes[offset + 1] <= min.y && boxes[offset + 2] <= min.z
+				&& max.x <= boxes[offset + 3] && max.y <= boxes[offset + 4] && max.z <= boxes[offset + 5]) {
+			return false;
+		}
+		removeLeaf(proxy);
+		setFatBox(proxy, min, max);
+		insertLeaf(proxy);
+		return true;
+	}
+
+	/**
+	 * @param proxy
+	 *            a leaf id
+	 * @return the user value of this leaf
+	 */
+	public int getUserData(final int proxy) {
+		return userData[proxy];
+	}
+
+	/**
+	 * remove all leaves
+	 */
+	public void clear() {
+		root = NULL_NODE;
+		nodeCount = 0;
+		capacity = 0;
+		boxes = null;
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * @return the amount of nodes (leaves and inner nodes) in this tree
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return the height of the tree (0 for a single leaf, -1 when empty)
+	 */
+	public int getHeight() {
+		return root == NULL_NODE ? -1 : heights[root];
+	}
+
+	private boolean isLeaf(final int node) {
+		return firstChildren[node] == NULL_NODE;
+	}
+
+	private void setFatBox(final int node, final Vector3f min, final Vector3f max) {
+		final int offset = node * BOX_FLOATS;
+		boxes[offset] = min.x - margin;
+		boxes[offset + 1] = min.y - margin;
+		boxes[offset + 2] = min.z - margin;
+		boxes[offset + 3] = max.x + margin;
+		boxes[offset + 4] = max.y + margin;
+		boxes[offset + 5] = max.z + margin;
+	}
+
+	//</editor-fold>
+
+	//<editor-fold desc="tree structure">
+
+	private void insertLeaf(final int leaf) {
+		if (root == NULL_NODE) {
+			root = leaf;
+			parents[root] = NULL_NODE;
+			return;
+		}
+
+		final int sibling = findBestSibling(leaf);
+
+		final int oldParent = parents[sibling];
+		final int newParent = allocateNode();
+		parents[newParent] = oldParent;
+		heights[newParent] = heights[sibling] + 1;
+		combine(newParent, leaf, sibling);
+
+		if (oldParent == NULL_NODE) {
+			root = newParent;
+		} else if (firstChildren[oldParent] == sibling) {
+			firstChildren[oldParent] = newParent;
+		} else {
+			secondChildren[oldParent] = newParent;
+		}
+		firstChildren[newParent] = sibling;
+		secondChildren[newParent] = leaf;
+		parents[sibling] = newParent;
+		parents[leaf] = newParent;
+
+		refitAncestors(parents[leaf]);
+	}
+
+	/**
+	 * descend the tree by the surface area heuristic
+	 *
+	 * @param leaf
+	 *            the leaf to insert
+	 * @return the node that should become the leafs sibling
+	 */
+	private int findBestSibling(final int leaf) {
+		final int leafOffset = leaf * BOX_FLOATS;
+		int index = root;
+		while(!isLeaf(index)) {
+			final int first = firstChildren[index];
+			final int second = secondChildren[index];
+
+			final float area = area(index);
+			final float combinedArea = combinedArea(index, leafOffset);
+
+			//cost of creating a new parent for this node and the new leaf
+			final float cost = 2 * combinedArea;
+			//minimum cost of pushing the leaf further down the tree
+			final float inheritanceCost = 2 * (combinedArea - area);
+
+			final float firstCost = descendCost(first, leafOffset) + inheritanceCost;
+			final float secondCost = descendCost(second, leafOffset) + inheritanceCost;
+
+			if (cost < firstCost && cost < secondCost) {
+				break;
+			}
+			index = firstCost < secondCost ? first : second;
+		}
+		return index;
+	}
+
+	private float descendCost(final int child, final int leafOffset) {
+		final float combined = combinedArea(child, leafOffset);
+		return isLeaf(child) ? combined : combined - area(child);
+	}
+
+	private void removeLeaf(final int leaf) {
+		if (leaf == root) {
+			root = NULL_NODE;
+			return;
+		}
+		final int parent = parents[leaf];
+		final int grandParent = parents[parent];
+		final int sibling = firstChildren[parent] == leaf ? secondChildren[parent] : firstChildren[parent];
+
+		if (grandParent == NULL_NODE) {
+			root = sibling;
+			parents[sibling] = NULL_NODE;
+		} else {
+			if (firstChildren[grandParent] == parent) {
+				firstChildren[grandParent] = sibling;
+			} else {
+				secondChildren[grandParent] = sibling;
+			}
+			parents[sibling] = grandParent;
+			refitAncestors(grandParent);
+		}
+		freeNode(parent);
+	}
+
+	/**
+	 * walk up the tree, balancing and refitting every node
+	 *
+	 * @param start
+	 *            the first node to refit
+	 */
+	private void refitAncestors(final int start) {
+		int index = start;
+		while(index != NULL_NODE) {
+			index = balance(index);
+			final int first = firstChildren[index];
+			final int second = secondChildren[index];
+			heights[index] = 1 + java.lang.Math.max(heights[first], heights[second]);
+			combine(index, first, second);
+			index = parents[index];
+		}
+	}
+
+	/**
+	 * perform a left or right rotation if the node is imbalanced
+	 *
+	 * @param a
+	 *            the node to balance
+	 * @return the new root of this sub-tree
+	 */
+	private int balance(final int a) {
+		if (isLeaf(a) || heights[a] < 2) {
+			return a;
+		}
+		final int b = firstChildren[a];
+		final int c = secondChildren[a];
+		final int difference = heights[c] - heights[b];
+		if (difference > 1) {
+			return rotate(a, c, b, false);
+		}
+		if (difference < -1) {
+			return rotate(a, b, c, true);
+		}
+		return a;
+	}
+
+	/**
+	 * promote the higher child of a
+	 *
+	 * @param a
+	 *            the imbalanced node
+	 * @param up
+	 *            the higher child that gets promoted
+	 * @param other
+	 *            the other child of a
+	 * @param upIsFirst
+	 *            whether up is the first child of a
+	 * @return the promoted node
+	 */
+	private int rotate(final int a, final int up, final int other, final boolean upIsFirst) {
+		final int f = firstChildren[up];
+		final int g = secondChildren[up];
+
+		//swap a and up
+		firstChildren[up] = a;
+		parents[up] = parents[a];
+		parents[a] = up;
+
+		if (parents[up] == NULL_NODE) {
+			root = up;
+		} else if (firstChildren[parents[up]] == a) {
+			firstChildren[parents[up]] = up;
+		} else {
+			secondChildren[parents[up]] = up;
+		}
+
+		//keep the higher grandchild below up, move the other one to a
+		final int keep = heights[f] > heights[g] ? f : g;
+		final int move = keep == f ? g : f;
+		secondChildren[up] = keep;
+		if (upIsFirst) {
+			firstChildren[a] = move;
+		} else {
+			secondChildren[a] = move;
+		}
+		parents[move] = a;
+
+		combine(a, other, move);
+		combine(up, a, keep);
+		heights[a] = 1 + java.lang.Math.max(heights[other], heights[move]);
+		heights[up] = 1 + java.lang.Math.max(heights[a], heights[keep]);
+		return up;
+	}
+
+	//</editor-fold>
+
+	//<editor-fold desc="box math">
+
+	private void combine(final int target, final int first, final int second) {
+		final int t = target * BOX_FLOATS;
+		final int a = first * BOX_FLOATS;
+		final int b = second * BOX_FLOATS;
+		for (int i = 0; i < 3; i++) {
+			boxes[t + i] = java.lang.Math.min(boxes[a + i], boxes[b + i]);
+			boxes[t + 3 + i] = java.lang.Math.max(boxes[a + 3 + i], boxes[b + 3 + i]);
+		}
+	}
+
+	private float area(final int node) {
+		final int o = node * BOX_FLOATS;
+		return surfaceArea(boxes[o + 3] - boxes[o], boxes[o + 4] - boxes[o + 1], boxes[o + 5] - boxes[o + 2]);
+	}
+
+	private float combinedArea(final int node, final int otherOffset) {
+		final int o = node * BOX_FLOATS;
+		final float dx = java.lang.Math.max(boxes[o + 3], boxes[otherOffset + 3]) - java.lang.Math.min(boxes[o], boxes[otherOffset]);
+		final float dy = java.lang.Math.max(boxes[o + 4], boxes[otherOffset + 4]) - java.lang.Math.min(boxes[o + 1], boxes[otherOffset + 1]);
+		final float dz = java.lang.Math.max(boxes[o + 5], boxes[otherOffset + 5]) - java.lang.Math.min(boxes[o + 2], boxes[otherOffset + 2]);
+		return surfaceArea(dx, dy, dz);
+	}
+
+	private static float surfaceArea(final float dx, final float dy, final float dz) {
+		return 2 * (dx * dy + dy * dz + dz * dx);
+	}
+
+	//</editor-fold>
+
+	//<editor-fold desc="queries">
+
+	/**
+	 * report all leaves whose box intersects the frustum
+	 *
+	 * @param frustum
+	 *            the frustum to test against
+	 * @param callback
+	 *            receives the user value of every hit leaf
+	 */
+	public void queryFrustum(final FrustumIntersection frustum, final IntConsumer callback) {
+		int top = push(0, root);
+		while(top > 0) {
+			final int node = stack[--top];
+			final int o = node * BOX_FLOATS;
+			final int result = frustum.intersectAab(boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3], boxes[o + 4], boxes[o + 5]);
+			if (result == FrustumIntersection.INSIDE) {
+				reportAll(top, node, callback);
+			} else if (result == FrustumIntersection.INTERSECT) {
+				top = pushChildrenOrReport(top, node, callback);
+			}
+		}
+	}
+
+	/**
+	 * report all leaves whose box is hit by the ray
+	 *
+	 * @param origin
+	 *            the rays origin
+	 * @param direction
+	 *            the rays direction
+	 * @param callback
+	 *            receives the user value of every hit leaf
+	 */
+	public void queryRay(final Vector3f origin, final Vector3f direction, final IntConsumer callback) {
+		int top = push(0, root);
+		while(top > 0) {
+			final int node = stack[--top];
+			final int o = node * BOX_FLOATS;
+			if (Intersectionf.intersectRayAab(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z,
+					boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3], boxes[o + 4], boxes[o + 5], rayResult)) {
+				top = pushChildrenOrReport(top, node, callback);
+			}
+		}
+	}
+
+	/**
+	 * report all leaves whose box overlaps the given box
+	 *
+	 * @param min
+	 *            the minimum corner of the box
+	 * @param max
+	 *            the maximum corner of the box
+	 * @param callback
+	 *            receives the user value of every hit leaf
+	 */
+	public void queryOverlap(final Vector3f min, final Vector3f max, final IntConsumer callback) {
+		int top = push(0, root);
+		while(top > 0) {
+			final int node = stack[--top];
+			final int o = node * BOX_FLOATS;
+			if (Intersectionf.testAabAab(boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3], boxes[o + 4], boxes[o + 5],
+					min.x, min.y, min.z, max.x, max.y, max.z)) {
+				top = pushChildrenOrReport(top, node, callback);
+			}
+		}
+	}
+
+	/**
+	 * report all leaves of a sub-tree without any further tests
+	 *
+	 * @param base
+	 *            the current stack size (the nodes below are still pending)
+	 * @param subtreeRoot
+	 *            the sub-tree to report
+	 * @param callback
+	 *            receives the user value of every leaf
+	 */
+	private void reportAll(final int base, final int subtreeRoot, final IntConsumer callback) {
+		int top = push(base, subtreeRoot);
+		while(top > base) {
+			final int node = stack[--top];
+			top = pushChildrenOrReport(top, node, callback);
+		}
+	}
+
+	private int pushChildrenOrReport(final int top, final int node, final IntConsumer callback) {
+		if (isLeaf(node)) {
+			callback.accept(userData[node]);
+			return top;
+		}
+		return push(push(top, firstChildren[node]), secondChildren[node]);
+	}
+
+	private int push(final int top, final int node) {
+		if (node == NULL_NODE) {
+			return top;
+		}
+		if (top == stack.length) {
+			stack = Arrays.copyOf(stack, stack.length * 2);
+		}
+		stack[top] = node;
+		return top + 1;
+	}
+
+	//</editor-fold>
+}
@@ -0,0 +1,140 @@
+package mbeb.opengldefault.scene;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import mbeb.opengldefault.logging.Log;
+
+/**
+ * Updates a scene graph, running the sub-trees below marked boundary objects (see
+ * {@link SceneObject#setParallelUpdateBoundary(boolean)}) in parallel on a shared ForkJoinPool.
+ * Writes to shared services (GUI, sound, lights) from inside such a sub-tree should go through {@link #defer(Runnable)}:
+ * they are collected per sub-tree and executed afterwards on the updating thread, in the order of the sub-trees, so
+ * the results stay deterministic.
+ */
+public class ParallelUpdate {
+
+	private static final String TAG = "ParallelUpdate";
+
+	/** the parallel update that is currently running on this thread */
+	private static final ThreadLocal<ParallelUpdate> active = new ThreadLocal<>();
+	/** the deferred actions of the sub-tree task running on this thread */
+	private static final ThreadLocal<List<Runnable>> deferredActions = new ThreadLocal<>();
+
+	/** the pool running the sub-tree tasks */
+	private final ForkJoinPool pool;
+
+	/**
+	 * create a ParallelUpdate that uses the common ForkJoinPool
+	 */
+	public ParallelUpdate() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * create a ParallelUpdate that uses a specific pool
+	 *
+	 * @param pool
+	 *            the pool to run the sub-tree tasks on
+	 */
+	public ParallelUpdate(final ForkJoinPool pool) {
+		this.pool = Log.assertNotNull(TAG, pool);
+	}
+
+	/**
+	 * update a whole scene graph. Boundary sub-trees run in parallel, everything else runs on this thread
+	 *
+	 * @param root
+	 *            the root of the scene graph
+	 * @param deltaTime
+	 *            time since the last update
+	 */
+	public void update(final SceneObject root, final double deltaTime) {
+		final ParallelUpdate previous = active.get();
+		active.set(this);
+		try {
+			root.update(deltaTime);
+		} finally {
+			active.set(previous);
+		}
+	}
+
+	/**
+	 * @return the parallel update that is running on this thread, or null if there is none (or this thread
+	 *         already is a worker)
+	 */
+	static ParallelUpdate getActive() {
+		return active.get();
+	}
+
+	/**
+	 * update the sub-objects of a node: boundary objects get forked, the other ones run on this thread. Afterwards
+	 * the deferred actions of all forked sub-trees run in order.
+	 *
+	 * @param subObjects
+	 *            the sub-objects to update
+	 * @param deltaTime
+	 *            time since the last update
+	 */
+	void updateSubObjects(final List<SceneObject> subObjects, final double deltaTime) {
+		//deferred actions may change the scene graph, so work on a snapshot
+		final SceneObject[] objects = subObjects.toArray(new SceneObject[0]);
+		final List<ForkJoinTask<List<Runnable>>> tasks = new ArrayList<>();
+		for (final SceneObject object : objects) {
+			if (object.isParallelUpdateBoundary()) {
+				tasks.add(pool.submit(() -> updateDeferring(object, deltaTime)));
+			}
+		}
+		for (final SceneObject object : objects) {
+			if (!object.isParallelUpdateBoundary()) {
+				object.update(deltaTime);
+			}
+		}
+		for (final ForkJoinTask<List<Runnable>> task : tasks) {
+			for (final Runnable action : task.join()) {
+				action.run();
+			}
+		}
+	}
+
+	/**
+	 * update a boundary sub-tree on a worker, collecting all deferred actions
+	 *
+	 * @return the deferred actions of this sub-tree
+	 */
+	private static List<Runnable> updateDeferring(final SceneObject object, final double deltaTime) {
+		final List<Runnable> actions = new ArrayList<>();
+		deferredActions.set(actions);
+		try {
+			object.update(deltaTime);
+		} finally {
+			deferredActions.remove();
+		}
+		return actions;
+	}
+
+	/**
+	 * run an action that writes to shared state. Inside a parallel sub-tree it gets deferred until the sub-tree
+	 * tasks are joined, otherwise it runs immediately
+	 *
+	 * @param action
+	 *            the write to shared state
+	 */
+	public static void defer(final Runnable action) {
+		final List<Runnable> actions = deferredActions.get();
+		if (actions == null) {
+			action.run();
+		} else {
+			actions.add(action);
+		}
+	}
+
+	/**
+	 * @return true if this thread currently updates a parallel sub-tree
+	 */
+	public static boolean isDeferring() {
+		return deferredActions.get() != null;
+	}
+}
@@ -0,0 +1,467 @@
+package mbeb.opengldefault.scene;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import mbeb.opengldefault.gl.shader.ShaderProgram;
+import mbeb.opengldefault.gl.vao.VertexArray;
+import mbeb.opengldefault.rendering.renderable.IRenderable;
+import mbeb.opengldefault.rendering.renderable.MaterialRenderable;
+import mbeb.opengldefault.rendering.renderable.VAORenderable;
+import mbeb.opengldefault.scene.materials.Material;
+
+/**
+ * Collects the draw calls of a frame, sorts them by a packed 64-bit state key and submits them with as few
+ * shader, material and VAO switches as possible.
+ * Emitting and sorting never touch OpenGL, so the resulting command list can be inspected without a context.
+ *
+ * The key layout (most significant first) is:
+ * <pre>
+ * pass (4) | shader (10) | material (16) | VAO (16) | depth (18)
+ * </pre>
+ */
+public class RenderQueue {
+
+	private static final String TAG = "RenderQueue";
+
+	/** the default pass for opaque geometry */
+	public static final int PASS_OPAQUE = 0;
+	/** the pass for blended geometry. It is drawn after all opaque items and keeps the emission order */
+	public static final int PASS_TRANSPARENT = 1;
+
+	public static final int PASS_BITS = 4;
+	public static final int SHADER_BITS = 10;
+	public static final int MATERIAL_BITS = 16;
+	public static final int VAO_BITS = 16;
+	public static final int DEPTH_BITS = 18;
+
+	public static final int DEPTH_SHIFT = 0;
+	public static final int VAO_SHIFT = DEPTH_SHIFT + DEPTH_BITS;
+	public static final int MATERIAL_SHIFT = VAO_SHIFT + VAO_BITS;
+	public static final int SHADER_SHIFT = MATERIAL_SHIFT + MATERIAL_BITS;
+	public static final int PASS_SHIFT = SHADER_SHIFT + SHADER_BITS;
+
+	/** how many floats a single matrix takes */
+	private static final int MATRIX_FLOATS = 16;
+	/** the bits per radix sort digit */
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX_SIZE = 1 << RADIX_BITS;
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** the ids for the key components, assigned per frame. 0 is reserved for "none" */
+	private final Map<ShaderProgram, Integer> shaderIDs = new IdentityHashMap<>();
+	private final Map<Material, Integer> materialIDs = new IdentityHashMap<>();
+	private final Map<VertexArray, Integer> vaoIDs = new IdentityHashMap<>();
+
+	/** the amount of emitted items */
+	private int size;
+	/** the sort key of each item, in emission order */
+	private long[] keys;
+	private ShaderProgram[] shaders;
+	private IRenderable[] renderables;
+	/** the renderable that actually gets drawn (with the material already unwrapped) */
+	private IRenderable[] drawables;
+	private Material[] materials;
+	private String[] materialUniforms;
+	private VAORenderable[] vaoRenderables;
+	/** the model matrix of each item, 16 floats per item */
+	private float[] models;
+
+	/** the item indices in sorted order, and the matching keys */
+	private int[] order;
+	private long[] sortedKeys;
+	/** ping-pong buffers for the radix sort */
+	private int[] orderScratch;
+	private long[] keyScratch;
+	private final int[] counts = new int[RADIX_SIZE];
+
+	/** scratch matrix for submission */
+	private final Matrix4f model = new Matrix4f();
+
+	/** statistics of the last submit */
+	private int shaderSwitches;
+	private int materialSwitches;
+	private int vaoSwitches;
+
+	public RenderQueue() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * remove all items, keeping the allocated storage. The ids are dropped as well, so released GL objects do not
+	 * stay reachable
+	 */
+	public void clear() {
+		shaderIDs.clear();
+		materialIDs.clear();
+		vaoIDs.clear();
+		Arrays.fill(shaders, 0, size, null);
+		Arrays.fill(renderables, 0, size, null);
+		Arrays.fill(drawables, 0, size, null);
+		Arrays.fill(materials, 0, size, null);
+		Arrays.fill(materialUniforms, 0, size, null);
+		Arrays.fill(vaoRenderables, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * emit a draw item. MaterialRenderables and VAORenderables are unwrapped, so their state can be part of the key
+	 *
+	 * @param pass
+	 *            the render pass, lower passes get drawn first
+	 * @param shader
+	 *            the shader to draw with
+	 * @param renderable
+	 *            what to draw
+	 * @param modelTransform
+	 *            the model matrix for this item (copied)
+	 * @param depth
+	 *            the (non-negative) distance to the viewer, closer items get drawn first (ignored for
+	 *            {@link #PASS_TRANSPARENT})
+	 * @return the index of the new item
+	 */
+	public int add(final int pass, final ShaderProgram shader, final IRenderable renderable, final Matrix4f modelTransform, final float depth) {
+		if (size == keys.length) {
+			allocate(keys.length * 2);
+		}
+		final int index = size++;
+		shaders[index] = shader;
+		renderables[index] = renderable;
+
+		IRenderable drawn = renderable;
+		if (drawn instanceof MaterialRenderable) {
+			final MaterialRenderable materialRenderable = (MaterialRenderable) drawn;
+			materials[index] = materialRenderable.getMaterial();
+			materialUniforms[index] = materialRenderable.getUniformName();
+			drawn = materialRenderable.getWrappedRenderable();
+		}
+		drawables[index] = drawn;
+		if (drawn instanceof VAORenderable) {
+			vaoRenderables[index] = (VAORenderable) drawn;
+		}
+		modelTransform.get(models, index * MATRIX_FLOATS);
+
+		if (pass == PASS_TRANSPARENT) {
+			//the stable sort keeps equal keys in emission order
+			keys[index] = createKey(pass, 0, 0, 0, 0);
+		} else {
+			keys[index] = createKey(pass,
+					idFor(shaderIDs, shader),
+					idFor(materialIDs, materials[index]),
+					vaoRenderables[index] == null ? 0 : idFor(vaoIDs, vaoRenderables[index].getVAO()),
+					depth);
+		}
+		return index;
+	}
+
+	/**
+	 * pack the key components. Every component is masked to its bit width, so overflowing ids only cost
+	 * sort quality, never correctness (the submission compares the actual objects)
+	 *
+	 * @return the packed key
+	 */
+	public static long createKey(final int pass, final int shaderID, final int materialID, final int vaoID, final float depth) {
+		return field(pass, PASS_BITS, PASS_SHIFT)
+				| field(shaderID, SHADER_BITS, SHADER_SHIFT)
+				| field(materialID, MATERIAL_BITS, MATERIAL_SHIFT)
+				| field(vaoID, VAO_BITS, VAO_SHIFT)
+				| field(quantizeDepth(depth), DEPTH_BITS, DEPTH_SHIFT);
+	}
+
+	private static long field(final int value, final int bits, final int shift) {
+		return (value & ((1L << bits) - 1)) << shift;
+	}
+
+	/**
+	 * The bit pattern of a non-negative float grows monotonically with its value, so its upper bits can be used as
+	 * a depth key without knowing the depth range
+	 *
+	 * @param depth
+	 *            a distance
+	 * @return the upper DEPTH_BITS of the float bits
+	 */
+	public static int quantizeDepth(final float depth) {
+		final float positive = depth > 0 ? depth : 0;
+		return Float.floatToIntBits(positive) >>> (Float.SIZE - 1 - DEPTH_BITS);
+	}
+
+	/**
+	 * extract a component from a packed key
+	 *
+	 * @param key
+	 *            the packed key
+	 * @param bits
+	 *            the components width
+	 * @param shift
+	 *            the components offset
+	 * @return the component value
+	 */
+	public static int getKeyField(final long key, final int bits, final int shift) {
+		return (int) ((key >>> shift) & ((1L << bits) - 1));
+	}
+
+	private static <T> int idFor(final Map<T, Integer> ids, final T object) {
+		if (object == null) {
+			return 0;
+		}
+		Integer id = ids.get(object);
+		if (id == null) {
+			id = ids.size() + 1;
+			ids.put(object, id);
+		}
+		return id;
+	}
+
+	/**
+	 * sort all emitted items by their keys with a stable LSD radix sort. Digits that are equal for all items get
+	 * skipped, so mostly uniform keys cost few passes
+	 */
+	public void sort() {
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+			sortedKeys[i] = keys[i];
+		}
+		int[] sourceOrder = order;
+		long[] sourceKeys = sortedKeys;
+		int[] targetOrder = orderScratch;
+		long[] targetKeys = keyScratch;
+
+		for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+			Arrays.fill(counts, 0);
+			for (int i = 0; i < size; i++) {
+				counts[(int) ((sourceKeys[i] >>> shift) & (RADIX_SIZE - 1))]++;
+			}
+			if (size == 0 || counts[(int) ((sourceKeys[0] >>> shift) & (RADIX_SIZE - 1))] == size) {
+				continue;
+			}
+			int total = 0;
+			for (int digit = 0; digit < RADIX_SIZE; digit++) {
+				final int count = counts[digit];
+				counts[digit] = total;
+				total += count;
+			}
+			for (int i = 0; i < size; i++) {
+				final int target = counts[(int) ((sourceKeys[i] >>> shift) & (RADIX_SIZE - 1))]++;
+				targetOrder[target] = sourceOrder[i];
+				targetKeys[target] = sourceKeys[i];
+			}
+			final int[] swapOrder = sourceOrder;
+			sourceOrder = targetOrder;
+			targetOrder = swapOrder;
+			final long[] swapKeys = sourceKeys;
+			sourceKeys = targetKeys;
+			targetKeys = swapKeys;
+		}
+
+		if (sourceOrder != order) {
+			orderScratch = order;
+			keyScratch = sortedKeys;
+			order = sourceOrder;
+			sortedKeys = sourceKeys;
+		}
+	}
+
+	/**
+	 * draw all items in sorted order. Shaders, materials and VAOs only get switched when they differ from the
+	 * previous item
+	 *
+	 * @param viewPosition
+	 *            the camera position, uploaded once per shader switch
+	 */
+	public void submit(final Vector3f viewPosition) {
+		shaderSwitches = 0;
+		materialSwitches = 0;
+		vaoSwitches = 0;
+
+		ShaderProgram currentShader = null;
+		Material currentMaterial = null;
+		VertexArray currentVAO = null;
+
+		for (int i = 0; i < size; i++) {
+			final int item = order[i];
+			final ShaderProgram shader = shaders[item];
+			final Material material = materials[item];
+			final VAORenderable vaoRenderable = vaoRenderables[item];
+
+			final boolean shaderChanged = shader != currentShader;
+			if (shaderChanged) {
+				shader.use();
+				shader.setUniform(SceneGraphRenderer.ViewPosUniformName, viewPosition, true);
+				currentShader = shader;
+				shaderSwitches++;
+			}
+			final boolean materialChanged = material != currentMaterial;
+			if (materialChanged) {
+				if (currentMaterial != null) {
+					currentMaterial.unbind();
+				}
+				if (material != null) {
+					material.bind();
+				}
+				currentMaterial = material;
+				materialSwitches++;
+			}
+			if (material != null && (shaderChanged || materialChanged)) {
+				material.setUniform(shader, materialUniforms[item]);
+			}
+
+			shader.setUniform(SceneGraphRenderer.ModelMatrixUniformName, model.set(models, item * MATRIX_FLOATS), true);
+
+			if (vaoRenderable != null) {
+				final VertexArray vao = vaoRenderable.getVAO();
+				if (vao != currentVAO) {
+					vao.bind();
+					currentVAO = vao;
+					vaoSwitches++;
+				}
+				vaoRenderable.draw(shader);
+			} else {
+				if (currentVAO != null) {
+					currentVAO.unbind();
+					currentVAO = null;
+				}
+				drawables[item].render(shader);
+			}
+		}
+
+		if (currentVAO != null) {
+			currentVAO.unbind();
+		}
+		if (currentMaterial != null) {
+			currentMaterial.unbind();
+		}
+	}
+
+	/**
+	 * grow all the arrays to the given capacity
+	 *
+	 * @param capacity
+	 *            the new amount of items
+	 */
+	private void allocate(final int capacity) {
+		if (keys == null) {
+			keys = new long[capacity];
+			shaders = new ShaderProgram[capacity];
+			renderables = new IRenderable[capacity];
+			drawables = new IRenderable[capacity];
+			materials = new Material[capacity];
+			materialUniforms = new String[capacity];
+			vaoRenderables = new VAORenderable[capacity];
+			models = new float[capacity * MATRIX_FLOATS];
+		} else {
+			keys = Arrays.copyOf(keys, capacity);
+			shaders = Arrays.copyOf(shaders, capacity);
+			renderables = Arrays.copyOf(renderables, capacity);
+			drawables = Arrays.copyOf(drawables, capacity);
+			materials = Arrays.copyOf(materials, capacity);
+			materialUniforms = Arrays.copyOf(materialUniforms, capacity);
+			vaoRenderables = Arrays.copyOf(vaoRenderables, capacity);
+			models = Arrays.copyOf(models, capacity * MATRIX_FLOATS);
+		}
+		order = new int[capacity];
+		sortedKeys = new long[capacity];
+		orderScratch = new int[capacity];
+		keyScratch = new long[capacity];
+	}
+
+	//<editor-fold desc="Command list">
+
+	/**
+	 * @return the amount of emitted items
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param item
+	 *            an item index in emission order
+	 * @return the items sort key
+	 */
+	public long getKey(final int item) {
+		return keys[item];
+	}
+
+	/**
+	 * @param item
+	 *            an item index in emission order
+	 * @return the IRenderable the item was emitted with
+	 */
+	public IRenderable getRenderable(final int item) {
+		return renderables[item];
+	}
+
+	/**
+	 * @param item
+	 *            an item index in emission order
+	 * @return the shader of the item
+	 */
+	public ShaderProgram getShader(final int item) {
+		return shaders[item];
+	}
+
+	/**
+	 * @param item
+	 *            an item index in emission order
+	 * @return the unwrapped Material of the item, or null
+	 */
+	public Material getMaterial(final int item) {
+		return materials[item];
+	}
+
+	/**
+	 * @param item
+	 *            an item index in emission order
+	 * @param dest
+	 *            where to store the matrix
+	 * @return dest
+	 */
+	public Matrix4f getModelTransform(final int item, final Matrix4f dest) {
+		return dest.set(models, item * MATRIX_FLOATS);
+	}
+
+	/**
+	 * @param position
+	 *            a position in the sorted command list (valid after {@link #sort()})
+	 * @return the item index drawn at that position
+	 */
+	public int getSortedItem(final int position) {
+		return order[position];
+	}
+
+	/**
+	 * @param position
+	 *            a position in the sorted command list (valid after {@link #sort()})
+	 * @return the key drawn at that position
+	 */
+	public long getSortedKey(final int position) {
+		return sortedKeys[position];
+	}
+
+	/**
+	 * @return how many shader switches the last submit needed
+	 */
+	public int getShaderSwitches() {
+		return shaderSwitches;
+	}
+
+	/**
+	 * @return how many material switches the last submit needed
+	 */
+	public int getMaterialSwitches() {
+		return materialSwitches;
+	}
+
+	/**
+	 * @return how many VAO switches the last submit needed
+	 */
+	public int getVAOSwitches() {
+		return vaoSwitches;
+	}
+
+	//</editor-fold>
+}
@@ -1,5 +1,6 @@
 package mbeb.opengldefault.scene;
 
+import mbeb.opengldefault.animation.PoseEvaluator;
 import mbeb.opengldefault.logging.Log;
 import mbeb.opengldefault.sound.SoundEnvironment;
 import org.joml.*;
@@ -23,6 +24,10 @@ public class Scene {
 	private final SceneObject sceneGraphRoot;
 	private Camera camera;
 	private Skybox skybox;
+	/** the parallel update for the scene graph, or null to update on a single thread */
+	private ParallelUpdate parallelUpdate;
+	/** evaluates the poses of animated renderables after the update, or null to evaluate them lazily */
+	private PoseEvaluator poseEvaluator;
 
 	public Scene(final Camera camera) {
 		this(camera, null);
@@ -39,8 +44,9 @@ public class Scene {
 
 		this.lightManager = new LightManager();
 		this.sceneGraphRoot = new SceneObject();
-		renderer = new SceneGraphRenderer(sceneGraphRoot, camera);
-		boundingBoxRenderer = new BoundingBoxRenderer(sceneGraphRoot, camera);
+		final TransformStore transforms = new TransformStore(sceneGraphRoot);
+		renderer = new SceneGraphRenderer(transforms, camera);
+		boundingBoxRenderer = new BoundingBoxRenderer(transforms, camera);
 	}
 
 	public void setCamera(Camera camera) {
@@ -69,7 +75,43 @@ public class Scene {
 	public void update(final double deltaTime) {
 		camera.update(deltaTime);
 		lightManager.update(deltaTime);
-		sceneGraphRoot.update(deltaTime);
+		if (parallelUpdate != null) {
+			parallelUpdate.update(sceneGraphRoot, deltaTime);
+		} else {
+			sceneGraphRoot.update(deltaTime);
+		}
+		if (poseEvaluator != null) {
+			poseEvaluator.evaluate(sceneGraphRoot, camera.getEye());
+		}
+	}
+
+	/**
+	 * @param parallelUpdate
+	 *            a ParallelUpdate to update the scene graph with, or null to update on a single thread
+	 */
+	public void setParallelUpdate(final ParallelUpdate parallelUpdate) {
+		this.parallelUpdate = parallelUpdate;
+	}
+
+	public ParallelUpdate getParallelUpdate() {
+		return parallelUpdate;
+	}
+
+	/**
+	 * @param poseEvaluator
+	 *            a PoseEvaluator to evaluate all visible poses at the end of the update, or null to evaluate them
+	 *            lazily while rendering
+	 */
+	public void setPoseEvaluator(final PoseEvaluator poseEvaluator) {
+		this.poseEvaluator = poseEvaluator;
+	}
+
+	public PoseEvaluator getPoseEvaluator() {
+		return poseEvaluator;
+	}
+
+	public Skybox getSkybox() {
+		return skybox;
 	}
 
 	public void setSkybox(final Skybox skybox) {
@@ -87,6 +129,8 @@ public class Scene {
 	 *            true to also display bounding boxes
 	 */
 	public void render(final boolean renderBoundingBoxes) {
+		//all updates of this frame are done, so the moved bounds can be refit in one batch
+		sceneGraphRoot.refitBounds();
 		camera.use();
 		renderer.render();
 		if (renderBoundingBoxes) {
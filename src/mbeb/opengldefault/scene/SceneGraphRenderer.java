@@ -1,7 +1,5 @@
 package mbeb.opengldefault.scene;
 
-import java.util.*;
-
 import org.joml.*;
 
 import mbeb.opengldefault.camera.*;
@@ -20,6 +18,14 @@ public class SceneGraphRenderer {
 
 	protected final SceneObject root;
 	protected final Camera camera;
+	/** the flattened global transformations of the scenegraph */
+	protected final TransformStore transforms;
+	/** collects the draw calls of a frame so they can be submitted in state order */
+	protected final RenderQueue queue = new RenderQueue();
+
+	/** scratch matrices, reused for every rendered object */
+	private final Matrix4f globalTransform = new Matrix4f();
+	private final Matrix4f modelTransform = new Matrix4f();
 
 	/**
 	 * create a new renderer for the given SceneGraph and Camera
@@ -28,64 +34,87 @@ public class SceneGraphRenderer {
 	 * @param camera
 	 */
 	public SceneGraphRenderer(final SceneObject root, final Camera camera) {
-		this.root = root;
+		this(new TransformStore(root), camera);
+	}
+
+	/**
+	 * create a new renderer that shares a TransformStore with other renderers of the same SceneGraph
+	 *
+	 * @param transforms
+	 *            the TransformStore of the SceneGraph to render
+	 * @param camera
+	 */
+	public SceneGraphRenderer(final TransformStore transforms, final Camera camera) {
+		this.root = transforms.getRoot();
+		this.transforms = transforms;
 		this.camera = camera;
 	}
 
 	/**
-	 * render the whole scenegraph
+	 * render the whole scenegraph: one linear pass over the TransformStore emits the draw calls, which then get
+	 * sorted and submitted by the RenderQueue
 	 */
 	public void render() {
-		renderObject(root, new Matrix4f());
+		transforms.update();
+		queue.clear();
+		int index = 0;
+		while(index < transforms.size()) {
+			if (isSubtreeVisible(index)) {
+				renderSelf(transforms.getObject(index), transforms.getShader(index), transforms.getGlobalTransform(index, globalTransform));
+				index++;
+			} else {
+				index = transforms.getSubtreeEnd(index);
+			}
+		}
+		queue.sort();
+		queue.submit(camera.getEye());
+	}
+
+	/**
+	 * @return the queue holding the draw calls of the last frame
+	 */
+	public RenderQueue getRenderQueue() {
+		return queue;
 	}
 
 	/**
-	 * renders a given sub-graph with a parent-transformation
-	 *
 	 * @param object
-	 *            the sub-scenegraph to render
-	 * @param parentTransform
-	 *            the parent transformation for this graph
+	 *            an object that is about to be drawn
+	 * @return the RenderQueue pass for this object
 	 */
-	public void renderObject(final SceneObject object, final Matrix4f parentTransform) {
-		if (!object.isVisible()) {
-			return;
-		}
-		final Matrix4f transform = parentTransform.mul(object.getTransformation().asMatrix(), new Matrix4f());
-		renderSelf(object, transform);
-		final Collection<SceneObject> subObjects = object.getSubObjects();
-		if (subObjects != null) {
-			for (final SceneObject subObject : subObjects) {
-				renderObject(subObject, transform);
-			}
-		}
+	protected int getPass(final SceneObject object) {
+		return object.isTransparent() ? RenderQueue.PASS_TRANSPARENT : RenderQueue.PASS_OPAQUE;
+	}
+
+	/**
+	 * check whether a node (and therefore its whole sub-tree) should be rendered
+	 *
+	 * @param index
+	 *            the node index inside the TransformStore
+	 * @return false to skip the whole sub-tree
+	 */
+	protected boolean isSubtreeVisible(final int index) {
+		return transforms.getObject(index).isVisible();
 	}
 
 	/**
-	 * render the IRenderable of an object
+	 * emit the IRenderable of an object into the RenderQueue
 	 *
 	 * @param object
 	 *            the object which should be rendered
+	 * @param shader
+	 *            the (possibly inherited) shader of the object
 	 * @param transform
 	 *            the model-Transformation for this Renderable
 	 */
-	public void renderSelf(final SceneObject object, final Matrix4f transform) {
-		final ShaderProgram shader = object.getShader();
-		if (shader == null) {
-			return;
-		}
-		shader.use();
-		if (object.hasOwnShader()) {
-			final Vector3f position = camera.getEye();
-			shader.setUniform(ViewPosUniformName, position, true);
-		}
+	public void renderSelf(final SceneObject object, final ShaderProgram shader, final Matrix4f transform) {
 		final IRenderable renderable = object.getRenderable();
-		if (renderable == null) {
+		if (shader == null || renderable == null) {
 			return;
 		}
-		final Matrix4f model = transform.mul(renderable.getTransform());
-		shader.setUniform(ModelMatrixUniformName, model, true);
-
-		renderable.render(shader);
+		final Matrix4f model = transform.mul(renderable.getTransform(), modelTransform);
+		final Vector3f eye = camera.getEye();
+		final float depth = eye.distance(model.m30(), model.m31(), model.m32());
+		queue.add(getPass(object), shader, renderable, model, depth);
 	}
 }
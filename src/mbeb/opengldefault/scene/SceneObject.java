@@ -1,6 +1,7 @@
 package mbeb.opengldefault.scene;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 import mbeb.opengldefault.scene.entities.IEntity;
 import mbeb.opengldefault.scene.entities.IEntityConvertable;
@@ -8,6 +9,7 @@ import mbeb.opengldefault.scene.entities.SceneEntity;
 import org.joml.*;
 
 import mbeb.opengldefault.animation.*;
+import mbeb.opengldefault.logging.*;
 import mbeb.opengldefault.rendering.renderable.*;
 import mbeb.opengldefault.gl.shader.*;
 
@@ -36,6 +38,27 @@ public class SceneObject implements BoundingBox.Owner, IEntityConvertable {
 	private boolean selected;
 	/** false to not render this sub-tree */
 	private boolean visible = true;
+	/** true if this objects renderable gets blended, so it has to be drawn after the opaque objects */
+	private boolean transparent = false;
+	/** incremented whenever the local transformation changes */
+	private int transformVersion = 0;
+	/** incremented whenever objects are added or removed in this sub-tree */
+	private int structureVersion = 0;
+	/** true if this objects box may have changed inside the parents space (moved or grown) */
+	private boolean boundsMoved = false;
+	/** true if some descendant has moved bounds, so the next refit has to visit this sub-tree */
+	private boolean boundsDirty = false;
+	/**
+	 * true if the next refit has to recalculate this box completely (the renderables box changed, or a child that
+	 * reached the border was removed)
+	 */
+	private boolean boundsRecalculate = false;
+	/** the extents of this box in the parents space, when the parent box was last fitted around it (null if unknown) */
+	private Vector3f fittedMin, fittedMax;
+	/** true if a {@link ParallelUpdate} should update this sub-tree as an own task */
+	private boolean parallelUpdateBoundary = false;
+	/** true if this sub-tree is an immutable template, that may be shared by multiple parents */
+	private boolean template = false;
 
 	/**
 	 * Create a new sceneObject. All parameters are optional
@@ -114,6 +137,9 @@ public class SceneObject implements BoundingBox.Owner, IEntityConvertable {
 	}
 
 	public void setVisible(boolean visible) {
+		if (checkTemplate()) {
+			return;
+		}
 		this.visible = visible;
 	}
 
@@ -121,6 +147,26 @@ public class SceneObject implements BoundingBox.Owner, IEntityConvertable {
 		return visible;
 	}
 
+	/**
+	 * @return true if this objects renderable is drawn after all opaque objects, in scene graph order
+	 */
+	public boolean isTransparent() {
+		return transparent;
+	}
+
+	/**
+	 * mark this objects renderable as blended. Opaque objects are drawn sorted by their render state, transparent
+	 * ones afterwards and in scene graph order
+	 *
+	 * @param transparent
+	 */
+	public void setTransparent(boolean transparent) {
+		if (checkTemplate()) {
+			return;
+		}
+		this.transparent = transparent;
+	}
+
 	public SceneObject(SceneObject source) {
 		this.shader = source.shader;
 		this.renderable = source.renderable;
@@ -130,6 +176,7 @@ public class SceneObject implements BoundingBox.Owner, IEntityConvertable {
 		this.transformation = new BoneTransformation(source.transformation);
 		this.selected = false;
 		this.visible = source.visible;
+		this.transparent = source.transparent;
 		for (SceneObject su : source.getSubObjects()) {
 			this.addSubObject(new SceneObject(su));
 		}
@@ -146,9 +193,112 @@ public class SceneObject implements BoundingBox.Owner, IEntityConvertable {
 	}
 
 	public void setTransformation(BoneTransformation transformation) {
+		if (checkTemplate()) {
+			return;
+		}
 		this.transformation = transformation;
+		transformVersion++;
+		boundsMoved();
 	}
 
+	/**
+	 * @return a counter that changes whenever this objects local transformation changes
+	 */
+	public int getTransformVersion() {
+		return transformVersion;
+	}
+
+	/**
+	 * @return a counter that changes whenever objects are added to or removed from this sub-tree
+	 */
+	public int getStructureVersion() {
+		return structureVersion;
+	}
+
+	/**
+	 * notify this object and all its ancestors that the structure of their sub-tree changed
+	 */
+	private void structureChanged() {
+		structureVersion++;
+		changeParent(SceneObject::structureChanged);
+	}
+
+	/**
+	 * apply a change to the parent of this object. If this object is the root of a sub-tree that currently gets
+	 * updated on a worker, the parent is shared with other tasks, so the change is deferred until they are joined
+	 * (see {@link ParallelUpdate#defer(Runnable)})
+	 *
+	 * @param change
+	 *            the change to apply to the parent
+	 */
+	private void changeParent(final Consumer<SceneObject> change) {
+		final SceneObject target = parent;
+		if (target == null) {
+			return;
+		}
+		if (parallelUpdateBoundary && ParallelUpdate.isDeferring()) {
+			ParallelUpdate.defer(() -> change.accept(target));
+		} else {
+			change.accept(target);
+		}
+	}
+
+	//<editor-fold desc="Templates">
+
+	/**
+	 * freeze this sub-tree into an immutable template. A template can be added to any number of parents (it does not
+	 * remember them), or be copied cheaply with {@link #instantiate()}. Templates are not updated.
+	 *
+	 * @return this
+	 */
+	public SceneObject asTemplate() {
+		template = true;
+		getSubObjects().forEach(SceneObject::asTemplate);
+		//calculate the box now, so the shared instance never changes later
+		getBoundingBox();
+		return this;
+	}
+
+	/**
+	 * @return true if this object belongs to an immutable template sub-tree
+	 */
+	public boolean isTemplate() {
+		return template;
+	}
+
+	/**
+	 * create a light-weight instance of this template: a new object with the same renderable, shader and visibility
+	 * and its own copy of the transformation, but sharing the sub-objects of this template instead of copying them.
+	 * The state of the instance can be changed without affecting the template.
+	 *
+	 * @return a new, mutable SceneObject
+	 */
+	public SceneObject instantiate() {
+		Log.assertTrue(TAG, template, "Only templates can be instantiated");
+		final SceneObject instance = new SceneObject(renderable, new BoneTransformation(getTransformation()), null);
+		instance.shader = shader;
+		instance.visible = visible;
+		instance.transparent = transparent;
+		for (SceneObject subObject : getSubObjects()) {
+			instance.addSubObject(subObject);
+		}
+		return instance;
+	}
+
+	/**
+	 * log an error if this object is part of a template
+	 *
+	 * @return true if this object may not be changed
+	 */
+	private boolean checkTemplate() {
+		if (template) {
+			Log.error(TAG, "Templates can not be changed");
+		}
+		return template;
+	}
+
+	//</editor-fold>
+
 	public void removeSelf() {
 		if (parent != null) {
 			parent.removeSubObject(this);
@@ -174,21 +324,32 @@ public class SceneObject implements BoundingBox.Owner, IEntityConvertable {
 	 *            the new object to add
 	 */
 	public void addSubObject(SceneObject object) {
+		if (checkTemplate()) {
+			return;
+		}
 		getSubObjects().add(object);
 		object.setParent(this);
 		adjustBoundingBoxFor(object);
+		boundsMoved();
+		structureChanged();
 	}
 
 	/**
-	 * add a new Scene-Object as child of this one to the scene, but render it before the other children
+	 * add a new Scene-Object as child of this one to the scene, but render it before the other children. Only
+	 * transparent objects are drawn in scene graph order, opaque ones are sorted by their render state
 	 *
 	 * @param object
 	 *            the new object to add
 	 */
 	public void addSubObjectFront(SceneObject object) {
+		if (checkTemplate()) {
+			return;
+		}
 		getSubObjects().add(0, object);
 		object.setParent(this);
 		adjustBoundingBoxFor(object);
+		boundsMoved();
+		structureChanged();
 	}
 
 	/**
@@ -209,11 +370,15 @@ public class SceneObject implements BoundingBox.Owner, IEntityConvertable {
 	}
 
 	private void setParent(SceneObject parent) {
-		this.parent = parent;
+		//templates are shared between multiple parents
+		if (!template) {
+			this.parent = parent;
+		}
 	}
 
 	/**
-	 * get the shader this object should use (asking the parent if needed)
+	 * get the shader this object should use (asking the parent if needed). Templates have no parent, renderers
+	 * resolve their inherited shader with {@link TransformStore#getShader(int)}
 	 *
 	 * @return
 	 */
@@ -247,11 +412,52 @@ public class SceneObject implements BoundingBox.Owner, IEntityConvertable {
 	 *            time since the last update
 	 */
 	public void update(double deltaTime) {
+		if (template) {
+			return;
+		}
 		if (getRenderable() != null) {
 			getRenderable().update(deltaTime);
+			if (getRenderable().hasAnimations()) {
+				//the box follows the current pose
+				boundsRecalculate = true;
+				markBoundsDirty();
+			}
+		}
+		updateSubObjects(deltaTime);
+	}
+
+	/**
+	 * update all sub-objects, splitting off the boundary sub-trees if a parallel update is running
+	 *
+	 * @param deltaTime
+	 *            time since the last update
+	 */
+	protected void updateSubObjects(double deltaTime) {
+		final ParallelUpdate parallelUpdate = ParallelUpdate.getActive();
+		if (parallelUpdate != null) {
+			parallelUpdate.updateSubObjects(getSubObjects(), deltaTime);
+		} else {
+			getSubObjects().forEach((obj) -> obj.update(deltaTime));
 		}
-		getSubObjects().forEach((obj) -> obj.update(deltaTime));
+	}
 
+	/**
+	 * @return true if a parallel update runs this sub-tree as an own task
+	 */
+	public boolean isParallelUpdateBoundary() {
+		return parallelUpdateBoundary;
+	}
+
+	/**
+	 * mark this sub-tree as an own task for parallel updates. It must only write to state outside of itself through
+	 * {@link ParallelUpdate#defer(Runnable)}. The structure versions and bounds marks of the ancestors get deferred
+	 * automatically
+	 *
+	 * @param parallelUpdateBoundary
+	 *            whether to split the update here
+	 */
+	public void setParallelUpdateBoundary(boolean parallelUpdateBoundary) {
+		this.parallelUpdateBoundary = parallelUpdateBoundary;
 	}
 
 	//<editor-fold defaultstate="collapsed" desc="BoundingBox">
@@ -269,13 +475,14 @@ public class SceneObject implements BoundingBox.Owner, IEntityConvertable {
 	}
 
 	/**
-	 * calculate the boundingBox of just the renderable
+	 * calculate the boundingBox of the current state of just the renderable, as a copy owned by this object (so it can
+	 * grow in place)
 	 */
 	private BoundingBox getRenderableBoundingBox() {
 		if (renderable == null) {
 			return new BoundingBox.Empty(getTransformation().asMatrix());
 		}
-		return renderable.getBoundingBox();
+		return renderable.getCurrentBoundingBox().duplicate();
 	}
 
 	/**
@@ -304,7 +511,111 @@ public class SceneObject implements BoundingBox.Owner, IEntityConvertable {
 		if (object.getBoundingBox() == null) {
 			return;
 		}
-		box = box.unionWith(object.getBoundingBox());
+		box = box.include(object.getBoundingBox());
+		object.rememberFittedExtents();
+	}
+
+	/**
+	 * store the current extents of this box in the parents space, to know later whether it reached the parents border.
+	 * Templates may be shared by multiple parents, so their extents are left unknown
+	 */
+	private void rememberFittedExtents() {
+		if (template || box == null || box.isEmpty()) {
+			fittedMin = null;
+			fittedMax = null;
+			return;
+		}
+		if (fittedMin == null) {
+			fittedMin = new Vector3f();
+			fittedMax = new Vector3f();
+		}
+		box.getParentGlobalExtents(fittedMin, fittedMax);
+	}
+
+	/**
+	 * @param object
+	 *            a child of this object
+	 * @return true if the box of the child reached the border of this box when it was last fitted (or if that is
+	 *         unknown), so this box might have to shrink once the child moves away
+	 */
+	private boolean wasFittedAgainst(SceneObject object) {
+		return object.fittedMin == null || box.touches(object.fittedMin, object.fittedMax);
+	}
+
+	/**
+	 * remember that this objects box changed relative to its parent, and mark the path to the root for the next
+	 * {@link #refitBounds()}
+	 */
+	private void boundsMoved() {
+		boundsMoved = true;
+		changeParent(SceneObject::markBoundsDirty);
+	}
+
+	/**
+	 * mark the path from this object to the root for the next {@link #refitBounds()}. The walk stops at the first
+	 * object that is already marked
+	 */
+	private void markBoundsDirty() {
+		if (boundsDirty) {
+			return;
+		}
+		boundsDirty = true;
+		changeParent(SceneObject::markBoundsDirty);
+	}
+
+	/**
+	 * batched refit of all boundingBoxes that were affected by moved objects since the last refit.
+	 * Only marked sub-trees are visited. A parent box is grown if it does not contain the moved child anymore, and
+	 * recalculated from its children if the child used to reach its border (or a child like that was removed, or the
+	 * box of its own renderable changed, like for animations). So the refit stops early for objects that move inside
+	 * their parents bounds
+	 */
+	public void refitBounds() {
+		refitBounds(new Vector3f(), new Vector3f());
+	}
+
+	/**
+	 * @param min
+	 *            scratch storage
+	 * @param max
+	 *            scratch storage
+	 */
+	private void refitBounds(final Vector3f min, final Vector3f max) {
+		if (!boundsDirty) {
+			return;
+		}
+		boundsDirty = false;
+		boolean recalculate = boundsRecalculate;
+		boundsRecalculate = false;
+		for (SceneObject subObject : getSubObjects()) {
+			subObject.refitBounds(min, max);
+			if (!subObject.boundsMoved) {
+				continue;
+			}
+			subObject.boundsMoved = false;
+			if (box == null || recalculate) {
+				//will be calculated completely
+				continue;
+			}
+			if (wasFittedAgainst(subObject)) {
+				recalculate = true;
+				continue;
+			}
+			final BoundingBox childBox = subObject.getBoundingBox();
+			if (childBox.isEmpty()) {
+				continue;
+			}
+			childBox.getParentGlobalExtents(min, max);
+			if (!box.contains(min, max)) {
+				box = box.include(childBox);
+				boundsMoved = true;
+			}
+			subObject.rememberFittedExtents();
+		}
+		if (recalculate && box != null) {
+			reCalculateBoundingBox();
+			boundsMoved = true;
+		}
 	}
 
 	//</editor-fold>
@@ -317,11 +628,15 @@ public class SceneObject implements BoundingBox.Owner, IEntityConvertable {
 	}
 
 	/**
-	 * Getter for the global Transformation
+	 * Getter for the global Transformation. Templates are shared and have no single global transformation, use
+	 * {@link TransformStore#getGlobalTransform(int, Matrix4f)} for them
 	 *
 	 * @return global Transformation
 	 */
 	public BoneTransformation getGlobalTransformation() {
+		if (template) {
+			Log.error(TAG, "Templates have no single global transformation");
+		}
 		if (globalTransformation == null) {
 			if (parent == null) {
 				globalTransformation = getTransformation();
@@ -333,9 +648,22 @@ public class SceneObject implements BoundingBox.Owner, IEntityConvertable {
 	}
 
 	public void invalidateGlobalTransformation() {
+		boundsMoved();
+		invalidateGlobalCache();
+	}
+
+	/**
+	 * drop the cached global transformation of this sub-tree. The boundingBoxes are in local space, so they stay
+	 * valid
+	 */
+	private void invalidateGlobalCache() {
+		if (template) {
+			//shared sub-trees have no single global transformation
+			return;
+		}
 		globalTransformation = null;
-		box = null;
-		getSubObjects().forEach(SceneObject::invalidateGlobalTransformation);
+		transformVersion++;
+		getSubObjects().forEach(SceneObject::invalidateGlobalCache);
 	}
 
 	/**
@@ -366,7 +694,18 @@ public class SceneObject implements BoundingBox.Owner, IEntityConvertable {
 	}
 
 	public void removeSubObject(SceneObject curveObj) {
-		if (!subObjects.remove(curveObj)) {
+		if (template) {
+			return;
+		}
+		if (subObjects.remove(curveObj)) {
+			if (box != null && wasFittedAgainst(curveObj)) {
+				boundsRecalculate = true;
+				markBoundsDirty();
+			}
+			curveObj.fittedMin = null;
+			curveObj.fittedMax = null;
+			structureChanged();
+		} else {
 			for (SceneObject sceneObject : subObjects) {
 				sceneObject.removeSubObject(curveObj);
 			}
@@ -0,0 +1,175 @@
+package mbeb.opengldefault.scene;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import mbeb.opengldefault.rendering.renderable.IRenderable;
+
+/**
+ * A {@link DynamicAABBTree} over all the renderables of a scene graph, kept in sync with a {@link TransformStore}.
+ * All queries report node indices of the TransformStore.
+ */
+public class SceneSpatialIndex {
+
+	private final TransformStore transforms;
+	private final DynamicAABBTree tree;
+
+	/** the layout version of the TransformStore the proxies were created for */
+	private int syncedLayoutVersion;
+	/** the tree proxy of each node, or NULL_NODE for nodes without a (bounded) renderable */
+	private int[] proxies = new int[0];
+	/** the global version of each node in the TransformStore when its proxy was last moved */
+	private int[] syncedVersions = new int[0];
+	/** nodes with a renderable but without a BoundingBox. They are always reported as visible */
+	private int[] unboundedNodes = new int[0];
+	private int unboundedCount;
+
+	/** scratch data */
+	private final Matrix4f globalTransform = new Matrix4f();
+	private final Vector3f globalMin = new Vector3f();
+	private final Vector3f globalMax = new Vector3f();
+
+	public SceneSpatialIndex(final TransformStore transforms) {
+		this(transforms, new DynamicAABBTree());
+	}
+
+	public SceneSpatialIndex(final TransformStore transforms, final DynamicAABBTree tree) {
+		this.transforms = transforms;
+		this.tree = tree;
+		this.syncedLayoutVersion = transforms.getLayoutVersion() - 1;
+	}
+
+	public TransformStore getTransforms() {
+		return transforms;
+	}
+
+	public DynamicAABBTree getTree() {
+		return tree;
+	}
+
+	/**
+	 * bring the index up to date with the scene graph: all proxies are re-created after structural changes,
+	 * otherwise only moved and animated nodes get refit. The TransformStore may be shared and updated by others in
+	 * between
+	 */
+	public void update() {
+		transforms.update();
+		if (syncedLayoutVersion != transforms.getLayoutVersion()) {
+			rebuild();
+			return;
+		}
+		for (int index = 0; index < transforms.size(); index++) {
+			if (proxies[index] == DynamicAABBTree.NULL_NODE) {
+				continue;
+			}
+			final IRenderable renderable = transforms.getObject(index).getRenderable();
+			if (syncedVersions[index] != transforms.getGlobalVersion(index) || renderable.hasAnimations()) {
+				syncedVersions[index] = transforms.getGlobalVersion(index);
+				calculateGlobalBox(index, renderable);
+				tree.moveProxy(proxies[index], globalMin, globalMax);
+			}
+		}
+	}
+
+	/**
+	 * re-create all proxies for the current layout of the TransformStore
+	 */
+	private void rebuild() {
+		tree.clear();
+		final int size = transforms.size();
+		if (proxies.length < size) {
+			proxies = new int[size];
+			syncedVersions = new int[size];
+		}
+		Arrays.fill(proxies, DynamicAABBTree.NULL_NODE);
+		unboundedCount = 0;
+
+		for (int index = 0; index < size; index++) {
+			final IRenderable renderable = transforms.getObject(index).getRenderable();
+			if (renderable == null) {
+				continue;
+			}
+			if (renderable.getBoundingBox().isEmpty()) {
+				addUnbounded(index);
+			} else {
+				calculateGlobalBox(index, renderable);
+				proxies[index] = tree.createProxy(globalMin, globalMax, index);
+				syncedVersions[index] = transforms.getGlobalVersion(index);
+			}
+		}
+		syncedLayoutVersion = transforms.getLayoutVersion();
+	}
+
+	private void addUnbounded(final int index) {
+		if (unboundedCount == unboundedNodes.length) {
+			unboundedNodes = Arrays.copyOf(unboundedNodes, java.lang.Math.max(8, unboundedCount * 2));
+		}
+		unboundedNodes[unboundedCount++] = index;
+	}
+
+	/**
+	 * calculate the global box of the current state of a nodes renderable into globalMin and globalMax
+	 *
+	 * @param index
+	 *            the node index
+	 * @param renderable
+	 *            the nodes renderable
+	 */
+	private void calculateGlobalBox(final int index, final IRenderable renderable) {
+		final Matrix4f transform = transforms.getGlobalTransform(index, globalTransform).mul(renderable.getTransform());
+		renderable.getCurrentBoundingBox().getTransformedExtents(transform, globalMin, globalMax);
+	}
+
+	/**
+	 * report all nodes whose renderable could be visible in the frustum
+	 *
+	 * @param frustum
+	 *            the current view frustum
+	 * @param callback
+	 *            receives the node indices
+	 */
+	public void queryFrustum(final FrustumIntersection frustum, final IntConsumer callback) {
+		tree.queryFrustum(frustum, callback);
+		for (int i = 0; i < unboundedCount; i++) {
+			callback.accept(unboundedNodes[i]);
+		}
+	}
+
+	/**
+	 * report all nodes whose renderable box is hit by a ray. The candidates of the tree (which uses enlarged boxes)
+	 * are tested again against their exact global box
+	 *
+	 * @param origin
+	 *            the ray origin in global space
+	 * @param direction
+	 *            the ray direction in global space
+	 * @param callback
+	 *            receives the node indices
+	 */
+	public void queryRay(final Vector3f origin, final Vector3f direction, final IntConsumer callback) {
+		tree.queryRay(origin, direction, (final int index) -> {
+			calculateGlobalBox(index, transforms.getObject(index).getRenderable());
+			if (BoundingBox.intersectsRay(origin, direction, globalMin, globalMax)) {
+				callback.accept(index);
+			}
+		});
+	}
+
+	/**
+	 * report all nodes whose renderable box overlaps a global box
+	 *
+	 * @param min
+	 *            the minimum corner of the global box
+	 * @param max
+	 *            the maximum corner of the global box
+	 * @param callback
+	 *            receives the node indices
+	 */
+	public void queryOverlap(final Vector3f min, final Vector3f max, final IntConsumer callback) {
+		tree.queryOverlap(min, max, callback);
+	}
+}
@@ -0,0 +1,293 @@
+package mbeb.opengldefault.scene;
+
+import java.util.Arrays;
+
+import org.joml.Matrix4f;
+
+import mbeb.opengldefault.gl.shader.ShaderProgram;
+import mbeb.opengldefault.logging.Log;
+
+/**
+ * A flat, array-backed copy of the transformations of a scene graph.
+ * The nodes are stored in parent-before-child order, so the global transformations
+ * of all changed sub-trees can be recalculated in a single linear pass.
+ * Shared template sub-trees are stored once per occurrence, so their inherited state (global transformation and
+ * shader) is resolved here instead of through {@link SceneObject#getParent()}.
+ */
+public class TransformStore {
+
+	private static final String TAG = "TransformStore";
+
+	/** how many floats a single matrix takes */
+	private static final int MATRIX_FLOATS = 16;
+	/** the amount of nodes the arrays can initially hold */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** the root of the stored scene graph */
+	private final SceneObject root;
+	/** the structure version of the root when the arrays were last built */
+	private int builtStructureVersion;
+	/** incremented whenever the node layout gets rebuilt */
+	private int layoutVersion;
+
+	/** the amount of stored nodes */
+	private int size;
+	/** the SceneObject of each node */
+	private SceneObject[] objects;
+	/** the index of each nodes parent, or -1 for the root */
+	private int[] parents;
+	/** the first index after each nodes sub-tree */
+	private int[] subtreeEnds;
+	/** the transform version of each node when its matrices were last written */
+	private int[] versions;
+	/** whether a nodes global transformation changed in the last update */
+	private boolean[] changed;
+	/** incremented whenever a nodes global transformation gets recalculated */
+	private int[] globalVersions;
+	/** the local transformations, 16 floats per node */
+	private float[] localTransforms;
+	/** the global transformations, 16 floats per node */
+	private float[] globalTransforms;
+	/** the shader of each node, inherited from its ancestors if it has no own */
+	private ShaderProgram[] shaders;
+
+	/** scratch matrices for the update pass */
+	private final Matrix4f parentScratch = new Matrix4f();
+	private final Matrix4f localScratch = new Matrix4f();
+
+	/**
+	 * create a new TransformStore for the scene graph below the given root
+	 *
+	 * @param root
+	 *            the root of the scene graph to store
+	 */
+	public TransformStore(final SceneObject root) {
+		this.root = Log.assertNotNull(TAG, root);
+		allocate(INITIAL_CAPACITY);
+		rebuild();
+	}
+
+	/**
+	 * bring all global transformations up to date. The node layout is rebuilt if the structure of the scene graph
+	 * changed, otherwise only the sub-trees below changed nodes get recalculated.
+	 */
+	public void update() {
+		if (builtStructureVersion != root.getStructureVersion()) {
+			rebuild();
+		}
+		for (int index = 0; index < size; index++) {
+			final SceneObject object = objects[index];
+			final int parent = parents[index];
+			final boolean dirty = versions[index] != object.getTransformVersion() || (parent >= 0 && changed[parent]);
+			changed[index] = dirty;
+			if (dirty) {
+				versions[index] = object.getTransformVersion();
+				globalVersions[index]++;
+				writeGlobalTransform(index, parent, object.getTransformation().asMatrix());
+			}
+			shaders[index] = object.hasOwnShader() || parent < 0 ? object.getShader() : shaders[parent];
+		}
+	}
+
+	/**
+	 * recalculate the local and global matrices of a single node
+	 *
+	 * @param index
+	 *            the node to recalculate
+	 * @param parent
+	 *            the index of its parent (or -1)
+	 * @param local
+	 *            the current local transformation of the node
+	 */
+	private void writeGlobalTransform(final int index, final int parent, final Matrix4f local) {
+		final int offset = index * MATRIX_FLOATS;
+		local.get(localTransforms, offset);
+		if (parent < 0) {
+			System.arraycopy(localTransforms, offset, globalTransforms, offset, MATRIX_FLOATS);
+		} else {
+			parentScratch.set(globalTransforms, parent * MATRIX_FLOATS);
+			localScratch.set(localTransforms, offset);
+			parentScratch.mul(localScratch).get(globalTransforms, offset);
+		}
+	}
+
+	/**
+	 * re-create the node layout from the scene graph. All nodes are marked dirty afterwards
+	 */
+	private void rebuild() {
+		size = 0;
+		insert(root, -1);
+		for (int index = 0; index < size; index++) {
+			versions[index] = objects[index].getTransformVersion() - 1;
+		}
+		Arrays.fill(objects, size, objects.length, null);
+		Arrays.fill(shaders, size, shaders.length, null);
+		builtStructureVersion = root.getStructureVersion();
+		layoutVersion++;
+	}
+
+	/**
+	 * append a sub-tree in parent-before-child order
+	 *
+	 * @param object
+	 *            the root of the sub-tree
+	 * @param parent
+	 *            the index of its parent
+	 */
+	private void insert(final SceneObject object, final int parent) {
+		if (size == objects.length) {
+			allocate(objects.length * 2);
+		}
+		final int index = size++;
+		objects[index] = object;
+		parents[index] = parent;
+		for (final SceneObject child : object.getSubObjects()) {
+			insert(child, index);
+		}
+		subtreeEnds[index] = size;
+	}
+
+	/**
+	 * grow all the arrays to the given capacity
+	 *
+	 * @param capacity
+	 *            the new amount of nodes
+	 */
+	private void allocate(final int capacity) {
+		if (objects == null) {
+			objects = new SceneObject[capacity];
+			parents = new int[capacity];
+			subtreeEnds = new int[capacity];
+			versions = new int[capacity];
+			changed = new boolean[capacity];
+			globalVersions = new int[capacity];
+			localTransforms = new float[capacity * MATRIX_FLOATS];
+			globalTransforms = new float[capacity * MATRIX_FLOATS];
+			shaders = new ShaderProgram[capacity];
+		} else {
+			objects = Arrays.copyOf(objects, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			subtreeEnds = Arrays.copyOf(subtreeEnds, capacity);
+			versions = Arrays.copyOf(versions, capacity);
+			changed = Arrays.copyOf(changed, capacity);
+			globalVersions = Arrays.copyOf(globalVersions, capacity);
+			localTransforms = Arrays.copyOf(localTransforms, capacity * MATRIX_FLOATS);
+			globalTransforms = Arrays.copyOf(globalTransforms, capacity * MATRIX_FLOATS);
+			shaders = Arrays.copyOf(shaders, capacity);
+		}
+	}
+
+	public SceneObject getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return a counter that changes whenever the node indices get reassigned
+	 */
+	public int getLayoutVersion() {
+		return layoutVersion;
+	}
+
+	/**
+	 * @return the amount of nodes currently stored
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param index
+	 *            a node index
+	 * @return the SceneObject stored at that index
+	 */
+	public SceneObject getObject(final int index) {
+		return objects[index];
+	}
+
+	/**
+	 * @param index
+	 *            a node index
+	 * @return the index of the nodes parent, or -1 for the root
+	 */
+	public int getParent(final int index) {
+		return parents[index];
+	}
+
+	/**
+	 * @param index
+	 *            a node index
+	 * @return the first index that does not belong to the sub-tree of this node
+	 */
+	public int getSubtreeEnd(final int index) {
+		return subtreeEnds[index];
+	}
+
+	/**
+	 * @param index
+	 *            a node index
+	 * @return true if this nodes global transformation was recalculated in the last update. Only valid until the
+	 *         next update, consumers that do not update the store themselves should use
+	 *         {@link #getGlobalVersion(int)}
+	 */
+	public boolean hasChanged(final int index) {
+		return changed[index];
+	}
+
+	/**
+	 * @param index
+	 *            a node index
+	 * @return a counter that changes whenever the global transformation of this node gets recalculated
+	 */
+	public int getGlobalVersion(final int index) {
+		return globalVersions[index];
+	}
+
+	/**
+	 * @param index
+	 *            a node index
+	 * @return the shader of the node (inherited along this occurrence of the node), as of the last update
+	 */
+	public ShaderProgram getShader(final int index) {
+		return shaders[index];
+	}
+
+	/**
+	 * read the global transformation of a node
+	 *
+	 * @param index
+	 *            a node index
+	 * @param dest
+	 *            where to store the matrix
+	 * @return dest
+	 */
+	public Matrix4f getGlobalTransform(final int index, final Matrix4f dest) {
+		return dest.set(globalTransforms, index * MATRIX_FLOATS);
+	}
+
+	/**
+	 * read the global transformation of a nodes parent (identity for the root)
+	 *
+	 * @param index
+	 *            a node index
+	 * @param dest
+	 *            where to store the matrix
+	 * @return dest
+	 */
+	public Matrix4f getParentGlobalTransform(final int index, final Matrix4f dest) {
+		final int parent = parents[index];
+		return parent < 0 ? dest.identity() : getGlobalTransform(parent, dest);
+	}
+
+	/**
+	 * read the local transformation of a node, as it was when the node was last updated
+	 *
+	 * @param index
+	 *            a node index
+	 * @param dest
+	 *            where to store the matrix
+	 * @return dest
+	 */
+	public Matrix4f getLocalTransform(final int index, final Matrix4f dest) {
+		return dest.set(localTransforms, index * MATRIX_FLOATS);
+	}
+}
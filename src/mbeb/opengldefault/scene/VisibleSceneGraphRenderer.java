@@ -3,25 +3,161 @@ package mbeb.opengldefault.scene;
 import org.joml.*;
 
 import mbeb.opengldefault.camera.*;
+import mbeb.opengldefault.logging.*;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.function.IntConsumer;
 
 /**
  * only renders the visible part of the sceneGraph
  */
 public class VisibleSceneGraphRenderer extends SceneGraphRenderer {
 
+	private static final String TAG = "VisibleSceneGraphRenderer";
+
+	/**
+	 * the different ways of deciding whether an object is visible
+	 */
+	public enum CullingMode {
+		/**
+		 * project all 8 corners of a BoundingBox onto the screen and check their extents
+		 */
+		SCREEN_SPACE,
+		/**
+		 * test the global BoundingBox against the 6 planes of the view frustum.
+		 * Sub-trees that are completely inside the frustum are not tested any further
+		 */
+		FRUSTUM,
+		/**
+		 * query a {@link SceneSpatialIndex} with the view frustum and only render the sub-trees containing hits
+		 */
+		SPATIAL_INDEX
+	}
+
+	private CullingMode cullingMode = CullingMode.FRUSTUM;
+
+	/** the planes of the view frustum, extracted once per frame */
+	private final FrustumIntersection frustum = new FrustumIntersection();
+	/** all nodes before this index lie in a sub-tree that is completely inside the frustum */
+	private int insideUntil;
+
+	/** the index used in SPATIAL_INDEX mode */
+	private SceneSpatialIndex spatialIndex;
+	/** the frame in which a node (or one of its descendants) was last reported visible */
+	private int[] visibleStamps = new int[0];
+	private int frame;
+	private final IntConsumer markVisible = this::markVisible;
+
+	/** scratch data for the checked object */
+	private final Matrix4f parentTransform = new Matrix4f();
+	private final Matrix4f globalTransform = new Matrix4f();
+	private final Vector3f globalMin = new Vector3f();
+	private final Vector3f globalMax = new Vector3f();
+	private final Vector3f corner = new Vector3f();
+	private final Vector4f screenCorner = new Vector4f();
+
 	public VisibleSceneGraphRenderer(final SceneObject root, final Camera cam) {
 		super(root, cam);
 	}
 
+	public VisibleSceneGraphRenderer(final TransformStore transforms, final Camera cam) {
+		super(transforms, cam);
+	}
+
+	public CullingMode getCullingMode() {
+		return cullingMode;
+	}
+
+	/**
+	 * @param cullingMode
+	 *            the new culling mode. {@link CullingMode#SPATIAL_INDEX} needs an index, see
+	 *            {@link #setSpatialIndex(SceneSpatialIndex)}
+	 */
+	public void setCullingMode(final CullingMode cullingMode) {
+		if (cullingMode == CullingMode.SPATIAL_INDEX && spatialIndex == null) {
+			Log.error(TAG, "Set a SpatialIndex before using it for culling");
+			return;
+		}
+		this.cullingMode = cullingMode;
+	}
+
+	/**
+	 * use a spatial index for culling (this switches to {@link CullingMode#SPATIAL_INDEX})
+	 *
+	 * @param spatialIndex
+	 *            an index over the same TransformStore as this renderer
+	 */
+	public void setSpatialIndex(final SceneSpatialIndex spatialIndex) {
+		Log.assertTrue(TAG, spatialIndex.getTransforms() == transforms, "The SpatialIndex has to use the renderers TransformStore");
+		this.spatialIndex = spatialIndex;
+		setCullingMode(CullingMode.SPATIAL_INDEX);
+	}
+
 	@Override
-	public void renderObject(final SceneObject object, final Matrix4f parentTransform) {
-		if (isVisible(object, parentTransform)) {
-			super.renderObject(object, parentTransform);
+	public void render() {
+		frustum.set(camera.getProjectionView());
+		insideUntil = 0;
+		if (cullingMode == CullingMode.SPATIAL_INDEX) {
+			spatialIndex.update();
+			frame++;
+			if (visibleStamps.length < transforms.size()) {
+				visibleStamps = new int[transforms.size()];
+			}
+			spatialIndex.queryFrustum(frustum, markVisible);
 		}
+		super.render();
+	}
+
+	/**
+	 * mark a node and all its ancestors as visible in this frame
+	 *
+	 * @param index
+	 *            the visible node
+	 */
+	private void markVisible(final int index) {
+		int current = index;
+		while(current >= 0 && visibleStamps[current] != frame) {
+			visibleStamps[current] = frame;
+			current = transforms.getParent(current);
+		}
+	}
+
+	@Override
+	protected boolean isSubtreeVisible(final int index) {
+		if (!super.isSubtreeVisible(index)) {
+			return false;
+		}
+		if (cullingMode == CullingMode.FRUSTUM) {
+			return isInFrustum(index);
+		}
+		if (cullingMode == CullingMode.SPATIAL_INDEX) {
+			return visibleStamps[index] == frame;
+		}
+		return isVisible(transforms.getObject(index), transforms.getParentGlobalTransform(index, parentTransform));
+	}
+
+	/**
+	 * test the global BoundingBox of a node against the view frustum
+	 *
+	 * @param index
+	 *            the node index inside the TransformStore
+	 * @return false if this sub-tree would not be visible if rendered
+	 */
+	private boolean isInFrustum(final int index) {
+		if (index < insideUntil) {
+			return true;
+		}
+		final BoundingBox box = transforms.getObject(index).getBoundingBox();
+		if (box.isEmpty()) {
+			return true;
+		}
+		box.getTransformedExtents(transforms.getGlobalTransform(index, globalTransform), globalMin, globalMax);
+
+		//returns the index of the culling plane when outside
+		final int result = frustum.intersectAab(globalMin, globalMax);
+		if (result == FrustumIntersection.INSIDE) {
+			insideUntil = transforms.getSubtreeEnd(index);
+		}
+		return result == FrustumIntersection.INSIDE || result == FrustumIntersection.INTERSECT;
 	}
 
 	/**
@@ -34,44 +170,40 @@ public class VisibleSceneGraphRenderer extends SceneGraphRenderer {
 	 * @return false if this object would not be visible if rendered
 	 */
 	private boolean isVisible(final SceneObject object, final Matrix4f parentTransform) {
-		if (object.getBoundingBox().isEmpty()) {
+		final BoundingBox box = object.getBoundingBox();
+		if (box.isEmpty()) {
 			return true;
 		}
-		
-		Iterator<Vector3f> cornerIterator = object.getBoundingBox().getCornersOnScreen(parentTransform, camera);
+		final Matrix4f toScreen = camera.getProjectionView().mul(parentTransform, globalTransform).mul(box.getModelTransform());
 
-		List<Vector3f> corners = new ArrayList<>();
-		while (cornerIterator.hasNext()) {
-			Vector3f corner = cornerIterator.next();
-			if (corner.x > -1 && corner.x < 1 && corner.y > -1 && corner.y < 1 && corner.z > -1 && corner.z < 1) {
+		float minX = Float.POSITIVE_INFINITY;
+		float minY = Float.POSITIVE_INFINITY;
+		float minZ = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY;
+		float maxY = Float.NEGATIVE_INFINITY;
+		float maxZ = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < 8; i++) {
+			box.getLocalCorner(i, corner);
+			toScreen.transform(screenCorner.set(corner, 1));
+			final float x = screenCorner.x / screenCorner.w;
+			final float y = screenCorner.y / screenCorner.w;
+			final float z = screenCorner.z / screenCorner.w;
+			if (x > -1 && x < 1 && y > -1 && y < 1 && z > -1 && z < 1) {
 				return true;
 			}
-			corners.add(corner);
+			minX = java.lang.Math.min(minX, x);
+			minY = java.lang.Math.min(minY, y);
+			minZ = java.lang.Math.min(minZ, z);
+			maxX = java.lang.Math.max(maxX, x);
+			maxY = java.lang.Math.max(maxY, y);
+			maxZ = java.lang.Math.max(maxZ, z);
 		}
 
-		float maxZ = corners.get(0).z;
-		float minZ = corners.get(0).z;
-
-		for (final Vector3f c : corners) {
-			maxZ = java.lang.Math.max(maxZ, c.z);
-			minZ = java.lang.Math.min(minZ, c.z);
-		}
 		//todo: could probably not work with giant objects
 		if (minZ > 1 || maxZ < -1) {
 			return false;
 		}
 
-		float minX = corners.get(0).x;
-		float minY = corners.get(0).y;
-		float maxX = corners.get(0).x;
-		float maxY = corners.get(0).y;
-		for (final Vector3f c: corners) {
-			minX = java.lang.Math.min(minX, c.x);
-			maxX = java.lang.Math.max(maxX, c.x);
-			minY = java.lang.Math.min(minY, c.y);
-			maxY = java.lang.Math.max(maxY, c.y);
-		}
-
 		final boolean intersect = minX < 1 && maxX > -1 && minY < 1 && maxY > -1;
 		
 		return intersect;
@@ -23,6 +23,12 @@ public class BoneTrackingBehaviour implements IBehaviour {
 
 	private Vector3f localDirection = new Vector3f(0, 1, 0);
 
+	/** scratch storage, reused every update */
+	private final Matrix4f boneTrans = new Matrix4f();
+	private final Matrix4f finalTrans = new Matrix4f();
+	private final Vector4f globalPosition = new Vector4f();
+	private final Vector4f globalDirection = new Vector4f();
+
 	public BoneTrackingBehaviour(SceneObject animatedObject, AnimatedRenderable renderable, String boneName) {
 		this(animatedObject, renderable, boneName, new Vector3f());
 	}
@@ -36,15 +42,15 @@ public class BoneTrackingBehaviour implements IBehaviour {
 
 	@Override
 	public void update(double deltaTime, IEntity entity) {
-		Matrix4f boneTrans = renderable.getCurrentPose().get(boneID).getPoseBoneTransform();
+		renderable.getBoneTransform(boneID, boneTrans);
 		Matrix4f parentTrans = animatedObject.getGlobalTransformation().asMatrix();
 
-		Matrix4f finalTrans = parentTrans.mul(boneTrans, new Matrix4f());
+		parentTrans.mul(boneTrans, finalTrans);
 
-		Vector4f globalPosition = finalTrans.transform(new Vector4f(localPosition, 1));
+		finalTrans.transform(globalPosition.set(localPosition, 1));
 		entity.setPosition(new Vector3f(globalPosition.x, globalPosition.y, globalPosition.z));
 
-		Vector4f globalDirection = finalTrans.transform(new Vector4f(localDirection, 1)).sub(globalPosition, new Vector4f());
+		finalTrans.transform(globalDirection.set(localDirection, 1)).sub(globalPosition);
 		Vector3f globalDirection3 = new Vector3f(globalDirection.x, globalDirection.y, globalDirection.z).normalize();
 		entity.setDirection(globalDirection3);
 	}
@@ -6,6 +6,7 @@ import java.awt.image.BufferedImage;
 import mbeb.opengldefault.gl.buffer.GLBufferWritable;
 import mbeb.opengldefault.gl.buffer.GLBufferWriter;
 import mbeb.opengldefault.gl.shader.ShaderProgram;
+import mbeb.opengldefault.gl.texture.DecodedImage;
 import mbeb.opengldefault.gl.texture.Texture;
 import mbeb.opengldefault.gl.texture.Texture2DArray;
 import mbeb.opengldefault.gl.texture.ThreeDimensionalTexture;
@@ -41,6 +42,14 @@ public class Material implements GLBufferWritable {
 		this(new Texture2DArray(images));
 	}
 
+	/**
+	 * construct a new Material based on already decoded images
+	 * @param images the material components (all in same resolution)
+	 */
+	public Material(DecodedImage[] images) {
+		this(new Texture2DArray(images));
+	}
+
 	/**
 	 * construct a new Material based on images in a resource path.
 	 * The images are named <code>path/[imageNumber].extension</code>
@@ -106,4 +115,11 @@ public class Material implements GLBufferWritable {
 	public void unbind() {
 		myTextures.unbind();
 	}
+
+	/**
+	 * delete the texture of this material. It can not be used afterwards
+	 */
+	public void delete() {
+		myTextures.delete();
+	}
 }
@@ -4,6 +4,7 @@ import static org.lwjgl.openal.AL10.*;
 
 import org.joml.*;
 
+import mbeb.opengldefault.scene.ParallelUpdate;
 import mbeb.opengldefault.scene.entities.*;
 
 /**
@@ -175,14 +176,16 @@ public class SoundSource implements IEntityConvertable {
 	}
 
 	/**
-	 * start playing the currently bound Sound, if not playing already
+	 * start playing the currently bound Sound, if not playing already (deferred during a parallel update)
 	 */
 	public void play() {
-		if (isPlaying()) {
-			return;
-		}
-		alSourcePlay(sourceId);
-		ALErrors.checkForError(TAG, "alSourcePlay");
+		ParallelUpdate.defer(() -> {
+			if (isPlaying()) {
+				return;
+			}
+			alSourcePlay(sourceId);
+			ALErrors.checkForError(TAG, "alSourcePlay");
+		});
 	}
 
 	/**
@@ -199,8 +202,10 @@ public class SoundSource implements IEntityConvertable {
 	 * position.
 	 */
 	public void pause() {
-		alSourcePause(sourceId);
-		ALErrors.checkForError(TAG, "alSourcePause");
+		ParallelUpdate.defer(() -> {
+			alSourcePause(sourceId);
+			ALErrors.checkForError(TAG, "alSourcePause");
+		});
 	}
 
 	/**
@@ -208,8 +213,10 @@ public class SoundSource implements IEntityConvertable {
 	 * again.
 	 */
 	public void stop() {
-		alSourceStop(sourceId);
-		ALErrors.checkForError(TAG, "alSourceStop");
+		ParallelUpdate.defer(() -> {
+			alSourceStop(sourceId);
+			ALErrors.checkForError(TAG, "alSourceStop");
+		});
 	}
 
 	/**